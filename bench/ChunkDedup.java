@@ -0,0 +1,83 @@
+package bench;
+
+import peer.Chunker;
+import peer.Manifest;
+import java.io.ByteArrayInputStream;
+import java.util.*;
+
+/**
+ * Dedup antar versi file dengan content-defined chunking: versi kedua
+ * adalah versi pertama dengan beberapa sisipan, hapusan dan perubahan
+ * byte kecil. Dilaporkan throughput chunking dan berapa byte versi kedua
+ * yang benar-benar harus dikirim (chunk yang belum dimiliki penerima).
+ *
+ *   java bench.ChunkDedup [MB] [jumlahEdit]
+ */
+public class ChunkDedup {
+
+    public static void main(String[] args) throws Exception {
+        int mb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Random rnd = new Random(7);
+
+        byte[] v1 = new byte[mb << 20];
+        rnd.nextBytes(v1);
+        byte[] v2 = edit(v1, edits, rnd);
+
+        Manifest m1 = null;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long t0 = System.nanoTime();
+            m1 = Chunker.chunk(new ByteArrayInputStream(v1), Chunker.DISCARD);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        Manifest m2 = Chunker.chunk(new ByteArrayInputStream(v2), Chunker.DISCARD);
+
+        Set<String> have = new HashSet<>();
+        for (int i = 0; i < m1.count(); i++) have.add(Manifest.hex(m1.id(i)));
+        long sendBytes = 0;
+        int sendChunks = 0;
+        for (int i = 0; i < m2.count(); i++) {
+            if (have.add(Manifest.hex(m2.id(i)))) {
+                sendBytes += m2.length(i);
+                sendChunks++;
+            }
+        }
+
+        System.out.printf("size=%dMB chunks=%d avg=%dB chunking=%.0f MB/s%n",
+                mb, m1.count(), m1.size / Math.max(1, m1.count()), mb / (best / 1e9));
+        System.out.printf("v2: %d edit, %d/%d chunk baru, %d KB dikirim (%.2f%% dari %d KB)%n",
+                edits, sendChunks, m2.count(), sendBytes / 1024, 100.0 * sendBytes / m2.size, m2.size / 1024);
+    }
+
+    // Sisipan, hapusan dan penggantian kecil di posisi acak
+    private static byte[] edit(byte[] src, int edits, Random rnd) {
+        byte[] out = src.clone();
+        for (int e = 0; e < edits; e++) {
+            int pos = rnd.nextInt(out.length - 100);
+            int len = 1 + rnd.nextInt(64);
+            switch (e % 3) {
+                case 0: {
+                    byte[] ins = new byte[len];
+                    rnd.nextBytes(ins);
+                    byte[] next = new byte[out.length + len];
+                    System.arraycopy(out, 0, next, 0, pos);
+                    System.arraycopy(ins, 0, next, pos, len);
+                    System.arraycopy(out, pos, next, pos + len, out.length - pos);
+                    out = next;
+                    break;
+                }
+                case 1: {
+                    byte[] next = new byte[out.length - len];
+                    System.arraycopy(out, 0, next, 0, pos);
+                    System.arraycopy(out, pos + len, next, pos, out.length - pos - len);
+                    out = next;
+                    break;
+                }
+                default:
+                    for (int i = 0; i < len; i++) out[pos + i] ^= (byte) 0x5A;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,120 @@
+package bench;
+
+import common.*;
+import peer.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Untung-rugi kompresi chunk (ChunkCodec) pada berbagai kecepatan link.
+ * Per kombinasi link × data × kompresi dibuat ring dua node tcp di
+ * loopback: node sumber dengan uplink dibatasi (-Dp2p.uplink.bytesPerSec)
+ * memegang file, node lain mengunduhnya lewat SwarmDownload. Di link
+ * lambat kompresi menghemat waktu sebanding rasio; di link tanpa batas
+ * yang terlihat adalah biaya CPU deflate/inflate.
+ *
+ * Data: csv (teks berulang, mudah dikompres) dan acak (entropi tinggi,
+ * harus dilewati pemeriksaan entropi tanpa memperlambat).
+ *
+ *   java bench.CompressionBenchmark [MiB/s,MiB/s,...; 0 = tanpa batas] [ukuranMB]
+ *
+ * Port mulai dari -Dp2p.sim.basePort (default 20500).
+ */
+public class CompressionBenchmark {
+    private static int nextPort = Integer.getInteger("p2p.sim.basePort", 20_500);
+    private static final PrintStream REPORT = System.out;
+
+    public static void main(String[] args) throws Exception {
+        int[] links = Arrays.stream((args.length > 0 ? args[0] : "1,10,100,0").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int mb = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        Path root = Files.createTempDirectory("p2p-compress");
+        System.setProperty("p2p.fd.intervalMs", "0");
+        System.setProperty("p2p.stabilizeMs", "3600000");
+        System.setProperty("p2p.antiEntropyMs", "3600000");
+        // Satu sumber: range yang lambat karena link tidak perlu diambil ulang
+        System.setProperty("p2p.swarm.stallMs", "3600000");
+        System.setProperty("p2p.log.file", root.resolve("log.txt").toString());
+        AsyncLog log = AsyncLog.fromSystemProperties();
+
+        Map<String, File> files = new LinkedHashMap<>();
+        files.put("csv", write(root.resolve("data.csv"), csv(mb << 20)));
+        byte[] random = new byte[mb << 20];
+        new Random(7).nextBytes(random);
+        files.put("acak", write(root.resolve("data.bin"), random));
+
+        REPORT.printf("file=%dMB%n", mb);
+        REPORT.printf("%8s %6s %8s %8s %8s %10s%n", "link", "data", "kompresi", "rasio", "ms", "MB/s");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            int run = 0;
+            for (int link : links) {
+                for (Map.Entry<String, File> f : files.entrySet()) {
+                    for (boolean compress : new boolean[] {false, true}) {
+                        SwarmDownload.Result r = run(link, compress, f.getValue(), root.resolve("r" + run++), log);
+                        REPORT.printf("%8s %6s %8s %7.2fx %8d %10.1f%n",
+                                link == 0 ? "∞" : link + "MiB/s", f.getKey(), compress ? "ya" : "tidak",
+                                r.compression.ratio(), r.millis, r.size / 1048576.0 / Math.max(0.001, r.millis / 1000.0));
+                    }
+                }
+            }
+        } finally {
+            System.setOut(REPORT);
+            log.close();
+            deleteTree(root);
+        }
+        System.exit(0);
+    }
+
+    // Uplink dan p2p.compress dibaca saat node dibuat, jadi tiap kombinasi ring baru
+    private static SwarmDownload.Result run(int linkMiB, boolean compress, File file, Path dir, AsyncLog log)
+            throws IOException {
+        System.setProperty("p2p.uplink.bytesPerSec", String.valueOf((long) linkMiB << 20));
+        System.setProperty("p2p.compress", String.valueOf(compress));
+        List<PeerInfo> members = List.of(
+                new PeerInfo(1, "127.0.0.1", nextPort++), new PeerInfo(2, "127.0.0.1", nextPort++));
+        List<PeerNode> nodes = new ArrayList<>();
+        for (PeerInfo p : members) {
+            PeerNode node = new PeerNode(p.id, p.ip, p.port, dir.resolve("node-" + p.id), log);
+            node.peers.addAll(members);
+            node.start(List.of(members.get(0)), false);
+            nodes.add(node);
+        }
+        try {
+            // Upload langsung ke sumber (tanpa batas uplink di sisi pengunggah), pengunduh tidak punya chunk-nya
+            PeerNode downloader = nodes.get(1);
+            PeerClient.upload(members.get(0), file, downloader.myId, FileTransfer.NO_PROGRESS);
+            return downloader.swarm.download(file.getName(), dir.resolve("got").toFile(), FileTransfer.NO_PROGRESS);
+        } finally {
+            for (PeerNode node : nodes) node.stop();
+        }
+    }
+
+    // Baris CSV seperti ekspor log/tabel: kolom berulang dengan angka acak
+    private static byte[] csv(int bytes) {
+        Random rnd = new Random(7);
+        String[] cities = {"Jakarta", "Bandung", "Surabaya", "Medan", "Makassar"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes + 128);
+        for (int i = 0; out.size() < bytes; i++) {
+            String row = i + ",user" + rnd.nextInt(5000) + "," + cities[rnd.nextInt(cities.length)] + ","
+                    + rnd.nextInt(1_000_000) + "," + (rnd.nextBoolean() ? "aktif" : "nonaktif") + "\n";
+            out.writeBytes(row.getBytes());
+        }
+        return Arrays.copyOf(out.toByteArray(), bytes);
+    }
+
+    private static File write(Path path, byte[] data) throws IOException {
+        Files.write(path, data);
+        return path.toFile();
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package bench;
+
+import common.*;
+import peer.*;
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Beban yang sama untuk tiap engine server: banyak klien, masing-masing
+ * satu koneksi persisten, mengirim SEARCH berurutan. Handler meniru
+ * kerja forwarding dengan jeda kecil. Mencetak throughput dan p50/p99.
+ *
+ * Jalankan: java bench.ServerEngineBenchmark [klien] [request/klien] [kerja µs] [maxConcurrent]
+ */
+public class ServerEngineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int workMicros = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int maxConcurrent = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+        ServerHandler handler = new ServerHandler() {
+            @Override
+            public Frame handleFrame(Frame request) {
+                if (workMicros > 0) {
+                    LockSupport.parkNanos(workMicros * 1000L);
+                }
+                return request.reply(new Payload.Writer().writeByte(Frame.STATUS_NOT_FOUND).toByteArray());
+            }
+
+            @Override
+            public void handleTransfer(Frame request, ByteBuffer prefix, SocketChannel channel) {
+            }
+
+            @Override
+            public void handleLegacy(InputStream in, OutputStream out) {
+            }
+        };
+
+        System.out.printf("%-44s %10s %10s %10s%n", "engine", "req/s", "p50 µs", "p99 µs");
+        for (String name : new String[]{"nio", "virtual"}) {
+            ServerEngine engine = ServerEngine.create(name, maxConcurrent);
+            engine.start(0, handler);
+            try {
+                run(engine, clients, requests / 5);          // warmup
+                long[] stats = run(engine, clients, requests);
+                System.out.printf("%-44s %10d %10d %10d%n", engine.name(), stats[0], stats[1], stats[2]);
+            } finally {
+                engine.stop();
+            }
+        }
+    }
+
+    // {throughput, p50, p99}
+    private static long[] run(ServerEngine engine, int clients, int requests) throws Exception {
+        byte[] payload = new Payload.Writer().writeString("laporan.csv").toByteArray();
+        long[] latencies = new long[clients * requests];
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int c = 0; c < clients; c++) {
+            int base = c * requests;
+            futures.add(pool.submit(() -> {
+                try (Socket socket = new Socket("127.0.0.1", engine.getPort())) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    start.await();
+                    for (int i = 0; i < requests; i++) {
+                        long t0 = System.nanoTime();
+                        new Frame(Frame.SEARCH, Frame.nextRequestId(), payload).writeTo(out);
+                        Frame.readFrom(in);
+                        latencies[base + i] = System.nanoTime() - t0;
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) f.get();
+        long elapsed = System.nanoTime() - t0;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        long throughput = (long) (latencies.length / (elapsed / 1e9));
+        return new long[]{
+                throughput,
+                latencies[latencies.length / 2] / 1000,
+                latencies[(int) (latencies.length * 0.99)] / 1000
+        };
+    }
+}
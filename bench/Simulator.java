@@ -0,0 +1,190 @@
+package bench;
+
+import common.*;
+import peer.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * N peer headless dalam satu proses, untuk melihat bagaimana routing dan
+ * replikasi berskala saat N bertambah. Ring-nya statis: semua node
+ * langsung mengenal semua anggota (JOIN tetap lewat node pertama), dan
+ * heartbeat, stabilize serta anti-entropy dimatikan kecuali di-set lewat
+ * -D supaya beban background tidak ikut terukur.
+ *
+ * - mem: tanpa socket, request langsung ke handler node tujuan
+ *   (ConnectionPool.registerLocal). Hanya untuk lookup.
+ * - tcp: tiap node engine NIO sendiri di loopback.
+ *
+ * lookup: FORWARD_SEARCH dari node acak untuk file yang sudah diindeks di
+ * replika-replikanya. upload: Replication.store dari node acak (tulis
+ * quorum lewat jalur chunk sungguhan), hanya untuk tcp.
+ *
+ *   java bench.Simulator [N,N,...] [mem|tcp] [lookup|upload] [operasi] [klien] [ukuranFile]
+ *
+ * Port tcp mulai dari -Dp2p.sim.basePort (default 20000).
+ */
+public class Simulator {
+    // Port tcp dibagikan berurutan di bawah rentang ephemeral, tidak dipakai ulang antar putaran
+    private static int nextPort = Integer.getInteger("p2p.sim.basePort", 20_000);
+    // System.out dibungkam selama simulasi (tiap node mencetak status), laporan ke sini
+    private static final PrintStream REPORT = System.out;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "10,100,1000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        boolean inMemory = !(args.length > 1 && args[1].equals("tcp"));
+        boolean upload = args.length > 2 && args[2].equals("upload");
+        int ops = args.length > 3 ? Integer.parseInt(args[3]) : (upload ? 500 : 20_000);
+        int clients = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        int fileBytes = args.length > 5 ? Integer.parseInt(args[5]) : 64 * 1024;
+        if (upload && inMemory) {
+            System.out.println("upload butuh transport tcp (transfer file lewat socket)");
+            System.exit(2);
+        }
+
+        Path root = Files.createTempDirectory("p2p-sim");
+        defaultProperty("p2p.fd.intervalMs", "0");
+        defaultProperty("p2p.stabilizeMs", "3600000");
+        defaultProperty("p2p.antiEntropyMs", "3600000");
+        defaultProperty("p2p.log.file", root.resolve("log.txt").toString());
+        AsyncLog log = AsyncLog.fromSystemProperties();
+
+        REPORT.printf("transport=%s workload=%s operasi=%d klien=%d%s%n", inMemory ? "mem" : "tcp",
+                upload ? "upload" : "lookup", ops, clients, upload ? " file=" + fileBytes + "B" : "");
+        REPORT.printf("%6s %8s %10s %6s %14s %20s %8s %8s%n",
+                "N", "start ms", "op/s", "log2N", "hop p50/p99/max", "latensi µs p50/p90/p99", "gagal", "miss");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int n : sizes) {
+                run(n, inMemory, upload, ops, clients, fileBytes, root.resolve("n" + n), log);
+            }
+        } finally {
+            System.setOut(REPORT);
+            log.close();
+            deleteTree(root);
+        }
+        System.exit(0);
+    }
+
+    private static void run(int n, boolean inMemory, boolean upload, int ops, int clients, int fileBytes,
+                            Path dir, AsyncLog log) throws Exception {
+        long t0 = System.nanoTime();
+        List<PeerNode> nodes = startRing(n, inMemory, dir, log);
+        long startMs = (System.nanoTime() - t0) / 1_000_000;
+
+        Random rnd = new Random(n);
+        List<String> names = new ArrayList<>();
+        if (!upload) names = seedFiles(nodes, Math.max(1000, n * 4));
+        Path sources = Files.createDirectories(dir.resolve("sources"));
+        byte[] content = new byte[fileBytes];
+        rnd.nextBytes(content);
+
+        Metrics.Histogram hops = new Metrics.Histogram();
+        Metrics.Histogram latency = new Metrics.Histogram();
+        LongAdder failed = new LongAdder();
+        LongAdder missed = new LongAdder();
+        AtomicInteger next = new AtomicInteger();
+        List<String> lookupNames = names;
+
+        // Pemanasan singkat (JIT, koneksi pool) sebelum yang diukur
+        int warmup = Math.min(ops / 10, 2_000);
+        for (int phase = 0; phase < 2; phase++) {
+            int total = phase == 0 ? warmup : ops;
+            boolean measure = phase == 1;
+            next.set(0);
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                long seed = rnd.nextLong();
+                pool.execute(() -> {
+                    Random r = new Random(seed);
+                    int i;
+                    while ((i = next.getAndIncrement()) < total) {
+                        PeerNode origin = nodes.get(r.nextInt(nodes.size()));
+                        long s = System.nanoTime();
+                        try {
+                            if (upload) {
+                                File f = sources.resolve("f-" + (measure ? "" : "w") + i + ".bin").toFile();
+                                Files.write(f.toPath(), content);
+                                s = System.nanoTime();
+                                origin.replication.store(f, origin.myId, FileTransfer.NO_PROGRESS);
+                                if (measure) latency.record((System.nanoTime() - s) / 1000);
+                                Files.delete(f.toPath());
+                            } else {
+                                String name = lookupNames.get(r.nextInt(lookupNames.size()));
+                                PeerInfo self = origin.findPeer(origin.myId);
+                                SearchResult result = PeerClient.forwardSearch(self, KeySpace.hash(name), origin.myId, 0);
+                                if (!measure) continue;
+                                latency.record((System.nanoTime() - s) / 1000);
+                                if (!result.isFound()) missed.increment();
+                                hops.record(result.hops);
+                            }
+                        } catch (IOException e) {
+                            if (measure) failed.increment();
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.HOURS);
+            if (measure) {
+                double secs = (System.nanoTime() - start) / 1e9;
+                String hopText = upload ? "-" : hops.percentile(0.5) + "/" + hops.percentile(0.99) + "/" + hops.max();
+                REPORT.printf("%6d %8d %10.0f %6.1f %14s %20s %8d %8d%n", n, startMs, ops / secs,
+                        Math.log(n) / Math.log(2), hopText,
+                        latency.percentile(0.5) + "/" + latency.percentile(0.9) + "/" + latency.percentile(0.99),
+                        failed.sum(), missed.sum());
+            }
+        }
+
+        for (PeerNode node : nodes) node.stop();
+    }
+
+    // Semua node mengenal semua anggota sejak awal
+    private static List<PeerNode> startRing(int n, boolean inMemory, Path dir, AsyncLog log) {
+        List<PeerInfo> members = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            members.add(inMemory ? new PeerInfo(i, "mem", i) : new PeerInfo(i, "127.0.0.1", nextPort++));
+        }
+        List<PeerNode> nodes = new ArrayList<>(n);
+        for (PeerInfo p : members) {
+            PeerNode node = new PeerNode(p.id, p.ip, p.port, dir.resolve("node-" + p.id), log);
+            node.peers.addAll(members);
+            node.start(List.of(members.get(0)), inMemory);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    // Tiap nama diindeks di semua replika key-nya, seperti setelah upload yang sukses
+    private static List<String> seedFiles(List<PeerNode> nodes, int count) {
+        Map<Integer, PeerNode> byId = new HashMap<>();
+        for (PeerNode node : nodes) byId.put(node.myId, node);
+        FingerTable ring = nodes.get(0).fingerTable;
+        int k = nodes.get(0).replication.getReplicas();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "sim-" + i + ".bin";
+            for (PeerInfo p : ring.replicas(KeySpace.hash(name), k)) byId.get(p.id).indexStore.put(new FileEntry(name));
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static void defaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) System.setProperty(key, value);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+}
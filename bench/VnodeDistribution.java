@@ -0,0 +1,75 @@
+package bench;
+
+import common.*;
+import peer.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Seberapa rata key terbagi per node fisik untuk beberapa jumlah virtual
+ * node. Tanpa jaringan: ring dibangun langsung dari peerlist (kolom ke-4
+ * opsional = kapasitas) atau dari N peer sintetis, lalu key acak dihitung
+ * pemiliknya lewat Ring.successor.
+ *
+ *   java bench.VnodeDistribution [vnode,vnode,...] [jumlahKey] [peerlist.txt | jumlahPeer]
+ *
+ * Per baris: vnode per kapasitas, jumlah posisi di ring, max/rata-rata
+ * bagian ruang key dan key acak (relatif terhadap kapasitas), dan waktu
+ * membangun ring.
+ */
+public class VnodeDistribution {
+    public static void main(String[] args) throws IOException {
+        int[] vnodes = Arrays.stream((args.length > 0 ? args[0] : "1,4,16,64,256").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        List<PeerInfo> peers = args.length > 2 && new File(args[2]).isFile()
+                ? load(args[2]) : synthetic(args.length > 2 ? Integer.parseInt(args[2]) : 32);
+
+        long totalCapacity = 0;
+        for (PeerInfo p : peers) totalCapacity += p.capacity;
+        long[] sample = new long[keys];
+        Random rnd = new Random(7);
+        for (int i = 0; i < keys; i++) sample[i] = KeySpace.hash("file-" + rnd.nextLong());
+
+        System.out.printf("%d peer, kapasitas total %d, %d key%n", peers.size(), totalCapacity, keys);
+        System.out.printf("%7s %8s %12s %12s %10s%n", "vnode", "posisi", "ruang max/μ", "key max/μ", "bangun ms");
+        for (int v : vnodes) {
+            long t0 = System.nanoTime();
+            Ring ring = new Ring(1, peers, v);
+            long buildMs = (System.nanoTime() - t0) / 1_000_000;
+
+            Map<Integer, Integer> owned = new HashMap<>();
+            for (long k : sample) owned.merge(ring.successor(k).id, 1, Integer::sum);
+            double maxShare = 0;
+            double maxKeys = 0;
+            for (Distribution.Host h : Distribution.shares(ring)) {
+                double target = (double) h.peer.capacity / totalCapacity;
+                maxShare = Math.max(maxShare, h.share / target);
+                maxKeys = Math.max(maxKeys, owned.getOrDefault(h.peer.id, 0) / (double) keys / target);
+            }
+            System.out.printf("%7d %8d %11.2fx %11.2fx %10d%n", v, ring.size(), maxShare, maxKeys, buildMs);
+        }
+    }
+
+    // Sepertiga peer berkapasitas 2, sisanya 1: heterogen tapi mudah diperiksa
+    private static List<PeerInfo> synthetic(int n) {
+        List<PeerInfo> peers = new ArrayList<>();
+        for (int i = 0; i < n; i++) peers.add(new PeerInfo(i + 1, "10.0.0." + (i + 1), 5000, i % 3 == 0 ? 2 : 1));
+        return peers;
+    }
+
+    private static List<PeerInfo> load(String file) throws IOException {
+        List<PeerInfo> peers = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] parts = line.split(",");
+                int capacity = parts.length > 3 ? Integer.parseInt(parts[3].trim()) : 1;
+                peers.add(new PeerInfo(Integer.parseInt(parts[0].trim()), parts[1].trim(),
+                        Integer.parseInt(parts[2].trim()), capacity));
+            }
+        }
+        return peers;
+    }
+}
@@ -0,0 +1,168 @@
+package bench;
+
+import common.*;
+import java.io.*;
+
+/**
+ * Micro-benchmark protokol: ObjectStream lama vs frame biner.
+ * Mengukur byte di kabel dan ns/op encode/decode untuk tiap jenis pesan.
+ *
+ * Jalankan: java bench.WireBenchmark [iterasi]
+ */
+public class WireBenchmark {
+    private static final String FILENAME = "laporan-mingguan.csv";
+    private static final String ROUTE = "Node 3 → Node 3 → Node 17 → Node 22";
+    private static final byte[] DATA = new byte[4096];
+    private static final long KEY = KeySpace.hash(FILENAME);
+
+    private static long sink;
+
+    interface Codec {
+        byte[] encode() throws Exception;
+        void decode(byte[] wire) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        System.out.printf("%-16s %-8s %8s %12s %12s%n", "message", "format", "bytes", "encode ns", "decode ns");
+        run("SEARCH", legacySearch(), binarySearch(), iterations);
+        run("FORWARD_SEARCH", legacyForward(), binaryForward(), iterations);
+        run("UPLOAD(4KB)", legacyUpload(), binaryUpload(), iterations / 10);
+        run("DOWNLOAD", legacyDownload(), binaryDownload(), iterations);
+        System.out.println("(sink=" + sink + ")");
+    }
+
+    private static void run(String name, Codec legacy, Codec binary, int iterations) throws Exception {
+        report(name, "legacy", legacy, iterations);
+        report(name, "binary", binary, iterations);
+    }
+
+    private static void report(String name, String format, Codec codec, int iterations) throws Exception {
+        byte[] wire = codec.encode();
+
+        // warmup supaya JIT sudah stabil
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(codec.encode());
+        }
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.encode().length;
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(wire);
+        }
+        long t2 = System.nanoTime();
+
+        System.out.printf("%-16s %-8s %8d %12.1f %12.1f%n", name, format, wire.length,
+                (t1 - t0) / (double) iterations, (t2 - t1) / (double) iterations);
+    }
+
+    // ---- ObjectStream (format lama) ----
+
+    private static byte[] legacyEncode(Object... fields) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (Object f : fields) out.writeObject(f);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void legacyDecode(byte[] wire, int fields) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(wire))) {
+            for (int i = 0; i < fields; i++) {
+                sink += in.readObject().hashCode();
+            }
+        }
+    }
+
+    private static Codec legacySearch() {
+        return new Codec() {
+            public byte[] encode() throws Exception { return legacyEncode("SEARCH", FILENAME); }
+            public void decode(byte[] wire) throws Exception { legacyDecode(wire, 2); }
+        };
+    }
+
+    private static Codec legacyForward() {
+        return new Codec() {
+            public byte[] encode() throws Exception { return legacyEncode("FORWARD_SEARCH", KEY, 3, 2, ROUTE); }
+            public void decode(byte[] wire) throws Exception { legacyDecode(wire, 5); }
+        };
+    }
+
+    private static Codec legacyUpload() {
+        return new Codec() {
+            public byte[] encode() throws Exception { return legacyEncode("UPLOAD", FILENAME, 3, DATA); }
+            public void decode(byte[] wire) throws Exception { legacyDecode(wire, 4); }
+        };
+    }
+
+    private static Codec legacyDownload() {
+        return new Codec() {
+            public byte[] encode() throws Exception { return legacyEncode("DOWNLOAD", FILENAME); }
+            public void decode(byte[] wire) throws Exception { legacyDecode(wire, 2); }
+        };
+    }
+
+    // ---- Frame biner ----
+
+    private static byte[] binaryEncode(byte opcode, Payload.Writer payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Frame.HEADER_SIZE + 64);
+        new Frame(opcode, Frame.nextRequestId(), payload.toByteArray()).writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static Payload.Reader binaryDecode(byte[] wire) throws IOException {
+        return Frame.readFrom(new ByteArrayInputStream(wire)).reader();
+    }
+
+    private static Codec binarySearch() {
+        return new Codec() {
+            public byte[] encode() throws Exception {
+                return binaryEncode(Frame.SEARCH, new Payload.Writer().writeString(FILENAME));
+            }
+            public void decode(byte[] wire) throws Exception {
+                sink += binaryDecode(wire).readString().hashCode();
+            }
+        };
+    }
+
+    private static Codec binaryForward() {
+        return new Codec() {
+            public byte[] encode() throws Exception {
+                return binaryEncode(Frame.FORWARD_SEARCH, new Payload.Writer()
+                        .writeLong(KEY).writeInt(3).writeInt(2).writeByte(0));
+            }
+            public void decode(byte[] wire) throws Exception {
+                Payload.Reader r = binaryDecode(wire);
+                sink += r.readLong() + r.readInt() + r.readInt() + r.readByte();
+            }
+        };
+    }
+
+    private static Codec binaryUpload() {
+        return new Codec() {
+            public byte[] encode() throws Exception {
+                return binaryEncode(Frame.UPLOAD, new Payload.Writer(DATA.length + 64)
+                        .writeString(FILENAME).writeInt(3).writeBytes(DATA));
+            }
+            public void decode(byte[] wire) throws Exception {
+                Payload.Reader r = binaryDecode(wire);
+                sink += r.readString().hashCode() + r.readInt() + r.readBytes().length;
+            }
+        };
+    }
+
+    private static Codec binaryDownload() {
+        return new Codec() {
+            public byte[] encode() throws Exception {
+                return binaryEncode(Frame.DOWNLOAD, new Payload.Writer().writeString(FILENAME));
+            }
+            public void decode(byte[] wire) throws Exception {
+                sink += binaryDecode(wire).readString().hashCode();
+            }
+        };
+    }
+}
@@ -1,12 +1,17 @@
-
 package common;
 
 public class FileEntry {
     public String filename;
-    public int hash;
+    public long hash;
 
     public FileEntry(String filename) {
         this.filename = filename;
-        this.hash = Math.abs(filename.hashCode()) % 31;
+        this.hash = KeySpace.hash(filename);
+    }
+
+    // Key yang sudah diketahui (mis. dari indeks di disk), tanpa hashing ulang
+    public FileEntry(String filename, long hash) {
+        this.filename = filename;
+        this.hash = hash;
     }
 }
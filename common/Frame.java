@@ -0,0 +1,205 @@
+package common;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Satu frame protokol biner antar peer.
+ *
+ * Header tetap 12 byte (big-endian):
+ *   magic(2) | version(1) | opcode(1) | requestId(4) | length(4)
+ * lalu diikuti payload sepanjang length byte (lihat {@link Payload}).
+ *
+ * Balasan memakai opcode yang sama dengan bit REPLY_FLAG menyala dan
+ * requestId yang sama dengan permintaannya.
+ */
+public class Frame {
+    public static final int MAGIC = 0x5032;               // "P2", beda dari 0xACED milik ObjectStream
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    public static final int MAX_PAYLOAD = 256 * 1024 * 1024;
+
+    // Opcode
+    public static final byte SEARCH = 1;
+    public static final byte FORWARD_SEARCH = 2;
+    // UPLOAD/DOWNLOAD adalah transfer: frame berisi metadata lalu diikuti
+    // byte mentah file di koneksi khusus (bukan koneksi pool)
+    public static final byte UPLOAD = 3;
+    public static final byte DOWNLOAD = 4;
+    // Banyak key sekaligus: tiap node menjawab key miliknya, sisanya diteruskan
+    public static final byte BATCH_SEARCH = 5;
+    // Heartbeat untuk FailureDetector, payload kosong
+    public static final byte PING = 6;
+    // Keanggotaan dinamis (lihat peer.Membership)
+    public static final byte JOIN = 7;
+    public static final byte NOTIFY = 8;
+    public static final byte LEAVE = 9;
+    public static final byte FIND_SUCCESSOR = 10;
+    // Anti-entropy replika: daftar nama -> nama yang belum dimiliki (lihat peer.Replication)
+    public static final byte SYNC = 11;
+    // Upload per chunk (lihat peer.ChunkStore): tanya chunk yang belum ada,
+    // lalu UPLOAD_CHUNKS (transfer) hanya mengirim chunk itu
+    public static final byte MISSING_CHUNKS = 12;
+    public static final byte UPLOAD_CHUNKS = 13;
+    // Download swarm (lihat peer.SwarmDownload): manifest dari tiap replika,
+    // lalu GET_CHUNKS (transfer) untuk satu range chunk
+    public static final byte GET_MANIFEST = 14;
+    public static final byte GET_CHUNKS = 15;
+    // Metrik node dalam format teks (lihat peer.Metrics), payload kosong
+    public static final byte STATS = 16;
+    public static final byte REPLY_FLAG = (byte) 0x80;
+
+    // Status di byte pertama payload balasan
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_NOT_FOUND = 1;
+    public static final byte STATUS_ERROR = 2;
+
+    private static final AtomicInteger REQUEST_IDS = new AtomicInteger();
+
+    public final byte opcode;
+    public final int requestId;
+    public final byte[] payload;
+
+    public Frame(byte opcode, int requestId, byte[] payload) {
+        this.opcode = opcode;
+        this.requestId = requestId;
+        this.payload = payload;
+    }
+
+    public static int nextRequestId() {
+        return REQUEST_IDS.incrementAndGet();
+    }
+
+    public boolean isReply() {
+        return (opcode & REPLY_FLAG) != 0;
+    }
+
+    public byte command() {
+        return (byte) (opcode & ~REPLY_FLAG);
+    }
+
+    public Frame reply(byte[] replyPayload) {
+        return new Frame((byte) (opcode | REPLY_FLAG), requestId, replyPayload);
+    }
+
+    public Payload.Reader reader() {
+        return new Payload.Reader(payload);
+    }
+
+    public static boolean isTransfer(byte command) {
+        return command == UPLOAD || command == DOWNLOAD || command == UPLOAD_CHUNKS || command == GET_CHUNKS;
+    }
+
+    // Aman dikirim ulang kalau balasannya hilang: hanya membaca state penerima
+    public static boolean isIdempotent(byte command) {
+        switch (command) {
+            case SEARCH:
+            case FORWARD_SEARCH:
+            case BATCH_SEARCH:
+            case PING:
+            case FIND_SUCCESSOR:
+            case SYNC:
+            case MISSING_CHUNKS:
+            case GET_MANIFEST:
+            case STATS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Nama opcode untuk log dan metrik
+    public static String name(byte command) {
+        switch (command) {
+            case SEARCH: return "SEARCH";
+            case FORWARD_SEARCH: return "FORWARD_SEARCH";
+            case UPLOAD: return "UPLOAD";
+            case DOWNLOAD: return "DOWNLOAD";
+            case BATCH_SEARCH: return "BATCH_SEARCH";
+            case PING: return "PING";
+            case JOIN: return "JOIN";
+            case NOTIFY: return "NOTIFY";
+            case LEAVE: return "LEAVE";
+            case FIND_SUCCESSOR: return "FIND_SUCCESSOR";
+            case SYNC: return "SYNC";
+            case MISSING_CHUNKS: return "MISSING_CHUNKS";
+            case UPLOAD_CHUNKS: return "UPLOAD_CHUNKS";
+            case GET_MANIFEST: return "GET_MANIFEST";
+            case GET_CHUNKS: return "GET_CHUNKS";
+            case STATS: return "STATS";
+            default: return "OP_" + command;
+        }
+    }
+
+    public static boolean isMagic(int b0, int b1) {
+        return ((b0 << 8) | b1) == MAGIC;
+    }
+
+    public int wireSize() {
+        return HEADER_SIZE + payload.length;
+    }
+
+    public byte[] toBytes() {
+        byte[] buf = new byte[HEADER_SIZE + payload.length];
+        buf[0] = (byte) (MAGIC >>> 8);
+        buf[1] = (byte) MAGIC;
+        buf[2] = VERSION;
+        buf[3] = opcode;
+        Payload.putInt(buf, 4, requestId);
+        Payload.putInt(buf, 8, payload.length);
+        System.arraycopy(payload, 0, buf, HEADER_SIZE, payload.length);
+        return buf;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(toBytes());
+        out.flush();
+    }
+
+    public void writeTo(WritableByteChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(toBytes());
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    /**
+     * Baca satu frame lengkap. Mengembalikan null kalau stream sudah
+     * ditutup rapi sebelum header dimulai.
+     */
+    public static Frame readFrom(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int first = in.read();
+        if (first < 0) return null;
+        header[0] = (byte) first;
+        readFully(in, header, 1, HEADER_SIZE - 1);
+
+        int length = Payload.getInt(header, 8);
+        checkHeader(header[0] & 0xFF, header[1] & 0xFF, header[2], length);
+        byte[] payload = new byte[length];
+        readFully(in, payload, 0, length);
+        return new Frame(header[3], Payload.getInt(header, 4), payload);
+    }
+
+    // Validasi header; dipakai juga oleh engine NIO yang mem-parse dari ByteBuffer
+    public static void checkHeader(int b0, int b1, byte version, int length) throws StreamCorruptedException {
+        if (!isMagic(b0, b1)) {
+            throw new StreamCorruptedException("Bad frame magic");
+        }
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported frame version " + version);
+        }
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new StreamCorruptedException("Bad frame length " + length);
+        }
+    }
+
+    static void readFully(InputStream in, byte[] buf, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(buf, off, len);
+            if (n < 0) throw new EOFException();
+            off += n;
+            len -= n;
+        }
+    }
+}
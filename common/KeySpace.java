@@ -0,0 +1,97 @@
+package common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Ruang identifier m-bit untuk id peer dan key file.
+ * Key = BITS bit pertama dari digest kriptografis (default SHA-1, 64 bit),
+ * disimpan di long dan dibandingkan secara unsigned.
+ *
+ * Atur lewat -Ddht.bits=1..64 dan -Ddht.hash=SHA-1|SHA-256|...
+ *
+ * Tiap peer menempati capacity * VNODES posisi (virtual node) supaya
+ * pembagian key rata dan node yang lebih besar mendapat lebih banyak.
+ * -Ddht.vnodes harus sama di semua node, seperti dht.bits.
+ */
+public class KeySpace {
+    public static final int BITS = Math.max(1, Math.min(64, Integer.getInteger("dht.bits", 64)));
+    public static final String ALGORITHM = System.getProperty("dht.hash", "SHA-1");
+    public static final long MASK = BITS == 64 ? -1L : (1L << BITS) - 1;
+    public static final int VNODES = Math.max(1, Integer.getInteger("dht.vnodes", 1));
+    // Batas posisi per peer, supaya capacity yang salah ketik tidak membengkakkan ring
+    public static final int MAX_VNODES = 1024;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Hash " + ALGORITHM + " tidak tersedia", e);
+        }
+    });
+
+    public static long hash(String s) {
+        byte[] d = DIGEST.get().digest(s.getBytes(StandardCharsets.UTF_8));
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (d[i] & 0xFF);
+        }
+        return (v >>> (64 - BITS)) & MASK;
+    }
+
+    // Posisi peer di ring diturunkan dari alamatnya
+    public static long peerKey(String ip, int port) {
+        return hash(ip + ":" + port);
+    }
+
+    // Posisi virtual node ke-j; j = 0 adalah posisi utama (peerKey), jadi ring tanpa vnode tidak berubah
+    public static long vnodeKey(String ip, int port, int j) {
+        return j == 0 ? peerKey(ip, port) : hash(ip + ":" + port + "#" + j);
+    }
+
+    // Jumlah posisi peer dengan kapasitas tertentu
+    public static int vnodes(int capacity, int perCapacity) {
+        return (int) Math.min(MAX_VNODES, (long) Math.max(1, capacity) * Math.max(1, perCapacity));
+    }
+
+    // (a + 2^i) mod 2^BITS
+    public static long fingerStart(long a, int i) {
+        return (a + (1L << i)) & MASK;
+    }
+
+    public static int compare(long a, long b) {
+        return Long.compareUnsigned(a, b);
+    }
+
+    // x di (a, b] pada ring; a == b berarti seluruh ring
+    public static boolean inHalfOpen(long x, long a, long b) {
+        if (a == b) return true;
+        if (compare(a, b) < 0) return compare(x, a) > 0 && compare(x, b) <= 0;
+        return compare(x, a) > 0 || compare(x, b) <= 0;
+    }
+
+    // x di (a, b) pada ring
+    public static boolean inOpen(long x, long a, long b) {
+        if (a == b) return x != a;
+        if (compare(a, b) < 0) return compare(x, a) > 0 && compare(x, b) < 0;
+        return compare(x, a) > 0 || compare(x, b) < 0;
+    }
+
+    public static String format(long key) {
+        String hex = Long.toHexString(key);
+        int digits = (BITS + 3) / 4;
+        StringBuilder sb = new StringBuilder(digits);
+        for (int i = hex.length(); i < digits; i++) sb.append('0');
+        return sb.append(hex).toString();
+    }
+
+    // "0x..." heksadesimal, selain itu desimal unsigned
+    public static long parse(String s) {
+        s = s.trim();
+        if (s.startsWith("0x") || s.startsWith("0X")) {
+            return Long.parseUnsignedLong(s.substring(2), 16) & MASK;
+        }
+        return Long.parseUnsignedLong(s) & MASK;
+    }
+}
@@ -0,0 +1,160 @@
+package common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encoding field primitif di dalam payload frame: int/long big-endian,
+ * string sebagai panjang(4) + UTF-8, byte[] sebagai panjang(4) + isi.
+ * PeerInfo sebagai id, ip, port.
+ */
+public class Payload {
+
+    public static class Writer {
+        private byte[] buf;
+        private int pos;
+
+        public Writer() {
+            this(64);
+        }
+
+        public Writer(int capacity) {
+            buf = new byte[Math.max(capacity, 16)];
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        public Writer writeByte(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+            return this;
+        }
+
+        public Writer writeInt(int v) {
+            ensure(4);
+            putInt(buf, pos, v);
+            pos += 4;
+            return this;
+        }
+
+        public Writer writeLong(long v) {
+            ensure(8);
+            putInt(buf, pos, (int) (v >>> 32));
+            putInt(buf, pos + 4, (int) v);
+            pos += 8;
+            return this;
+        }
+
+        public Writer writeString(String s) {
+            return writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public Writer writeBytes(byte[] data) {
+            ensure(4 + data.length);
+            putInt(buf, pos, data.length);
+            System.arraycopy(data, 0, buf, pos + 4, data.length);
+            pos += 4 + data.length;
+            return this;
+        }
+
+        // PeerInfo sebagai id(4) | ip | port(4); key dihitung ulang oleh penerima
+        public Writer writePeer(PeerInfo p) {
+            return writeInt(p.id).writeString(p.ip).writeInt(p.port);
+        }
+
+        public byte[] toByteArray() {
+            return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+        }
+    }
+
+    public static class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        public Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        private void need(int n) throws EOFException {
+            // Panjang negatif dari kabel juga ditolak, bukan jadi posisi mundur
+            if (n < 0 || n > buf.length - pos) throw new EOFException("Payload too short");
+        }
+
+        public byte readByte() throws EOFException {
+            need(1);
+            return buf[pos++];
+        }
+
+        public int readInt() throws EOFException {
+            need(4);
+            int v = getInt(buf, pos);
+            pos += 4;
+            return v;
+        }
+
+        /**
+         * Jumlah elemen yang tiap elemennya paling sedikit minBytes di kabel.
+         * Jumlah yang tidak mungkin muat di sisa payload ditolak sebelum
+         * array dialokasikan.
+         */
+        public int readCount(int minBytes) throws IOException {
+            int n = readInt();
+            if (n < 0 || (long) n * minBytes > buf.length - pos) {
+                throw new StreamCorruptedException("Jumlah elemen tidak masuk akal: " + n);
+            }
+            return n;
+        }
+
+        public long readLong() throws EOFException {
+            need(8);
+            long v = ((long) getInt(buf, pos) << 32) | (getInt(buf, pos + 4) & 0xFFFFFFFFL);
+            pos += 8;
+            return v;
+        }
+
+        public String readString() throws EOFException {
+            int len = readInt();
+            need(len);
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        public byte[] readBytes() throws EOFException {
+            int len = readInt();
+            need(len);
+            byte[] data = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            return data;
+        }
+
+        public PeerInfo readPeer() throws EOFException {
+            int id = readInt();
+            String ip = readString();
+            return new PeerInfo(id, ip, readInt());
+        }
+
+        public boolean hasRemaining() {
+            return pos < buf.length;
+        }
+    }
+
+    static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    static int getInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+             | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+}
@@ -1,14 +1,24 @@
-
 package common;
 
 public class PeerInfo {
     public int id;
     public String ip;
     public int port;
+    public long key;      // posisi di ring (lihat KeySpace)
+    // Bobot kapasitas yang dideklarasikan node: jumlah virtual node = capacity * KeySpace.VNODES
+    public int capacity = 1;
+    // Versi pengumuman kapasitas (waktu start node itu, ms); 0 dari node lama atau peerlist
+    public long capacityVersion;
 
     public PeerInfo(int id, String ip, int port) {
         this.id = id;
         this.ip = ip;
         this.port = port;
+        this.key = KeySpace.peerKey(ip, port);
+    }
+
+    public PeerInfo(int id, String ip, int port, int capacity) {
+        this(id, ip, port);
+        this.capacity = Math.max(1, capacity);
     }
 }
@@ -0,0 +1,116 @@
+package bench.jmh;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Bandingkan hasil JMH baru dengan jmh/baseline.csv. Keduanya output
+ * "-rf csv". Benchmark yang lebih buruk dari ambang (default 10%) ditandai
+ * REGRESI dan exit code jadi 1, jadi bisa dipakai sebagai gate.
+ *
+ *   java -jar jmh/target/benchmarks.jar -rf csv -rff target/jmh.csv
+ *   java -cp jmh/target/benchmarks.jar bench.jmh.CompareBaseline jmh/baseline.csv target/jmh.csv [ambang%]
+ *
+ * Untuk memperbarui baseline, jalankan ulang dengan -rff jmh/baseline.csv.
+ */
+public class CompareBaseline {
+
+    static class Row {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Row(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        // thrpt: makin besar makin baik; avgt/sample/ss: makin kecil makin baik
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CompareBaseline <baseline.csv> <hasil.csv> [ambang%]");
+            System.exit(2);
+        }
+        Map<String, Row> baseline = read(Paths.get(args[0]));
+        Map<String, Row> current = read(Paths.get(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "benchmark", "baseline", "sekarang", "delta");
+        for (Map.Entry<String, Row> e : current.entrySet()) {
+            Row now = e.getValue();
+            Row base = baseline.get(e.getKey());
+            if (base == null) {
+                System.out.printf("%-70s %14s %14.2f %9s  (baru)%n", e.getKey(), "-", now.score, "");
+                continue;
+            }
+            double delta = (now.score - base.score) / base.score;
+            double worse = base.higherIsBetter() ? -delta : delta;
+            // Perubahan yang masih di dalam error gabungan tidak dianggap regresi
+            boolean noise = Math.abs(now.score - base.score) <= now.error + base.error;
+            String mark = worse > threshold && !noise ? "  REGRESI" : "";
+            if (!mark.isEmpty()) regressions++;
+            System.out.printf("%-70s %14.2f %14.2f %+8.1f%% %s%s%n",
+                    e.getKey(), base.score, now.score, delta * 100, now.unit, mark);
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) System.out.printf("%-70s (tidak dijalankan)%n", name);
+        }
+        System.out.println(regressions == 0 ? "Tidak ada regresi" : regressions + " regresi di atas " + threshold * 100 + "%");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    // Kunci = nama benchmark + nilai @Param, mis. "RoutingBenchmark.successor nodes=64"
+    static Map<String, Row> read(Path csv) throws IOException {
+        List<String> lines = Files.readAllLines(csv);
+        List<String> header = split(lines.get(0));
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            List<String> f = split(line);
+            StringBuilder key = new StringBuilder(f.get(0).replaceFirst("^.*\\.(\\w+\\.\\w+(:\\w+)?)$", "$1"));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !f.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(f.get(i));
+                }
+            }
+            double err = f.get(error).isEmpty() || f.get(error).equals("NaN") ? 0 : Double.parseDouble(f.get(error));
+            rows.put(key.toString(), new Row(f.get(mode), Double.parseDouble(f.get(score)), err, f.get(unit)));
+        }
+        return rows;
+    }
+
+    // CSV JMH: field dalam tanda kutip, angka tanpa kutip
+    private static List<String> split(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString());
+        return out;
+    }
+}
@@ -0,0 +1,39 @@
+package bench.jmh;
+
+import common.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Key file di ring: new FileEntry(nama) meng-hash nama (KeySpace.ALGORITHM,
+ * default SHA-1) lalu memotongnya ke KeySpace.BITS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileEntryBenchmark {
+
+    @Param({"12", "64"})
+    public int nameLength;
+
+    private final String[] names = new String[1024];
+    private int next;
+
+    @Setup
+    public void setup() {
+        StringBuilder pad = new StringBuilder();
+        while (pad.length() < nameLength) pad.append("laporan-mingguan-");
+        for (int i = 0; i < names.length; i++) {
+            String suffix = "-" + i + ".csv";
+            names[i] = pad.substring(0, Math.max(0, nameLength - suffix.length())) + suffix;
+        }
+    }
+
+    @Benchmark
+    public long fileEntryHash() {
+        return new FileEntry(names[next++ & 1023]).hash;
+    }
+}
@@ -0,0 +1,115 @@
+package bench.jmh;
+
+import common.*;
+import peer.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Jalur routing FORWARD_SEARCH: getNextNode (successor hidup berikutnya
+ * dari snapshot Ring) dan keputusan di FingerTable untuk satu key (pemilik,
+ * replika, next hop).
+ *
+ * Tiap peer adalah engine NIO sungguhan di loopback supaya FailureDetector
+ * melihat semuanya hidup, sama seperti di ring yang sehat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dp2p.log.file=target/jmh-routing-log.txt")
+public class RoutingBenchmark {
+
+    @Param({"16", "64"})
+    public int nodes;
+
+    private final List<ServerEngine> engines = new ArrayList<>();
+    private PeerNode node;
+    private FingerTable table;
+    private long[] keys;
+    private int[] ids;
+    private int next;
+
+    private static final ServerHandler PONG = new ServerHandler() {
+        @Override
+        public Frame handleFrame(Frame request) {
+            return request.reply(new byte[]{Frame.STATUS_OK});
+        }
+
+        @Override
+        public void handleTransfer(Frame request, ByteBuffer prefix, SocketChannel channel) {
+        }
+
+        @Override
+        public void handleLegacy(InputStream in, OutputStream out) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        List<PeerInfo> peers = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            ServerEngine engine = new NioServerEngine(1, 64, 1, 1);
+            engine.start(0, PONG);
+            engines.add(engine);
+            peers.add(new PeerInfo(i + 1, "127.0.0.1", engine.getPort()));
+        }
+        node = new PeerNode(1, "127.0.0.1", peers.get(0).port);
+        node.peers.addAll(peers);
+        table = new FingerTable(node.myId, peers);
+        node.fingerTable = table;
+
+        node.detector.start(node.peers, node.myId);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!allAlive(peers)) {
+            if (System.currentTimeMillis() > deadline) throw new IOException("Peer loopback tidak hidup semua");
+            Thread.sleep(100);
+        }
+
+        Random rnd = new Random(42);
+        keys = new long[1024];
+        ids = new int[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = KeySpace.hash("file-" + rnd.nextInt());
+            ids[i] = 1 + rnd.nextInt(nodes);
+        }
+    }
+
+    private boolean allAlive(List<PeerInfo> peers) {
+        for (PeerInfo p : peers) {
+            if (!node.detector.isAlive(p)) return false;
+        }
+        return true;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        node.detector.stop();
+        for (ServerEngine e : engines) e.stop();
+    }
+
+    @Benchmark
+    public PeerInfo getNextNode() {
+        return node.getNextNode(ids[next++ & 1023]);
+    }
+
+    @Benchmark
+    public PeerInfo successor() {
+        return table.successor(keys[next++ & 1023]);
+    }
+
+    // Yang dihitung routeSearch sebelum meneruskan: pemilik, replika, lalu next hop
+    @Benchmark
+    public Object forwardSearchDecision() {
+        long key = keys[next++ & 1023];
+        if (table.owns(key)) return table.getOwner();
+        List<PeerInfo> replicas = table.replicas(key, 3);
+        FingerTable.Step step = table.step(key);
+        return step.done ? replicas : step.peer;
+    }
+}
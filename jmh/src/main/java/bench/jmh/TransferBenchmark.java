@@ -0,0 +1,97 @@
+package bench.jmh;
+
+import common.*;
+import peer.*;
+import java.io.*;
+import java.net.ServerSocket;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * UPLOAD dan DOWNLOAD lewat loopback ke server peer sungguhan (PeerNode)
+ * di JVM yang sama. Upload memakai jalur chunk lengkap (potong, tanya chunk
+ * yang belum ada, kirim); chunk store dikosongkan sebelum tiap upload
+ * supaya semua byte benar-benar terkirim. Counter bytes = byte/detik.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dp2p.log.file=target/jmh-node/log.txt")
+public class TransferBenchmark {
+    private static final Path WORK = Paths.get("target/jmh-node");
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private PeerNode node;
+    private PeerInfo self;
+    private File source;
+    private File dest;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        deleteTree(WORK);
+        Files.createDirectories(WORK);
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        node = new PeerNode(1, "127.0.0.1", port, WORK, AsyncLog.fromSystemProperties());
+        self = new PeerInfo(node.myId, node.myIp, node.myPort);
+        node.peers.add(self);
+        node.fingerTable = new FingerTable(node.myId, node.peers);
+        node.startServer();
+
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        source = WORK.resolve("bench-" + size + ".bin").toFile();
+        Files.write(source.toPath(), data);
+        dest = WORK.resolve("download-" + size + ".bin").toFile();
+        PeerClient.upload(self, source, node.myId, FileTransfer.NO_PROGRESS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        node.engine.stop();
+    }
+
+    public static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyStore {
+        @Setup(Level.Invocation)
+        public void clear() throws IOException {
+            deleteTree(WORK.resolve("chunks"));
+        }
+    }
+
+    @Benchmark
+    public void upload(EmptyStore empty, Bytes counter) throws IOException {
+        PeerClient.upload(self, source, node.myId, FileTransfer.NO_PROGRESS);
+        counter.bytes += size;
+    }
+
+    @Benchmark
+    public boolean download(Bytes counter) throws IOException {
+        boolean ok = PeerClient.download(self, source.getName(), dest, FileTransfer.NO_PROGRESS);
+        counter.bytes += size;
+        return ok;
+    }
+}
@@ -0,0 +1,111 @@
+package bench.jmh;
+
+import common.*;
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encode/decode pesan request: ObjectStream format lama vs frame biner,
+ * versi JMH dari bench.WireBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireBenchmark {
+    private static final String FILENAME = "laporan-mingguan.csv";
+    private static final String ROUTE = "Node 3 → Node 3 → Node 17 → Node 22";
+    private static final byte[] DATA = new byte[4096];
+    private static final long KEY = KeySpace.hash(FILENAME);
+
+    @Param({"SEARCH", "FORWARD_SEARCH", "UPLOAD", "DOWNLOAD"})
+    public String message;
+
+    private Object[] fields;
+    private byte[] legacyWire;
+    private byte[] binaryWire;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (message) {
+            case "SEARCH":
+                fields = new Object[]{"SEARCH", FILENAME};
+                break;
+            case "FORWARD_SEARCH":
+                fields = new Object[]{"FORWARD_SEARCH", KEY, 3, 2, ROUTE};
+                break;
+            case "UPLOAD":
+                fields = new Object[]{"UPLOAD", FILENAME, 3, DATA};
+                break;
+            default:
+                fields = new Object[]{"DOWNLOAD", FILENAME};
+        }
+        legacyWire = legacyEncode();
+        binaryWire = binaryEncode();
+    }
+
+    @Benchmark
+    public byte[] legacyEncode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (Object f : fields) out.writeObject(f);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public void legacyDecode(Blackhole bh) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(legacyWire))) {
+            for (int i = 0; i < fields.length; i++) bh.consume(in.readObject());
+        }
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() throws IOException {
+        Payload.Writer w;
+        byte opcode;
+        switch (message) {
+            case "SEARCH":
+                opcode = Frame.SEARCH;
+                w = new Payload.Writer().writeString(FILENAME);
+                break;
+            case "FORWARD_SEARCH":
+                opcode = Frame.FORWARD_SEARCH;
+                // Biner tidak membawa rute lagi, hanya flags (jejak hop dibangun di jalur balik)
+                w = new Payload.Writer(17).writeLong(KEY).writeInt(3).writeInt(2).writeByte(0);
+                break;
+            case "UPLOAD":
+                opcode = Frame.UPLOAD;
+                w = new Payload.Writer(DATA.length + 64).writeString(FILENAME).writeInt(3).writeBytes(DATA);
+                break;
+            default:
+                opcode = Frame.DOWNLOAD;
+                w = new Payload.Writer().writeString(FILENAME);
+        }
+        return new Frame(opcode, Frame.nextRequestId(), w.toByteArray()).toBytes();
+    }
+
+    @Benchmark
+    public void binaryDecode(Blackhole bh) throws IOException {
+        Payload.Reader r = Frame.readFrom(new ByteArrayInputStream(binaryWire)).reader();
+        switch (message) {
+            case "FORWARD_SEARCH":
+                bh.consume(r.readLong());
+                bh.consume(r.readInt());
+                bh.consume(r.readInt());
+                bh.consume(r.readByte());
+                break;
+            case "UPLOAD":
+                bh.consume(r.readString());
+                bh.consume(r.readInt());
+                bh.consume(r.readBytes());
+                break;
+            default:
+                bh.consume(r.readString());
+        }
+    }
+}
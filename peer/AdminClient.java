@@ -0,0 +1,217 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Klien untuk {@link AdminServer}: satu koneksi per perintah, kecuali
+ * watch() yang terus terbuka. Dipakai oleh PeerGUI dan sebagai CLI:
+ *
+ *   java peer.AdminClient <adminPort> status|files|search <nama>|batch <a,b>
+ *                         |upload <path>|download <nama> [dest]|stats [id]|watch|leave
+ *
+ * Token dibaca dari {@link AdminServer#tokenFile}, jadi hanya user yang
+ * menjalankan daemon yang bisa memakainya.
+ */
+public class AdminClient {
+    private final String host;
+    private final int port;
+
+    public AdminClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    // Error yang dilaporkan daemon (baris ERR); koneksinya sendiri sehat
+    public static class AdminError extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public AdminError(String message) {
+            super(message);
+        }
+    }
+
+    public static class Status {
+        public int myId;
+        public String myIp;
+        public int myPort;
+        public int replicas;
+        public int writeQuorum;
+        public final List<PeerInfo> peers = new ArrayList<>();
+        public final Map<Integer, Boolean> alive = new HashMap<>();
+        public long ringVersion;
+        public final List<Integer> ringOrder = new ArrayList<>();
+        public String cache;
+
+        public boolean isAlive(PeerInfo peer) {
+            return alive.getOrDefault(peer.id, false);
+        }
+
+        // Anggota ring daemon searah ring (hanya yang hidup), sama dengan yang dipakai routing
+        public List<PeerInfo> ring() {
+            List<PeerInfo> ring = new ArrayList<>(ringOrder.size());
+            for (int id : ringOrder) {
+                for (PeerInfo p : peers) {
+                    if (p.id == id) ring.add(p);
+                }
+            }
+            return ring;
+        }
+    }
+
+    /**
+     * Kirim satu perintah; tiap baris balasan (dipecah per TAB) diberikan ke
+     * onLine sampai OK. ERR dilempar sebagai AdminError.
+     */
+    public void call(Consumer<String[]> onLine, String... request) throws IOException {
+        try (Socket s = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)) {
+            authenticate(in, out);
+            out.write(String.join("\t", request) + "\n");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] f = line.split("\t", -1);
+                if (f[0].equals("OK")) return;
+                if (f[0].equals("ERR")) throw new AdminError(f.length > 1 ? f[1] : "error");
+                onLine.accept(f);
+            }
+            throw new EOFException("Koneksi admin ditutup sebelum OK");
+        }
+    }
+
+    // Baris AUTH sebelum perintah apa pun; daemon membalas OK atau ERR lalu menutup koneksi
+    private void authenticate(BufferedReader in, Writer out) throws IOException {
+        String token;
+        try {
+            token = new String(Files.readAllBytes(AdminServer.tokenFile(port)), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            throw new IOException("Token admin tidak ditemukan di " + e.getFile()
+                    + " (daemon dijalankan user lain atau -Dp2p.admin.tokenDir berbeda?)");
+        }
+        out.write("AUTH\t" + token + "\n");
+        out.flush();
+        String line = in.readLine();
+        if (line == null) throw new EOFException("Koneksi admin ditutup saat AUTH");
+        String[] f = line.split("\t", -1);
+        if (f[0].equals("ERR")) throw new AdminError(f.length > 1 ? f[1] : "error");
+    }
+
+    public Status status() throws IOException {
+        Status st = new Status();
+        call(f -> {
+            switch (f[0]) {
+                case "NODE":
+                    st.myId = Integer.parseInt(f[1]);
+                    st.myIp = f[2];
+                    st.myPort = Integer.parseInt(f[3]);
+                    st.replicas = Integer.parseInt(f[4]);
+                    st.writeQuorum = Integer.parseInt(f[5]);
+                    break;
+                case "MEMBER": {
+                    // Kapasitas tidak ada dari daemon versi lama
+                    PeerInfo p = new PeerInfo(Integer.parseInt(f[1]), f[2], Integer.parseInt(f[3]),
+                            f.length > 5 ? Integer.parseInt(f[5]) : 1);
+                    st.peers.add(p);
+                    st.alive.put(p.id, f[4].equals("1"));
+                    break;
+                }
+                case "RING":
+                    st.ringVersion = Long.parseLong(f[1]);
+                    for (int i = 2; i < f.length; i++) st.ringOrder.add(Integer.parseInt(f[i]));
+                    break;
+                case "CACHE":
+                    st.cache = f[1];
+                    break;
+                default:
+            }
+        }, "STATUS");
+        return st;
+    }
+
+    public List<FileEntry> files() throws IOException {
+        List<FileEntry> files = new ArrayList<>();
+        call(f -> {
+            if (f[0].equals("FILE")) files.add(new FileEntry(f[1], KeySpace.parse(f[2])));
+        }, "FILES");
+        return files;
+    }
+
+    // Baris TEXT dari perintah apa pun (SEARCH, BATCH, STATS, ...)
+    public List<String> text(String... request) throws IOException {
+        return transfer(FileTransfer.NO_PROGRESS, request);
+    }
+
+    // Seperti text(), ditambah PROGRESS untuk UPLOAD dan DOWNLOAD
+    public List<String> transfer(FileTransfer.Listener listener, String... request) throws IOException {
+        List<String> lines = new ArrayList<>();
+        call(f -> {
+            if (f[0].equals("TEXT")) lines.add(f[1]);
+            else if (f[0].equals("PROGRESS")) listener.onProgress(Long.parseLong(f[1]), Long.parseLong(f[2]));
+        }, request);
+        return lines;
+    }
+
+    /**
+     * Event dari daemon (field setelah "EVENT", mis. {"FILE_ADDED", nama,
+     * key, pengirim}) sampai koneksi putus. Blocking: panggil dari thread
+     * sendiri.
+     */
+    public void watch(Consumer<String[]> onEvent) throws IOException {
+        try (Socket s = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)) {
+            authenticate(in, out);
+            out.write("WATCH\n");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                if (f[0].equals("EVENT")) onEvent.accept(Arrays.copyOfRange(f, 1, f.length));
+                else if (f[0].equals("ERR")) throw new AdminError(f.length > 1 ? f[1] : "error");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java peer.AdminClient <adminPort> status|files|search <nama>|batch <a,b>"
+                    + "|upload <path>|download <nama> [dest]|stats [id]|distribution|watch|leave");
+            System.exit(1);
+        }
+        AdminClient client = new AdminClient("127.0.0.1", Integer.parseInt(args[0]));
+        String[] request = Arrays.copyOfRange(args, 1, args.length);
+        request[0] = request[0].toUpperCase(Locale.ROOT);
+        // Path relatif dari sudut pandang CLI, bukan direktori kerja daemon; dest download tetap relatif ke downloads/ daemon
+        if (request.length > 1 && request[0].equals("UPLOAD")) request[1] = new File(request[1]).getAbsolutePath();
+
+        try {
+            if (request[0].equals("WATCH")) {
+                client.watch(f -> System.out.println(String.join(" ", f)));
+            } else {
+                client.call(f -> {
+                    if (f[0].equals("PROGRESS")) {
+                        long total = Long.parseLong(f[2]);
+                        System.out.print("\r" + (total == 0 ? 100 : Long.parseLong(f[1]) * 100 / total) + "%");
+                        if (f[1].equals(f[2])) System.out.println();
+                    } else if (f[0].equals("TEXT")) {
+                        System.out.println(f[1]);
+                    } else {
+                        System.out.println(String.join("\t", f));
+                    }
+                }, request);
+            }
+        } catch (AdminError e) {
+            System.out.println("❌ " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Antarmuka admin node: protokol teks per baris di loopback, dipakai oleh
+ * CLI ({@link AdminClient}) dan GUI, atau langsung lewat nc.
+ *
+ * Request satu baris: perintah lalu argumen dipisah TAB (atau spasi kalau
+ * tidak ada TAB). Balasan beberapa baris "JENIS\tfield..." dan diakhiri
+ * "OK" atau "ERR\tpesan":
+ *
+ *   STATUS                 NODE, MEMBER per anggota (dengan kapasitas), RING (versi lalu id searah ring), CACHE
+ *   FILES                  FILE per file di node ini
+ *   SEARCH nama|0xkey      TEXT (hop, rute dan waktu per hop)
+ *   BATCH a,b,0xkey        TEXT per key
+ *   UPLOAD path            PROGRESS, TEXT; path dibaca oleh daemon
+ *   DOWNLOAD nama [dest]   PROGRESS, TEXT; dest relatif ke downloads/, default downloads/nama
+ *   STATS [nodeId]         TEXT metrik Prometheus
+ *   DISTRIBUTION           TEXT bagian ruang key, file dan byte per node fisik
+ *   WATCH                  EVENT terus-menerus sampai koneksi ditutup
+ *   LEAVE                  keluar dari ring lalu proses berhenti
+ *
+ * Baris pertama tiap koneksi harus "AUTH\ttoken" (dibalas OK). Token acak
+ * dibuat tiap start dan ditulis ke file yang hanya bisa dibaca pemilik
+ * proses, -Dp2p.admin.tokenDir (default ~/.p2p)/admin-<port>.token;
+ * AdminClient membacanya dari sana. Loopback saja tidak cukup di mesin
+ * bersama: UPLOAD membaca file apa pun yang bisa dibaca proses ini dan
+ * LEAVE menghentikan node. DOWNLOAD hanya menulis di bawah downloads/.
+ *
+ * Port dari -Dp2p.admin.port (default port peer + 1000, 0 = port bebas).
+ */
+public class AdminServer {
+    private final PeerNode node;
+    private final int port;
+    private ServerSocket server;
+    private byte[] token;
+    private final List<BlockingQueue<String>> watchers = new CopyOnWriteArrayList<>();
+
+    public AdminServer(PeerNode node, int port) {
+        this.node = node;
+        this.port = port;
+    }
+
+    public static AdminServer fromSystemProperties(PeerNode node) {
+        return new AdminServer(node, Integer.getInteger("p2p.admin.port", node.myPort + 1000));
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Thread accept bukan daemon: pada mode headless thread inilah yang
+     * menjaga proses tetap hidup sampai LEAVE atau sinyal berhenti.
+     */
+    public void start() throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        token = writeToken(tokenFile(getPort()));
+        node.listeners.add(new PeerNode.Listener() {
+            @Override
+            public void onFileReceived(String filename, long hash, String sender) {
+                event("FILE_ADDED", filename, KeySpace.format(hash), sender);
+            }
+
+            @Override
+            public void onFileRemoved(String filename) {
+                event("FILE_REMOVED", filename);
+            }
+
+            @Override
+            public void onMembershipChanged() {
+                event("MEMBERS");
+            }
+        });
+        node.detector.addListener(() -> event("STATUS"));
+
+        Thread accept = new Thread(this::acceptLoop, "admin-accept-" + getPort());
+        accept.start();
+    }
+
+    public void stop() {
+        try {
+            if (server != null) {
+                server.close();
+                Files.deleteIfExists(tokenFile(getPort()));
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    public static Path tokenFile(int adminPort) {
+        Path dir = Paths.get(System.getProperty("p2p.admin.tokenDir", System.getProperty("user.home") + "/.p2p"));
+        return dir.resolve("admin-" + adminPort + ".token");
+    }
+
+    // Ditulis ke file sementara ber-permission pemilik saja lalu di-rename, jadi tidak pernah terbaca orang lain
+    private static byte[] writeToken(Path file) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        String hex = Manifest.hex(random);
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            Files.createDirectories(file.getParent(),
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(file.getParent());
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        if (posix) {
+            Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tmp);
+        }
+        Files.write(tmp, hex.getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return hex.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                Thread t = new Thread(() -> serve(s), "admin-conn");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) node.log("Admin: accept gagal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Event dikirim lewat antrean per watcher, jadi thread node tidak pernah menunggu socket admin
+    private void event(String... fields) {
+        String line = line("EVENT", fields);
+        for (BlockingQueue<String> q : watchers) q.offer(line);
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(
+                     new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)))) {
+            String request;
+            boolean authed = false;
+            while ((request = in.readLine()) != null) {
+                if (request.isBlank()) continue;
+                if (!authed) {
+                    if (!authorized(request)) {
+                        out.println(line("ERR", "Token admin salah atau tidak ada"));
+                        return;
+                    }
+                    authed = true;
+                    out.println("OK");
+                    out.flush();
+                    continue;
+                }
+                String[] args = request.contains("\t") ? request.split("\t") : request.trim().split(" +");
+                try {
+                    if (!handle(args, out)) return;
+                    out.println("OK");
+                } catch (Exception e) {
+                    out.println(line("ERR", String.valueOf(e.getMessage())));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // klien menutup koneksi
+        }
+    }
+
+    private boolean authorized(String request) {
+        String[] f = request.contains("\t") ? request.split("\t") : request.trim().split(" +");
+        return f.length == 2 && f[0].equals("AUTH")
+                && MessageDigest.isEqual(token, f[1].getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // false: koneksi selesai (WATCH diputus, LEAVE)
+    private boolean handle(String[] args, PrintWriter out) throws Exception {
+        String command = args[0].toUpperCase(Locale.ROOT);
+        switch (command) {
+            case "STATUS":
+                status(out);
+                return true;
+            case "FILES":
+                for (FileEntry f : node.localFiles.snapshot()) out.println(line("FILE", f.filename, KeySpace.format(f.hash)));
+                return true;
+            case "SEARCH":
+                search(arg(args, 1, "nama file atau key"), out);
+                return true;
+            case "BATCH":
+                batch(arg(args, 1, "daftar nama/key"), out);
+                return true;
+            case "UPLOAD":
+                upload(new File(arg(args, 1, "path file")), out);
+                return true;
+            case "DOWNLOAD": {
+                String name = arg(args, 1, "nama file");
+                download(name, downloadPath(args.length > 2 ? args[2] : name), out);
+                return true;
+            }
+            case "STATS":
+                stats(args.length > 1 ? Integer.parseInt(args[1]) : node.myId, out);
+                return true;
+            case "DISTRIBUTION":
+                for (String l : Distribution.report(Distribution.collect(node))) text(out, l);
+                return true;
+            case "WATCH":
+                watch(out);
+                return false;
+            case "LEAVE":
+                out.println("OK");
+                out.flush();
+                node.leave();
+                stop();
+                System.exit(0);
+                return false;
+            default:
+                throw new IllegalArgumentException("Perintah tidak dikenal: " + args[0]);
+        }
+    }
+
+    // Tujuan download tidak boleh keluar dari downloads/ (mis. "../.ssh/authorized_keys")
+    static File downloadPath(String dest) {
+        Path root = Paths.get("downloads").toAbsolutePath().normalize();
+        Path p = root.resolve(dest).normalize();
+        if (!p.startsWith(root) || p.equals(root)) {
+            throw new IllegalArgumentException("Tujuan download harus di dalam downloads/: " + dest);
+        }
+        return p.toFile();
+    }
+
+    private static String arg(String[] args, int i, String what) {
+        if (args.length <= i || args[i].isEmpty()) throw new IllegalArgumentException("Kurang argumen: " + what);
+        return args[i];
+    }
+
+    private void status(PrintWriter out) {
+        out.println(line("NODE", String.valueOf(node.myId), node.myIp, String.valueOf(node.myPort),
+                String.valueOf(node.replication.getReplicas()), String.valueOf(node.replication.getWriteQuorum())));
+        for (PeerInfo p : node.peers) {
+            out.println(line("MEMBER", String.valueOf(p.id), p.ip, String.valueOf(p.port), node.isNodeActive(p) ? "1" : "0",
+                    String.valueOf(p.capacity)));
+        }
+        Ring ring = node.fingerTable.ring();
+        List<PeerInfo> hosts = ring.members();
+        String[] fields = new String[hosts.size() + 1];
+        fields[0] = String.valueOf(ring.version);
+        for (int i = 0; i < hosts.size(); i++) fields[i + 1] = String.valueOf(hosts.get(i).id);
+        out.println(line("RING", fields));
+        out.println(line("CACHE", String.valueOf(node.lookupCache)));
+    }
+
+    private static long key(String s) {
+        return s.startsWith("0x") ? KeySpace.parse(s) : KeySpace.hash(s);
+    }
+
+    private void search(String input, PrintWriter out) throws IOException {
+        PeerInfo self = node.findPeer(node.myId);
+        // Lookup dari admin selalu dilacak: jarang, dan yang ingin dilihat justru rutenya
+        SearchResult result = PeerClient.forwardSearch(self, key(input), node.myId, 0, SearchResult.TRACE);
+        for (String l : result.message().split("\n")) text(out, l);
+        text(out, "Cache: " + node.lookupCache);
+    }
+
+    private void batch(String input, PrintWriter out) throws IOException {
+        List<Long> parsed = new ArrayList<>();
+        for (String part : input.split(",")) {
+            if (!part.trim().isEmpty()) parsed.add(key(part.trim()));
+        }
+        long[] keys = new long[parsed.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = parsed.get(i);
+
+        BatchSearchResult result = PeerClient.batchSearch(node.findPeer(node.myId), keys, node.myId, 0);
+        for (BatchSearchResult.Group g : result.groups()) {
+            text(out, (g.ownerId == BatchSearchResult.UNRESOLVED ? "⚠️ Tidak terjangkau" : "Node " + g.ownerId) + ":");
+            for (int i = 0; i < g.size(); i++) {
+                String files = g.files(i);
+                text(out, "  0x" + KeySpace.format(g.key(i)) + " → " + (files == null ? "not found" : files));
+            }
+        }
+        text(out, "Max hops: " + result.maxHops);
+    }
+
+    // Paralel ke semua replika; selesai begitu write quorum tercapai
+    private void upload(File file, PrintWriter out) throws IOException {
+        if (!file.isFile()) throw new FileNotFoundException(file.getPath());
+        long hash = KeySpace.hash(file.getName());
+        List<PeerInfo> targets = node.fingerTable.replicas(hash, node.replication.getReplicas());
+        StringJoiner targetIds = new StringJoiner(", ");
+        for (PeerInfo t : targets) targetIds.add(String.valueOf(t.id));
+        text(out, "📦 Uploading: " + file.getName());
+        text(out, "🔍 Hash = 0x" + KeySpace.format(hash) + ", Replika: Node " + targetIds);
+        out.flush();
+
+        Replication.WriteResult result = node.replication.store(file, node.myId, progress(out));
+        text(out, "✅ File tersimpan di Node " + result.acked + " (quorum "
+                + node.replication.getWriteQuorum() + "/" + targets.size() + ")");
+        if (result.compression.rawBytes() > 0) text(out, "   Kompresi: " + result.compression);
+    }
+
+    // Unduh paralel dari semua replika
+    private void download(String filename, File dest, PrintWriter out) throws IOException {
+        text(out, "⬇️ Downloading: " + filename);
+        out.flush();
+        SwarmDownload.Result result = node.swarm.download(filename, dest, progress(out));
+        StringJoiner sources = new StringJoiner(", ");
+        result.bytesPerSource.forEach((id, bytes) ->
+                sources.add((id == 0 ? "lokal" : "Node " + id) + " " + bytes / 1024 + " KB"));
+        double mbps = result.size / 1048576.0 / Math.max(0.001, result.millis / 1000.0);
+        text(out, "✅ " + filename + " tersimpan di " + dest.getPath() + " (" + result.size / 1024 + " KB, "
+                + result.millis + " ms, " + String.format("%.1f", mbps) + " MB/s)");
+        text(out, "   Sumber: " + sources);
+        if (result.resumedBytes > 0) {
+            text(out, "   Dilanjutkan: " + result.resumedBytes / 1024 + " KB sudah ada dari download sebelumnya");
+        }
+        if (result.compression.rawBytes() > 0) text(out, "   Kompresi: " + result.compression);
+    }
+
+    // Paling banyak satu baris per persen, supaya file besar tidak membanjiri klien
+    private static FileTransfer.Listener progress(PrintWriter out) {
+        int[] last = {-1};
+        return (done, total) -> {
+            int pct = total == 0 ? 100 : (int) (done * 100 / total);
+            if (pct == last[0]) return;
+            last[0] = pct;
+            synchronized (out) {
+                out.println(line("PROGRESS", String.valueOf(done), String.valueOf(total)));
+                out.flush();
+            }
+        };
+    }
+
+    private void stats(int id, PrintWriter out) throws IOException {
+        PeerInfo target = node.findPeer(id);
+        if (target == null) throw new IllegalArgumentException("Node tidak dikenal: " + id);
+        String text = id == node.myId ? node.metrics.render() : PeerClient.stats(target);
+        for (String l : text.split("\n")) text(out, l);
+    }
+
+    private void watch(PrintWriter out) throws InterruptedException {
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>(10_000);
+        watchers.add(queue);
+        try {
+            out.println(line("EVENT", "WATCHING"));
+            out.flush();
+            while (!out.checkError()) {
+                String event = queue.poll(5, TimeUnit.SECONDS);
+                // Baris kosong berkala untuk mendeteksi klien yang sudah pergi
+                out.println(event != null ? event : "");
+                out.flush();
+            }
+        } finally {
+            watchers.remove(queue);
+        }
+    }
+
+    private static void text(PrintWriter out, String text) {
+        synchronized (out) {
+            out.println(line("TEXT", text));
+        }
+    }
+
+    // Field tidak boleh berisi TAB atau baris baru
+    static String line(String type, String... fields) {
+        StringBuilder sb = new StringBuilder(type);
+        for (String f : fields) sb.append('\t').append(f.replace('\t', ' ').replace('\n', ' '));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,240 @@
+package peer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log asinkron: pemanggil hanya memasukkan pesan ke ring buffer
+ * lock-free (bounded MPSC, slot bernomor urut) lalu langsung kembali.
+ * Satu thread penulis mengosongkan ring per batch ke FileChannel
+ * lewat buffer, merotasi file kalau melewati maxBytes, dan melakukan
+ * flush terakhir saat JVM dimatikan.
+ *
+ * Kalau ring penuh: DROP membuang pesan (dihitung dan dilaporkan),
+ * BLOCK membuat pemanggil menunggu sampai ada slot kosong.
+ */
+public class AsyncLog {
+    public enum Policy { DROP, BLOCK }
+
+    private static final int BATCH = 512;
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+
+    private final Path path;
+    private final long maxBytes;
+    private final int keepFiles;
+    private final Policy policy;
+
+    // Ring buffer: sequence[i] menandai apakah slot i siap ditulis/dibaca
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final String[] messages;
+    private final long[] times;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;                                // hanya thread penulis
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private FileChannel channel;
+    private long fileSize;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+
+    // Cache format tanggal per detik; hanya dipakai thread penulis
+    private long cachedSecond = -1;
+    private byte[] cachedPrefix;
+
+    public AsyncLog(Path path, int capacity, long maxBytes, int keepFiles, Policy policy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.keepFiles = keepFiles;
+        this.policy = policy;
+        this.mask = size - 1;
+        this.sequence = new AtomicLongArray(size);
+        this.messages = new String[size];
+        this.times = new long[size];
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+
+        writer = new Thread(this::drainLoop, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "async-log-shutdown"));
+    }
+
+    public static AsyncLog fromSystemProperties() {
+        return new AsyncLog(
+                Paths.get(System.getProperty("p2p.log.file", "log.txt")),
+                Integer.getInteger("p2p.log.capacity", 8192),
+                Long.getLong("p2p.log.maxBytes", 10L * 1024 * 1024),
+                Integer.getInteger("p2p.log.keep", 3),
+                Policy.valueOf(System.getProperty("p2p.log.policy", "drop").toUpperCase(Locale.ROOT)));
+    }
+
+    public void append(String msg) {
+        long now = System.currentTimeMillis();
+        while (!offer(now, msg)) {
+            if (policy == Policy.DROP || !running) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    private boolean offer(long time, String msg) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = sequence.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;                             // penuh
+            } else {
+                pos = tail.get();
+            }
+        }
+        int idx = (int) (pos & mask);
+        times[idx] = time;
+        messages[idx] = msg;
+        sequence.lazySet(idx, pos + 1);                   // publish ke penulis
+        return true;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void drainLoop() {
+        long reportedDrops = 0;
+        try {
+            openChannel();
+            while (running) {
+                int n = drainBatch();
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    encode(System.currentTimeMillis(), "[log] " + (drops - reportedDrops) + " pesan dibuang, ring penuh");
+                    reportedDrops = drops;
+                }
+                flush();
+                if (n == 0) LockSupport.parkNanos(2_000_000);
+            }
+            while (drainBatch() > 0) {
+                // kosongkan sisa ring sebelum berhenti
+            }
+            flush();
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            // Penulis berhenti: append berikutnya langsung dibuang (dan dihitung), BLOCK tidak menunggu selamanya
+            running = false;
+            System.err.println("[log] Gagal menulis " + path + ", log dimatikan: " + e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private int drainBatch() throws IOException {
+        int n = 0;
+        while (n < BATCH) {
+            int idx = (int) (head & mask);
+            if (sequence.get(idx) != head + 1) break;     // slot belum terisi
+            String msg = messages[idx];
+            long time = times[idx];
+            messages[idx] = null;
+            sequence.lazySet(idx, head + mask + 1);       // bebaskan slot untuk putaran berikutnya
+            head++;
+            encode(time, msg);
+            n++;
+        }
+        return n;
+    }
+
+    private void encode(long time, String msg) throws IOException {
+        long second = time / 1000;
+        if (second != cachedSecond) {
+            ZonedDateTime t = Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault());
+            cachedPrefix = ("[" + DATE_FORMAT.format(t) + "] ").getBytes(StandardCharsets.UTF_8);
+            cachedSecond = second;
+        }
+        byte[] body = (msg + "\n").getBytes(StandardCharsets.UTF_8);
+        put(cachedPrefix);
+        put(body);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (bytes.length > out.remaining()) {
+            flush();
+            if (bytes.length > out.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        out.put(bytes);
+    }
+
+    private void flush() throws IOException {
+        if (out.position() == 0) return;
+        out.flip();
+        writeFully(out);
+        out.clear();
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        if (fileSize + buf.remaining() > maxBytes && fileSize > 0) rotate();
+        while (buf.hasRemaining()) {
+            fileSize += channel.write(buf);
+        }
+    }
+
+    // log.txt -> log.txt.1 -> log.txt.2 ... sampai keepFiles
+    private void rotate() throws IOException {
+        channel.close();
+        for (int i = keepFiles - 1; i >= 1; i--) {
+            Path from = Paths.get(path + "." + i);
+            if (Files.exists(from)) {
+                Files.move(from, Paths.get(path + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (keepFiles > 0) {
+            Files.move(path, Paths.get(path + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+        openChannel();
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        fileSize = channel.size();
+    }
+
+    // Hentikan penulis setelah semua pesan yang sudah masuk ditulis
+    public void close() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package peer;
+
+import common.*;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Hasil BATCH_SEARCH, dikelompokkan per node pemilik. Key yang gagal
+ * diteruskan (peer tidak merespons) dikumpulkan di grup UNRESOLVED.
+ */
+public class BatchSearchResult {
+    public static final int UNRESOLVED = -1;
+
+    public static class Group {
+        public final int ownerId;
+        private long[] keys = new long[4];
+        private String[] files = new String[4];
+        private int size;
+
+        Group(int ownerId) {
+            this.ownerId = ownerId;
+        }
+
+        void add(long key, String names) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                files = Arrays.copyOf(files, size * 2);
+            }
+            keys[size] = key;
+            files[size] = names;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long key(int i) {
+            return keys[i];
+        }
+
+        // Nama file untuk key ke-i, null kalau key kosong
+        public String files(int i) {
+            return files[i];
+        }
+    }
+
+    private final Map<Integer, Group> groups = new LinkedHashMap<>();
+    // Hop terjauh di antara semua cabang
+    public int maxHops;
+
+    public Collection<Group> groups() {
+        return groups.values();
+    }
+
+    void add(int ownerId, long key, String names) {
+        groups.computeIfAbsent(ownerId, Group::new).add(key, names);
+    }
+
+    void merge(BatchSearchResult other) {
+        for (Group g : other.groups()) {
+            for (int i = 0; i < g.size; i++) add(g.ownerId, g.keys[i], g.files[i]);
+        }
+        maxHops = Math.max(maxHops, other.maxHops);
+    }
+
+    public int keyCount() {
+        int n = 0;
+        for (Group g : groups.values()) n += g.size;
+        return n;
+    }
+
+    // ownerId(4) | n(4) | n x (key(8), files) per grup, lalu maxHops(4)
+    void writeTo(Payload.Writer w) {
+        w.writeInt(groups.size());
+        for (Group g : groups.values()) {
+            w.writeInt(g.ownerId).writeInt(g.size);
+            for (int i = 0; i < g.size; i++) {
+                w.writeLong(g.keys[i]).writeString(g.files[i] == null ? "" : g.files[i]);
+            }
+        }
+        w.writeInt(maxHops);
+    }
+
+    static BatchSearchResult readFrom(Payload.Reader r) throws IOException {
+        BatchSearchResult result = new BatchSearchResult();
+        int count = r.readInt();
+        for (int g = 0; g < count; g++) {
+            int ownerId = r.readInt();
+            int n = r.readInt();
+            for (int i = 0; i < n; i++) {
+                long key = r.readLong();
+                String names = r.readString();
+                result.add(ownerId, key, names.isEmpty() ? null : names);
+            }
+        }
+        result.maxHops = r.readInt();
+        return result;
+    }
+}
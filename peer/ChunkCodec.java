@@ -0,0 +1,213 @@
+package peer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Kompresi per chunk di jalur transfer (UPLOAD_CHUNKS, GET_CHUNKS).
+ *
+ * Dinegosiasikan per transfer: penerima mengiklankan bahwa ia bisa
+ * membaca chunk berbingkai, pengirim memutuskan per chunk. Tiap chunk
+ * berbingkai dikirim sebagai codec(1) | panjang di kabel(4) | isi. Chunk
+ * yang entropinya tinggi (gambar, arsip, file yang sudah terkompresi)
+ * tidak dicoba dikompres; hasil deflate yang tidak menghemat minimal
+ * minSaving juga dikirim mentah. Kalau salah satu sisi tidak mendukung,
+ * chunk dikirim mentah tanpa bingkai seperti sebelumnya.
+ *
+ * Kompresi mati secara default: di LAN deflate lebih lambat daripada
+ * kabelnya, dan chunk mentah bisa dikirim zero-copy (transferTo).
+ * -Dp2p.compress=true menyalakannya di sisi pengirim untuk link lambat
+ * atau yang dibatasi -Dp2p.uplink; -Dp2p.compress.level (default 1),
+ * -Dp2p.compress.maxEntropy (bit/byte, default 7.5).
+ */
+public class ChunkCodec {
+    public static final byte RAW = 0;
+    public static final byte DEFLATE = 1;
+    // Bit kemampuan penerima di request/balasan negosiasi
+    public static final int ACCEPT_DEFLATE = 1;
+
+    private static final int SAMPLE = 4096;
+    private static final int HEADER = 5;
+
+    private final boolean enabled;
+    private final int level;
+    private final double maxEntropy;
+    private final double minSaving;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[HEADER + Chunker.MAX]);
+
+    public ChunkCodec(boolean enabled, int level, double maxEntropy, double minSaving) {
+        this.enabled = enabled;
+        this.level = level;
+        this.maxEntropy = maxEntropy;
+        this.minSaving = minSaving;
+    }
+
+    public static ChunkCodec fromSystemProperties() {
+        return new ChunkCodec(
+                Boolean.parseBoolean(System.getProperty("p2p.compress", "false")),
+                Integer.getInteger("p2p.compress.level", Deflater.BEST_SPEED),
+                Double.parseDouble(System.getProperty("p2p.compress.maxEntropy", "7.5")),
+                0.1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Yang diiklankan sebagai penerima: membaca DEFLATE selalu bisa
+    public static int accepts() {
+        return ACCEPT_DEFLATE;
+    }
+
+    /** Byte mentah dan byte di kabel satu transfer atau lebih; aman dari banyak thread. */
+    public static final class Stats {
+        private final LongAdder raw = new LongAdder();
+        private final LongAdder wire = new LongAdder();
+
+        public void add(long rawBytes, long wireBytes) {
+            raw.add(rawBytes);
+            wire.add(wireBytes);
+        }
+
+        public long rawBytes() {
+            return raw.sum();
+        }
+
+        public long wireBytes() {
+            return wire.sum();
+        }
+
+        // mentah / kabel; 1 kalau belum ada yang dikirim
+        public double ratio() {
+            long w = wire.sum();
+            return w == 0 ? 1 : (double) raw.sum() / w;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2fx (%d → %d byte)", ratio(), rawBytes(), wireBytes());
+        }
+    }
+
+    /**
+     * Kirim satu chunk berbingkai. acceptMask dari penerima. uplink (boleh
+     * null) dipesan sebelum menulis, sebanyak byte yang benar-benar ke
+     * kabel. Kembalian: byte di kabel termasuk header, juga dicatat ke
+     * stats (boleh null).
+     */
+    public int writeChunk(byte[] buf, int off, int len, int acceptMask, WritableByteChannel out,
+                          RateLimiter uplink, Stats stats) throws IOException {
+        byte[] frame = SCRATCH.get();
+        int wire = 0;
+        if (enabled && (acceptMask & ACCEPT_DEFLATE) != 0 && entropy(buf, off, len) <= maxEntropy) {
+            wire = deflate(buf, off, len, frame);
+        }
+        if (uplink != null) uplink.acquire(HEADER + (wire > 0 ? wire : len));
+        if (wire > 0) {
+            header(frame, DEFLATE, wire);
+            writeAll(out, ByteBuffer.wrap(frame, 0, HEADER + wire));
+        } else {
+            header(frame, RAW, len);
+            writeAll(out, ByteBuffer.wrap(frame, 0, HEADER));
+            writeAll(out, ByteBuffer.wrap(buf, off, len));
+            wire = len;
+        }
+        if (stats != null) stats.add(len, HEADER + wire);
+        return HEADER + wire;
+    }
+
+    /**
+     * Baca satu chunk berbingkai ke buf[0, rawLen). prefix seperti di
+     * FileTransfer.readFully. Kembalian: byte di kabel termasuk header.
+     */
+    public static int readChunk(ReadableByteChannel in, ByteBuffer prefix, byte[] buf, int rawLen) throws IOException {
+        byte[] frame = SCRATCH.get();
+        FileTransfer.readFully(in, prefix, frame, HEADER);
+        byte codec = frame[0];
+        int wire = ((frame[1] & 0xFF) << 24) | ((frame[2] & 0xFF) << 16) | ((frame[3] & 0xFF) << 8) | (frame[4] & 0xFF);
+        if (codec == RAW) {
+            if (wire != rawLen) throw new StreamCorruptedException("Panjang chunk " + wire + " != " + rawLen);
+            FileTransfer.readFully(in, prefix, buf, rawLen);
+            return HEADER + wire;
+        }
+        if (codec != DEFLATE || wire < 0 || wire > frame.length) {
+            throw new StreamCorruptedException("Bingkai chunk tidak valid (codec " + codec + ", " + wire + " byte)");
+        }
+        FileTransfer.readFully(in, prefix, frame, wire);
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(frame, 0, wire);
+        try {
+            int n = 0;
+            while (n < rawLen && !inflater.finished()) {
+                int k = inflater.inflate(buf, n, rawLen - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += k;
+            }
+            if (n != rawLen || !inflater.finished()) {
+                throw new StreamCorruptedException("Chunk terkompresi rusak (" + n + "/" + rawLen + " byte)");
+            }
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("Chunk terkompresi rusak: " + e.getMessage());
+        }
+        return HEADER + wire;
+    }
+
+    // Panjang hasil di out[HEADER..], 0 kalau tidak menghemat minimal minSaving
+    private int deflate(byte[] buf, int off, int len, byte[] out) {
+        int limit = Math.min(out.length - HEADER, (int) (len * (1 - minSaving)));
+        if (limit <= 0) return 0;
+        Deflater d = DEFLATER.get();
+        d.reset();
+        d.setLevel(level);
+        d.setInput(buf, off, len);
+        d.finish();
+        int n = 0;
+        while (!d.finished() && n < limit) {
+            n += d.deflate(out, HEADER + n, limit - n);
+        }
+        return d.finished() ? n : 0;
+    }
+
+    /**
+     * Perkiraan entropi Shannon (bit per byte) dari sampel tersebar
+     * paling banyak SAMPLE byte. Data terkompresi/terenkripsi mendekati 8.
+     */
+    static double entropy(byte[] buf, int off, int len) {
+        if (len == 0) return 0;
+        int[] counts = new int[256];
+        int step = Math.max(1, len / SAMPLE);
+        int n = 0;
+        for (int i = off; i < off + len; i += step) {
+            counts[buf[i] & 0xFF]++;
+            n++;
+        }
+        double h = 0;
+        for (int c : counts) {
+            if (c == 0) continue;
+            double p = (double) c / n;
+            h -= p * Math.log(p);
+        }
+        return h / Math.log(2);
+    }
+
+    private static void header(byte[] frame, byte codec, int len) {
+        frame[0] = codec;
+        frame[1] = (byte) (len >>> 24);
+        frame[2] = (byte) (len >>> 16);
+        frame[3] = (byte) (len >>> 8);
+        frame[4] = (byte) len;
+    }
+
+    private static void writeAll(WritableByteChannel out, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) out.write(b);
+    }
+}
@@ -0,0 +1,281 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Penyimpanan file per node yang dideduplikasi per chunk.
+ *
+ * - chunks/ab/abcd...: isi satu chunk, nama = SHA-256 isinya, disimpan
+ *   sekali walaupun dipakai banyak file atau banyak versi file.
+ * - shared/nama: manifest file (lihat {@link Manifest}). File lama yang
+ *   masih berisi data mentah diubah menjadi manifest sekali saat start
+ *   (migrate()), tidak pernah di jalur baca.
+ *
+ * Nama file datang dari jaringan, jadi setiap nama diperiksa dulu
+ * (checkName): tanpa pemisah direktori, bukan "." atau "..", dan harus
+ * tetap di dalam shared/.
+ *
+ * Chunk yang tidak lagi dirujuk manifest mana pun dibuang oleh gc();
+ * chunk yang masih baru dibiarkan dulu karena bisa jadi milik upload
+ * yang manifest-nya belum disimpan.
+ */
+public class ChunkStore {
+    private final Path chunkDir;
+    private final Path manifestDir;
+    private final long gcGraceMs;
+    private final AsyncLog log;
+    private volatile boolean garbage;
+
+    public ChunkStore(Path chunkDir, Path manifestDir, long gcGraceMs, AsyncLog log) {
+        this.chunkDir = chunkDir;
+        this.manifestDir = manifestDir;
+        this.gcGraceMs = gcGraceMs;
+        this.log = log;
+    }
+
+    // Konfigurasi dari system property, mis. -Dp2p.chunks.dir=chunks -Dp2p.shared.dir=shared (relatif ke dataDir)
+    public static ChunkStore fromSystemProperties(Path dataDir, AsyncLog log) {
+        return new ChunkStore(
+                dataDir.resolve(System.getProperty("p2p.chunks.dir", "chunks")),
+                dataDir.resolve(System.getProperty("p2p.shared.dir", "shared")),
+                Long.getLong("p2p.chunks.gcGraceMs", 60_000L),
+                log);
+    }
+
+    // ---- chunk ----
+
+    public Path chunkPath(byte[] id) {
+        String hex = Manifest.hex(id);
+        return chunkDir.resolve(hex.substring(0, 2)).resolve(hex);
+    }
+
+    public boolean has(byte[] id) {
+        return Files.exists(chunkPath(id));
+    }
+
+    /**
+     * Index chunk di manifest yang belum ada di node ini. Chunk yang sudah
+     * ada disentuh (mtime) supaya gc tidak membuangnya sebelum manifest
+     * upload ini tersimpan.
+     */
+    public int[] missing(Manifest m) throws IOException {
+        int[] out = new int[m.count()];
+        int n = 0;
+        Set<String> seen = new HashSet<>();
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        for (int i = 0; i < m.count(); i++) {
+            // chunk yang berulang di satu file cukup diminta sekali
+            if (!seen.add(Manifest.hex(m.id(i)))) continue;
+            Path p = chunkPath(m.id(i));
+            try {
+                Files.setLastModifiedTime(p, now);
+            } catch (NoSuchFileException e) {
+                out[n++] = i;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Simpan satu chunk setelah isinya dicocokkan dengan id. Ditulis ke
+     * file sementara lalu di-rename, jadi chunk yang terlihat selalu utuh.
+     */
+    public void put(byte[] id, byte[] buf, int off, int len) throws IOException {
+        if (!Arrays.equals(id, Chunker.id(buf, off, len))) {
+            throw new IOException("Isi chunk " + Manifest.hex(id) + " tidak cocok dengan hash-nya");
+        }
+        Path dest = chunkPath(id);
+        try {
+            // Chunk yang sama baru saja dipakai lagi: segarkan mtime supaya gc tidak menghapusnya
+            Files.setLastModifiedTime(dest, FileTime.fromMillis(System.currentTimeMillis()));
+            return;
+        } catch (NoSuchFileException e) {
+            // belum ada (atau baru dihapus gc): tulis
+        }
+        Files.createDirectories(dest.getParent());
+        Path tmp = dest.resolveSibling(dest.getFileName() + ".tmp-" + Thread.currentThread().getId());
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            out.write(buf, off, len);
+        }
+        Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- file ----
+
+    public Manifest importStream(InputStream in) throws IOException {
+        return Chunker.chunk(in, this::put);
+    }
+
+    public Manifest importFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return importStream(in);
+        }
+    }
+
+    // Tempat menampung upload utuh (protokol UPLOAD lama) sebelum dipotong
+    public Path tempFile() throws IOException {
+        Files.createDirectories(chunkDir);
+        return Files.createTempFile(chunkDir, "upload-", ".tmp");
+    }
+
+    /**
+     * Nama file yang boleh dipakai sebagai nama manifest. Dipanggil oleh
+     * handler sebelum menerima isi, supaya upload yang pasti ditolak tidak
+     * dikirim dulu.
+     */
+    public static void checkName(String filename) throws IOException {
+        if (filename == null || filename.isEmpty() || filename.equals(".") || filename.equals("..")
+                || filename.indexOf('/') >= 0 || filename.indexOf('\\') >= 0 || filename.indexOf('\0') >= 0
+                || filename.endsWith(".manifest-tmp")) {
+            throw new IOException("Nama file tidak valid: " + filename);
+        }
+    }
+
+    private Path manifestPath(String filename) throws IOException {
+        checkName(filename);
+        Path root = manifestDir.toAbsolutePath().normalize();
+        Path path = root.resolve(filename).normalize();
+        if (!path.startsWith(root) || path.equals(root)) throw new IOException("Nama file tidak valid: " + filename);
+        return path;
+    }
+
+    // Semua chunk harus sudah ada sebelum manifest disimpan
+    public void saveManifest(String filename, Manifest m) throws IOException {
+        Payload.Writer w = new Payload.Writer(16 + m.count() * 40).writeInt(Manifest.MAGIC);
+        m.writeTo(w);
+        Path dest = manifestPath(filename);
+        Files.createDirectories(dest.getParent());
+        if (Files.exists(dest)) garbage = true;     // versi lama bisa meninggalkan chunk yatim
+        Path tmp = dest.resolveSibling(filename + ".manifest-tmp");
+        Files.write(tmp, w.toByteArray());
+        Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // null kalau file tidak ada di node ini; hanya membaca, tidak pernah menulis
+    public Manifest manifest(String filename) throws IOException {
+        Path path = manifestPath(filename);
+        if (!Files.isRegularFile(path)) return null;
+        byte[] data = Files.readAllBytes(path);
+        Payload.Reader r = new Payload.Reader(data);
+        if (data.length < 4 || r.readInt() != Manifest.MAGIC) {
+            throw new StreamCorruptedException(filename + " bukan manifest");
+        }
+        return Manifest.readFrom(r);
+    }
+
+    // Waktu manifest terakhir disimpan (ms), -1 kalau file tidak ada
+    public long version(String filename) throws IOException {
+        Path path = manifestPath(filename);
+        return Files.isRegularFile(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+    }
+
+    public void delete(String filename) throws IOException {
+        if (Files.deleteIfExists(manifestPath(filename))) garbage = true;
+    }
+
+    /**
+     * Sekali saat start: file di shared/ yang masih berisi data mentah
+     * (dari versi sebelum chunking) dipotong ke chunk store dan diganti
+     * manifest. Mengembalikan jumlah file yang diubah.
+     */
+    public int migrate() throws IOException {
+        if (!Files.isDirectory(manifestDir)) return 0;
+        List<Path> files;
+        try (Stream<Path> list = Files.list(manifestDir)) {
+            files = list.filter(Files::isRegularFile).toList();
+        }
+        int migrated = 0;
+        for (Path p : files) {
+            String filename = p.getFileName().toString();
+            if (filename.endsWith(".manifest-tmp")) continue;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(p)))) {
+                if (Files.size(p) >= 4 && in.readInt() == Manifest.MAGIC) continue;
+            }
+            Manifest m;
+            try (InputStream in = Files.newInputStream(p)) {
+                m = importStream(in);
+            }
+            saveManifest(filename, m);
+            log.append("ChunkStore: " + filename + " diubah ke " + m.count() + " chunk");
+            migrated++;
+        }
+        return migrated;
+    }
+
+    // Isi file lengkap ke out, chunk demi chunk lewat transferTo
+    public void send(Manifest m, WritableByteChannel out, FileTransfer.Listener listener) throws IOException {
+        long done = 0;
+        for (int i = 0; i < m.count(); i++) {
+            try (FileChannel fc = FileChannel.open(chunkPath(m.id(i)), StandardOpenOption.READ)) {
+                FileTransfer.sendRange(fc, 0, m.length(i), out);
+            }
+            done += m.length(i);
+            listener.onProgress(done, m.size);
+        }
+    }
+
+    public void export(String filename, File dest) throws IOException {
+        Manifest m = manifest(filename);
+        if (m == null) throw new FileNotFoundException(filename);
+        dest.getAbsoluteFile().getParentFile().mkdirs();
+        File part = FileTransfer.partFile(dest);
+        try (FileChannel out = FileChannel.open(part.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            send(m, out, FileTransfer.NO_PROGRESS);
+        }
+        FileTransfer.commit(part, dest);
+    }
+
+    // Hanya untuk protokol lama yang mengirim file sebagai byte[]
+    public byte[] readAll(String filename) throws IOException {
+        Manifest m = manifest(filename);
+        if (m == null) return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(m.size, Integer.MAX_VALUE - 8));
+        for (int i = 0; i < m.count(); i++) out.write(Files.readAllBytes(chunkPath(m.id(i))));
+        return out.toByteArray();
+    }
+
+    // ---- gc ----
+
+    /**
+     * Hapus chunk yang tidak dirujuk file mana pun di names, kalau sejak gc
+     * terakhir ada manifest yang dihapus atau diganti. Mengembalikan
+     * jumlah chunk yang dibuang.
+     */
+    public int gcIfNeeded(Collection<String> names) throws IOException {
+        if (!garbage || !Files.isDirectory(chunkDir)) return 0;
+        garbage = false;
+
+        Set<String> live = new HashSet<>();
+        for (String name : names) {
+            Manifest m = manifest(name);
+            if (m == null) continue;
+            for (int i = 0; i < m.count(); i++) live.add(Manifest.hex(m.id(i)));
+        }
+
+        long cutoff = System.currentTimeMillis() - gcGraceMs;
+        int removed = 0;
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(chunkDir, 2)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path p : files) {
+            String name = p.getFileName().toString();
+            if (!name.contains(".tmp-") && live.contains(name)) continue;
+            if (Files.getLastModifiedTime(p).toMillis() > cutoff) {
+                garbage = true;     // masih terlalu baru, coba lagi di putaran berikutnya
+                continue;
+            }
+            Files.deleteIfExists(p);
+            removed++;
+        }
+        return removed;
+    }
+}
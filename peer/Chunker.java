@@ -0,0 +1,119 @@
+package peer;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * Content-defined chunking ala FastCDC: batas chunk ditentukan oleh gear
+ * hash bergulir atas isi file, bukan oleh offset. Sisipan atau hapusan di
+ * tengah file hanya mengubah chunk di sekitarnya; chunk lain tetap sama
+ * sehingga versi file yang mirip berbagi hampir semua chunk.
+ *
+ * Ukuran chunk antara MIN dan MAX dengan rata-rata sekitar AVG
+ * (-Dp2p.chunk.avgBytes, pangkat dua). Id chunk = SHA-256 isinya.
+ */
+public class Chunker {
+    public static final int AVG = Integer.highestOneBit(Math.max(256, Integer.getInteger("p2p.chunk.avgBytes", 8192)));
+    public static final int MIN = AVG / 4;
+    public static final int MAX = AVG * 8;
+    public static final int ID_BYTES = 32;
+
+    // Normalized chunking: sebelum AVG pakai mask lebih ketat, sesudahnya lebih longgar
+    private static final long MASK_SMALL = topBits(Integer.numberOfTrailingZeros(AVG) + 1);
+    private static final long MASK_LARGE = topBits(Integer.numberOfTrailingZeros(AVG) - 1);
+
+    // Tabel gear harus sama di semua node: seed tetap, java.util.Random terdefinisi di spesifikasi
+    private static final long[] GEAR = new long[256];
+    static {
+        Random rnd = new Random(0x5032_4344_4300L);
+        for (int i = 0; i < GEAR.length; i++) GEAR[i] = rnd.nextLong();
+    }
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // Dipanggil untuk tiap chunk berurutan; buf hanya valid selama pemanggilan
+    public interface Sink {
+        void accept(byte[] id, byte[] buf, int off, int len) throws IOException;
+    }
+
+    public static final Sink DISCARD = (id, buf, off, len) -> { };
+
+    private static long topBits(int n) {
+        return n <= 0 ? 0 : -1L << (64 - n);
+    }
+
+    public static Manifest chunk(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return chunk(in, DISCARD);
+        }
+    }
+
+    /**
+     * Potong stream menjadi chunk. Buffer berisi paling tidak MAX byte di
+     * depan posisi scan (kecuali di akhir stream), jadi satu pemindaian
+     * cukup untuk menemukan batas berikutnya.
+     */
+    public static Manifest chunk(InputStream in, Sink sink) throws IOException {
+        Manifest.Builder manifest = new Manifest.Builder();
+        byte[] buf = new byte[MAX * 4];
+        int start = 0;
+        int end = 0;
+        boolean eof = false;
+
+        while (true) {
+            if (!eof && end - start < MAX) {
+                System.arraycopy(buf, start, buf, 0, end - start);
+                end -= start;
+                start = 0;
+                while (end < buf.length) {
+                    int n = in.read(buf, end, buf.length - end);
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    end += n;
+                }
+            }
+            if (start == end) break;
+
+            int len = cut(buf, start, end - start);
+            byte[] id = id(buf, start, len);
+            sink.accept(id, buf, start, len);
+            manifest.add(id, len);
+            start += len;
+        }
+        return manifest.build();
+    }
+
+    // Panjang chunk yang dimulai di off (paling banyak len)
+    static int cut(byte[] b, int off, int len) {
+        if (len <= MIN) return len;
+        int n = Math.min(len, MAX);
+        int normal = Math.min(n, AVG);
+        long fp = 0;
+        int i = MIN;
+        for (; i < normal; i++) {
+            fp = (fp << 1) + GEAR[b[off + i] & 0xFF];
+            if ((fp & MASK_SMALL) == 0) return i;
+        }
+        for (; i < n; i++) {
+            fp = (fp << 1) + GEAR[b[off + i] & 0xFF];
+            if ((fp & MASK_LARGE) == 0) return i;
+        }
+        return n;
+    }
+
+    public static byte[] id(byte[] buf, int off, int len) {
+        MessageDigest md = SHA256.get();
+        md.update(buf, off, len);
+        return md.digest();
+    }
+}
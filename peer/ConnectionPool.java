@@ -0,0 +1,208 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Pool koneksi persisten per peer. Request dikirim lewat koneksi yang
+ * paling sedikit in-flight-nya; koneksi baru dibuka sampai batas
+ * connectionsPerPeer. Koneksi baru dibuka di luar lock, jadi peer yang
+ * lambat menerima connect tidak menahan pemanggil lain. Koneksi yang lama
+ * menganggur ditutup otomatis, dan request idempoten (lihat
+ * Frame.isIdempotent) yang gagal karena koneksi dicoba ulang sekali
+ * dengan koneksi baru.
+ *
+ * Node yang didaftarkan lewat registerLocal (simulator, banyak node di
+ * satu proses) dipanggil langsung tanpa socket dan tanpa serialisasi.
+ */
+public class ConnectionPool {
+    private final int connectionsPerPeer;
+    private final int maxInFlight;
+    private final long idleTimeoutMs;
+    private final long callTimeoutMs;
+    private final int connectTimeoutMs;
+
+    private final ConcurrentHashMap<String, Slots> byPeer = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private final ConcurrentHashMap<String, ServerHandler> local = new ConcurrentHashMap<>();
+    private final ExecutorService localCalls = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "local-call");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Koneksi ke satu peer; connecting = connect yang sedang berjalan di luar lock
+    private static final class Slots {
+        final List<PeerConnection> conns = new ArrayList<>();
+        int connecting;
+    }
+
+    public ConnectionPool(int connectionsPerPeer, int maxInFlight, long idleTimeoutMs,
+                          long callTimeoutMs, int connectTimeoutMs) {
+        this.connectionsPerPeer = connectionsPerPeer;
+        this.maxInFlight = maxInFlight;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.callTimeoutMs = callTimeoutMs;
+        this.connectTimeoutMs = connectTimeoutMs;
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "conn-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Konfigurasi dari system property, mis. -Dp2p.pool.maxInFlight=128
+    public static ConnectionPool fromSystemProperties() {
+        return new ConnectionPool(
+                Integer.getInteger("p2p.pool.perPeer", 2),
+                Integer.getInteger("p2p.pool.maxInFlight", 64),
+                Long.getLong("p2p.pool.idleMs", 30_000L),
+                Long.getLong("p2p.pool.timeoutMs", 30_000L),
+                Integer.getInteger("p2p.pool.connectMs", 2_000));
+    }
+
+    // Transport in-memory: request ke alamat peer ini langsung ke handler-nya
+    public void registerLocal(PeerInfo peer, ServerHandler handler) {
+        local.put(key(peer), handler);
+    }
+
+    public void unregisterLocal(PeerInfo peer) {
+        if (peer != null) local.remove(key(peer));
+    }
+
+    public Frame call(PeerInfo peer, Frame request) throws IOException {
+        ServerHandler handler = local.get(key(peer));
+        if (handler != null) return handler.handleFrame(request);
+        try {
+            return acquire(peer).call(request, callTimeoutMs);
+        } catch (SocketTimeoutException e) {
+            throw e;
+        } catch (IOException e) {
+            // JOIN/NOTIFY/LEAVE bisa saja sudah diproses sebelum koneksi putus: jangan kirim dua kali
+            if (!Frame.isIdempotent(request.command())) throw e;
+            // Koneksi basi/putus: buang lalu coba sekali lagi dengan koneksi baru
+            removeClosed(peer);
+            return acquire(peer).call(request, callTimeoutMs);
+        }
+    }
+
+    // Versi asinkron (tanpa retry): dipakai untuk fan-out paralel ke beberapa peer
+    public CompletableFuture<Frame> callAsync(PeerInfo peer, Frame request) {
+        ServerHandler handler = local.get(key(peer));
+        if (handler != null) {
+            return CompletableFuture.supplyAsync(() -> handler.handleFrameAsync(request), localCalls).thenCompose(f -> f);
+        }
+        try {
+            return acquire(peer).send(request, callTimeoutMs);
+        } catch (IOException e) {
+            removeClosed(peer);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private PeerConnection acquire(PeerInfo peer) throws IOException {
+        Slots slots = byPeer.computeIfAbsent(key(peer), k -> new Slots());
+        synchronized (slots) {
+            while (true) {
+                slots.conns.removeIf(c -> !c.isOpen());
+
+                PeerConnection best = null;
+                for (PeerConnection c : slots.conns) {
+                    if (best == null || c.inFlight() < best.inFlight()) best = c;
+                }
+                int reserved = slots.conns.size() + slots.connecting;
+                if (best != null && (best.inFlight() == 0 || reserved >= connectionsPerPeer)) {
+                    return best;
+                }
+                if (reserved < connectionsPerPeer) {
+                    slots.connecting++;
+                    break;
+                }
+                // Semua slot sedang connect dan belum ada yang terbuka: tunggu salah satunya
+                try {
+                    slots.wait(connectTimeoutMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        PeerConnection fresh = null;
+        try {
+            fresh = new PeerConnection(peer, maxInFlight, connectTimeoutMs);
+            return fresh;
+        } finally {
+            synchronized (slots) {
+                slots.connecting--;
+                if (fresh != null) slots.conns.add(fresh);
+                slots.notifyAll();
+            }
+        }
+    }
+
+    private void removeClosed(PeerInfo peer) {
+        Slots slots = byPeer.get(key(peer));
+        if (slots == null) return;
+        synchronized (slots) {
+            slots.conns.removeIf(c -> !c.isOpen());
+        }
+    }
+
+    private void evictIdle() {
+        for (Slots slots : byPeer.values()) {
+            synchronized (slots) {
+                Iterator<PeerConnection> it = slots.conns.iterator();
+                while (it.hasNext()) {
+                    PeerConnection c = it.next();
+                    if (!c.isOpen() || c.idleMillis() > idleTimeoutMs) {
+                        c.close();
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    // Jumlah request yang sedang menunggu balasan dari peer ini (ukuran beban)
+    public int inFlight(PeerInfo peer) {
+        Slots slots = byPeer.get(key(peer));
+        if (slots == null) return 0;
+        int total = 0;
+        synchronized (slots) {
+            for (PeerConnection c : slots.conns) total += c.inFlight();
+        }
+        return total;
+    }
+
+    public int openConnections() {
+        int total = 0;
+        for (Slots slots : byPeer.values()) {
+            synchronized (slots) {
+                total += slots.conns.size();
+            }
+        }
+        return total;
+    }
+
+    public void close() {
+        evictor.shutdownNow();
+        localCalls.shutdownNow();
+        for (Slots slots : byPeer.values()) {
+            synchronized (slots) {
+                for (PeerConnection c : slots.conns) c.close();
+                slots.conns.clear();
+            }
+        }
+    }
+
+    private static String key(PeerInfo peer) {
+        return peer.ip + ":" + peer.port;
+    }
+}
@@ -0,0 +1,114 @@
+package peer;
+
+import common.*;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Sebaran ruang key dan data per node fisik (perintah admin DISTRIBUTION).
+ *
+ * Bagian ruang key dihitung dari ring: tiap posisi memiliki busur dari
+ * posisi sebelumnya sampai dirinya, dijumlah per node fisik. Jumlah file
+ * dan byte yang benar-benar disimpan (termasuk replika) diambil dari
+ * gauge local_files dan local_bytes di STATS tiap node hidup.
+ */
+public final class Distribution {
+    private Distribution() {
+    }
+
+    public static final class Host {
+        public final PeerInfo peer;
+        public int vnodes;
+        public double share;            // bagian ruang key, 0..1
+        public long files = -1;         // -1: node tidak menjawab STATS
+        public long bytes = -1;
+
+        Host(PeerInfo peer) {
+            this.peer = peer;
+        }
+    }
+
+    // Per node fisik, urut seperti ring.members()
+    public static List<Host> shares(Ring ring) {
+        Map<Integer, Host> hosts = new LinkedHashMap<>();
+        for (PeerInfo p : ring.members()) hosts.put(p.id, new Host(p));
+        if (ring.isEmpty()) return new ArrayList<>();
+        if (ring.size() == 1) {
+            Host only = hosts.get(ring.get(0).id);
+            only.vnodes = 1;
+            only.share = 1;
+            return new ArrayList<>(hosts.values());
+        }
+        double space = Math.pow(2, KeySpace.BITS);
+        for (int i = 0; i < ring.size(); i++) {
+            Host h = hosts.get(ring.get(i).id);
+            long arc = (ring.keyAt(i) - ring.keyAt(i - 1)) & KeySpace.MASK;
+            h.vnodes++;
+            // key kembar (dht.bits kecil): busur 0, bukan seluruh ring
+            h.share += unsigned(arc) / space;
+        }
+        return new ArrayList<>(hosts.values());
+    }
+
+    // Bagian ruang key ditambah file/byte dari STATS tiap node hidup
+    public static List<Host> collect(PeerNode node) {
+        List<Host> hosts = shares(node.fingerTable.ring());
+        for (Host h : hosts) {
+            try {
+                String stats = h.peer.id == node.myId ? node.metrics.render() : PeerClient.stats(h.peer);
+                h.files = gauge(stats, "p2p_local_files");
+                h.bytes = gauge(stats, "p2p_local_bytes");
+            } catch (IOException e) {
+                // node tidak terjangkau: tampil tanpa file/byte
+            }
+        }
+        return hosts;
+    }
+
+    public static List<String> report(List<Host> hosts) {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%6s %5s %6s %8s %9s %7s %12s %7s",
+                "node", "kap", "vnode", "key%", "target%", "file", "KB", "data%"));
+        long totalCapacity = 0;
+        long totalBytes = 0;
+        for (Host h : hosts) {
+            totalCapacity += h.peer.capacity;
+            totalBytes += Math.max(0, h.bytes);
+        }
+        double maxShare = 0;
+        double maxBytes = 0;
+        Host hottest = null;
+        for (Host h : hosts) {
+            double target = (double) h.peer.capacity / totalCapacity;
+            double data = totalBytes == 0 || h.bytes < 0 ? 0 : (double) h.bytes / totalBytes;
+            lines.add(String.format("%6d %5d %6d %7.2f%% %8.2f%% %7s %12s %6.2f%%",
+                    h.peer.id, h.peer.capacity, h.vnodes, h.share * 100, target * 100,
+                    h.files < 0 ? "?" : String.valueOf(h.files), h.bytes < 0 ? "?" : String.valueOf(h.bytes / 1024),
+                    data * 100));
+            // Relatif terhadap kapasitas: node berkapasitas 2 memang seharusnya menanggung dua kali lipat
+            maxShare = Math.max(maxShare, h.share / target);
+            if (h.bytes >= 0 && totalBytes > 0 && data / target >= maxBytes) {
+                maxBytes = data / target;
+                hottest = h;
+            }
+        }
+        lines.add(String.format("Key: max/rata-rata %.2fx (per kapasitas)", maxShare));
+        if (hottest != null) {
+            lines.add(String.format("Data: max/rata-rata %.2fx, terberat Node %d", maxBytes, hottest.peer.id));
+            if (maxBytes > 2) lines.add("⚠️ Sebaran data timpang: naikkan -Ddht.vnodes atau periksa file yang sangat besar");
+        }
+        return lines;
+    }
+
+    // Nilai baris "nama nilai" di teks Prometheus, -1 kalau tidak ada (node versi lama)
+    static long gauge(String stats, String name) {
+        for (String line : stats.split("\n")) {
+            if (line.startsWith(name + " ")) return (long) Double.parseDouble(line.substring(name.length() + 1).trim());
+        }
+        return -1;
+    }
+
+    private static double unsigned(long v) {
+        return v >= 0 ? v : (v >>> 1) * 2.0 + (v & 1);
+    }
+}
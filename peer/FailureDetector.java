@@ -0,0 +1,253 @@
+package peer;
+
+import common.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Detektor kegagalan phi-accrual. Semua peer di-PING paralel tiap
+ * interval lewat {@link ConnectionPool}; dari jarak antar heartbeat yang
+ * berhasil dihitung skor kecurigaan phi per node. Node dianggap mati
+ * kalau phi melewati threshold (atau belum pernah merespons).
+ *
+ * Hasilnya dipublikasikan sebagai snapshot immutable lewat field
+ * volatile, jadi routing dan GUI cukup membaca tanpa lock dan tanpa
+ * pernah menunggu jaringan.
+ */
+public class FailureDetector {
+
+    public static class Status {
+        public final int peerId;
+        public final boolean alive;
+        public final double phi;
+        public final long lastHeartbeat;    // epoch ms, 0 kalau belum pernah
+        public final boolean pending;       // belum pernah menjawab, tapi juga belum pernah gagal
+
+        Status(int peerId, boolean alive, double phi, long lastHeartbeat, boolean pending) {
+            this.peerId = peerId;
+            this.alive = alive;
+            this.phi = phi;
+            this.lastHeartbeat = lastHeartbeat;
+            this.pending = pending;
+        }
+    }
+
+    // Jendela geser jarak antar heartbeat untuk satu peer
+    private static final class History {
+        final long[] intervals;
+        int count, next;
+        double sum, sumSq;
+        long last;
+        boolean suspected;      // koneksi gagal sejak heartbeat terakhir
+        volatile boolean probing;
+
+        History(int window) {
+            intervals = new long[window];
+        }
+
+        synchronized void heartbeat(long now) {
+            if (last != 0) {
+                long interval = now - last;
+                if (count == intervals.length) {
+                    long old = intervals[next];
+                    sum -= old;
+                    sumSq -= (double) old * old;
+                } else {
+                    count++;
+                }
+                intervals[next] = interval;
+                next = (next + 1) % intervals.length;
+                sum += interval;
+                sumSq += (double) interval * interval;
+            }
+            last = now;
+            suspected = false;
+        }
+
+        synchronized void suspect() {
+            suspected = true;
+        }
+
+        // Probe pertama gagal: node tidak lagi dianggap pending
+        synchronized void probeFailed() {
+            if (last == 0) suspected = true;
+        }
+
+        synchronized boolean pending() {
+            return last == 0 && !suspected;
+        }
+
+        synchronized double phi(long now, long expectedMs, long minStdMs, long pauseMs) {
+            if (last == 0 || suspected) return Double.POSITIVE_INFINITY;
+            double mean = count == 0 ? expectedMs : sum / count;
+            double variance = count == 0 ? 0 : sumSq / count - mean * mean;
+            double std = Math.max(Math.sqrt(Math.max(variance, 0)), minStdMs);
+
+            // Aproksimasi logistik CDF normal (sama dengan yang dipakai Akka/Cassandra)
+            double y = (now - last - mean - pauseMs) / std;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            return now - last > mean + pauseMs
+                    ? -Math.log10(e / (1.0 + e))
+                    : -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+
+        synchronized long last() {
+            return last;
+        }
+    }
+
+    private final long intervalMs;
+    private final long timeoutMs;
+    private final double threshold;
+    private final long minStdMs;
+    private final long pauseMs;
+    private final int window;
+
+    private final Map<Integer, History> histories = new ConcurrentHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile Map<Integer, Status> snapshot = Collections.emptyMap();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService probes;
+    private List<PeerInfo> peers;
+    private int selfId;
+
+    public FailureDetector(long intervalMs, long timeoutMs, double threshold, long minStdMs, long pauseMs, int window) {
+        this.intervalMs = intervalMs;
+        this.timeoutMs = timeoutMs;
+        this.threshold = threshold;
+        this.minStdMs = minStdMs;
+        this.pauseMs = pauseMs;
+        this.window = window;
+    }
+
+    // Konfigurasi dari system property, mis. -Dp2p.fd.phi=12
+    public static FailureDetector fromSystemProperties() {
+        return new FailureDetector(
+                Long.getLong("p2p.fd.intervalMs", 1_000L),
+                Long.getLong("p2p.fd.timeoutMs", 500L),
+                Double.parseDouble(System.getProperty("p2p.fd.phi", "8")),
+                Long.getLong("p2p.fd.minStdMs", 100L),
+                Long.getLong("p2p.fd.pauseMs", 1_000L),
+                Integer.getInteger("p2p.fd.window", 100));
+    }
+
+    // intervalMs <= 0: heartbeat dimatikan dan semua anggota dianggap hidup
+    public synchronized void start(List<PeerInfo> peers, int selfId) {
+        this.peers = peers;
+        this.selfId = selfId;
+        if (intervalMs <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemon("fd-scheduler"));
+        probes = Executors.newCachedThreadPool(daemon("fd-probe"));
+        scheduler.scheduleAtFixedRate(this::tick, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+        if (probes != null) probes.shutdownNow();
+    }
+
+    // ---- baca (tanpa lock, tanpa jaringan) ----
+
+    public Map<Integer, Status> snapshot() {
+        return snapshot;
+    }
+
+    public boolean isAlive(PeerInfo peer) {
+        if (intervalMs <= 0) return true;
+        Status s = snapshot.get(peer.id);
+        return s != null && s.alive;
+    }
+
+    /**
+     * Anggota yang belum sempat di-probe atau probe pertamanya belum
+     * selesai. Bukan bukti hidup, tapi juga belum terbukti mati.
+     */
+    public boolean isPending(PeerInfo peer) {
+        if (intervalMs <= 0 || peer.id == selfId) return false;
+        Status s = snapshot.get(peer.id);
+        return s == null || s.pending;
+    }
+
+    // Dipanggil (di thread detektor) setiap kali ada node yang berubah status
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Laporan dari luar (mis. routing) bahwa koneksi ke peer gagal: node
+     * langsung dianggap mati sampai heartbeat berikutnya berhasil, tanpa
+     * menunggu phi naik.
+     */
+    public void suspect(PeerInfo peer) {
+        History h = histories.get(peer.id);
+        if (h == null || peer.id == selfId) return;
+        h.suspect();
+        publish();
+    }
+
+    // Node yang sudah keluar dari ring tidak di-probe lagi
+    public void forget(int peerId) {
+        histories.remove(peerId);
+    }
+
+    // ---- heartbeat ----
+
+    private void tick() {
+        for (PeerInfo peer : new ArrayList<>(peers)) {
+            History h = histories.computeIfAbsent(peer.id, id -> new History(window));
+            if (peer.id == selfId) {
+                h.heartbeat(System.currentTimeMillis());
+            } else if (!h.probing) {
+                // Node yang lambat/mati tidak menahan probe node lain
+                h.probing = true;
+                probes.execute(() -> probe(peer, h));
+            }
+        }
+        publish();
+    }
+
+    private void probe(PeerInfo peer, History h) {
+        try {
+            Frame ping = new Frame(Frame.PING, Frame.nextRequestId(), new byte[0]);
+            PeerClient.POOL.callAsync(peer, ping).orTimeout(timeoutMs, TimeUnit.MILLISECONDS).get();
+            h.heartbeat(System.currentTimeMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // tidak ada heartbeat; phi naik sendiri seiring waktu
+            h.probeFailed();
+        } finally {
+            h.probing = false;
+        }
+        publish();
+    }
+
+    private synchronized void publish() {
+        long now = System.currentTimeMillis();
+        Map<Integer, Status> old = snapshot;
+        Map<Integer, Status> next = new HashMap<>();
+        boolean changed = false;
+        for (Map.Entry<Integer, History> e : histories.entrySet()) {
+            History h = e.getValue();
+            double phi = h.phi(now, intervalMs, minStdMs, pauseMs);
+            Status s = new Status(e.getKey(), phi < threshold, phi, h.last(), h.pending());
+            next.put(e.getKey(), s);
+
+            Status before = old.get(e.getKey());
+            if (before == null || before.alive != s.alive || before.pending != s.pending) changed = true;
+        }
+        snapshot = Collections.unmodifiableMap(next);
+        if (changed) {
+            for (Runnable l : listeners) l.run();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package peer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * Transfer file tanpa memuat seluruh isi ke heap: pengirim memakai
+ * FileChannel.transferTo langsung ke socket, penerima menulis ke disk
+ * dengan transferFrom. Dikerjakan per potongan CHUNK agar progress bisa
+ * dilaporkan.
+ */
+public class FileTransfer {
+    public static final int CHUNK = 1 << 20;   // 1 MiB
+    // Transfer yang tidak menerima satu byte pun selama ini dianggap mati
+    public static final int TIMEOUT_MS = Integer.getInteger("p2p.transferTimeoutMs", 30_000);
+
+    public interface Listener {
+        void onProgress(long done, long total);
+    }
+
+    public static final Listener NO_PROGRESS = (done, total) -> { };
+
+    /**
+     * File unduhan yang belum selesai: nama tujuan + ".part" di folder yang
+     * sama, jadi rename ke tujuan tetap di satu filesystem.
+     */
+    public static File partFile(File dest) {
+        File abs = dest.getAbsoluteFile();
+        return new File(abs.getParentFile(), abs.getName() + ".part");
+    }
+
+    // Pindahkan file yang sudah lengkap ke tujuan; pembaca tidak pernah melihat file setengah jadi
+    public static void commit(File part, File dest) throws IOException {
+        try {
+            Files.move(part.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static void send(FileChannel file, WritableByteChannel out, long size, Listener listener)
+            throws IOException {
+        long pos = 0;
+        while (pos < size) {
+            long n = file.transferTo(pos, Math.min(CHUNK, size - pos), out);
+            if (n <= 0) {
+                throw new EOFException("File menyusut saat dikirim (" + pos + "/" + size + ")");
+            }
+            pos += n;
+            listener.onProgress(pos, size);
+        }
+    }
+
+    // Bagian [offset, offset+length) dari file, mis. satu chunk di tengah file
+    public static void sendRange(FileChannel file, long offset, long length, WritableByteChannel out)
+            throws IOException {
+        long pos = offset;
+        long end = offset + length;
+        while (pos < end) {
+            long n = file.transferTo(pos, end - pos, out);
+            if (n <= 0) {
+                throw new EOFException("File menyusut saat dikirim (" + (pos - offset) + "/" + length + ")");
+            }
+            pos += n;
+        }
+    }
+
+    // Baca tepat len byte dari posisi offset file ke buf
+    public static void readRange(FileChannel file, long offset, byte[] buf, int len) throws IOException {
+        ByteBuffer dst = ByteBuffer.wrap(buf, 0, len);
+        while (dst.hasRemaining()) {
+            if (file.read(dst, offset + dst.position()) < 0) {
+                throw new EOFException("File menyusut saat dibaca (" + dst.position() + "/" + len + ")");
+            }
+        }
+    }
+
+    /**
+     * Sisi baca channel transfer dengan batas TIMEOUT_MS. Baca langsung dari
+     * SocketChannel blocking mengabaikan SO_TIMEOUT, stream socket adaptor
+     * tidak: peer yang diam membuat baca gagal dengan SocketTimeoutException
+     * sehingga thread dan koneksinya dilepas.
+     */
+    public static ReadableByteChannel timed(SocketChannel ch) throws IOException {
+        ch.socket().setSoTimeout(TIMEOUT_MS);
+        return Channels.newChannel(ch.socket().getInputStream());
+    }
+
+    /**
+     * Baca tepat len byte ke buf. prefix seperti di receive(); byte yang
+     * dipakai dari prefix ikut maju posisinya.
+     */
+    public static void readFully(ReadableByteChannel in, ByteBuffer prefix, byte[] buf, int len) throws IOException {
+        ByteBuffer dst = ByteBuffer.wrap(buf, 0, len);
+        if (prefix != null && prefix.hasRemaining()) {
+            int n = Math.min(prefix.remaining(), len);
+            ByteBuffer slice = prefix.slice();
+            slice.limit(n);
+            dst.put(slice);
+            prefix.position(prefix.position() + n);
+        }
+        while (dst.hasRemaining()) {
+            if (in.read(dst) < 0) {
+                throw new EOFException("Koneksi putus di tengah transfer (" + dst.position() + "/" + len + ")");
+            }
+        }
+    }
+
+    /**
+     * Terima tepat size byte ke file. prefix berisi byte yang sudah
+     * terbaca dari socket bersama header frame (boleh kosong).
+     */
+    public static void receive(ReadableByteChannel in, ByteBuffer prefix, FileChannel file, long size,
+                               Listener listener) throws IOException {
+        long pos = 0;
+        if (prefix != null && prefix.hasRemaining()) {
+            if (prefix.remaining() > size) prefix.limit(prefix.position() + (int) size);
+            while (prefix.hasRemaining()) {
+                pos += file.write(prefix, pos);
+            }
+            listener.onProgress(pos, size);
+        }
+        while (pos < size) {
+            long n = file.transferFrom(in, pos, Math.min(CHUNK, size - pos));
+            if (n <= 0) {
+                throw new EOFException("Koneksi putus di tengah transfer (" + pos + "/" + size + ")");
+            }
+            pos += n;
+            listener.onProgress(pos, size);
+        }
+        file.truncate(size);
+    }
+}
@@ -0,0 +1,239 @@
+package peer;
+
+import common.*;
+import java.util.*;
+
+/**
+ * Finger table ala Chord untuk satu node.
+ * finger[i] = successor((owner.key + 2^i) mod 2^M), sehingga lookup
+ * cukup O(log N) hop, bukan jalan satu per satu mengelilingi ring.
+ * Semua posisi memakai key peer di {@link KeySpace}, bukan id dari peerlist.
+ * Dibangun di atas satu {@link Ring}; tabel dan ring-nya sama-sama tidak
+ * berubah setelah dibuat. Dengan virtual node, tiap posisi owner punya
+ * baris finger sendiri dan routing memakai posisi yang paling dekat
+ * mendahului key.
+ */
+public class FingerTable {
+    public static final int M = KeySpace.BITS;
+
+    // Hasil satu langkah lookup iteratif (lihat step)
+    public static final class Step {
+        public final boolean done;
+        public final PeerInfo peer;
+
+        public Step(boolean done, PeerInfo peer) {
+            this.done = done;
+            this.peer = peer;
+        }
+    }
+
+    private final PeerInfo owner;
+    private final Ring ring;
+    private final int ownerIndex;
+    // Indeks posisi-posisi owner di ring (naik), satu baris finger per posisi
+    private final int[] ownPositions;
+    private final PeerInfo[][] fingers;
+    private final long[][] fingerKeys;      // key posisi yang ditunjuk finger, bukan key utama peer-nya
+
+    public FingerTable(int ownerId, List<PeerInfo> peers) {
+        this(ownerId, new Ring(1, peers));
+    }
+
+    public FingerTable(int ownerId, Ring ring) {
+        this.ring = ring;
+        PeerInfo self = null;
+        for (PeerInfo p : ring.members()) {
+            if (p.id == ownerId) self = p;
+        }
+        if (self == null) throw new IllegalArgumentException("Node " + ownerId + " tidak ada di peerlist");
+        this.owner = self;
+        this.ownerIndex = ring.indexOf(self);
+
+        int n = 0;
+        int[] own = new int[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            if (ring.get(i) == owner) own[n++] = i;
+        }
+        this.ownPositions = Arrays.copyOf(own, n);
+        this.fingers = new PeerInfo[n][M];
+        this.fingerKeys = new long[n][M];
+        for (int v = 0; v < n; v++) {
+            long from = ring.keyAt(ownPositions[v]);
+            for (int i = 0; i < M; i++) {
+                int at = ring.successorIndex(KeySpace.fingerStart(from, i));
+                fingers[v][i] = ring.get(at);
+                fingerKeys[v][i] = ring.keyAt(at);
+            }
+        }
+    }
+
+    public Ring ring() {
+        return ring;
+    }
+
+    public int getOwnerId() {
+        return owner.id;
+    }
+
+    public PeerInfo getOwner() {
+        return owner;
+    }
+
+    // Finger dari posisi utama owner
+    public PeerInfo getFinger(int i) {
+        return fingers[primary()][i];
+    }
+
+    // Node pertama dengan key >= key, wrap ke node terkecil
+    public PeerInfo successor(long key) {
+        return ring.successor(key);
+    }
+
+    // Node fisik sesudah posisi utama owner (bukan fingers[0]: dengan key kembar atau vnode itu bisa owner sendiri)
+    public PeerInfo successorOfOwner() {
+        return ring.after(owner);
+    }
+
+    public PeerInfo predecessorOfOwner() {
+        return ring.before(owner);
+    }
+
+    // r node fisik berikutnya searah ring (tanpa owner), cadangan kalau successor mati
+    public List<PeerInfo> successorList(int r) {
+        return distinct(ownerIndex + 1, r, true);
+    }
+
+    // Replika key: pemilik key lalu k-1 node fisik berikutnya searah ring; vnode milik node yang sama dilewati
+    public List<PeerInfo> replicas(long key, int k) {
+        return distinct(ring.successorIndex(key), k, false);
+    }
+
+    private List<PeerInfo> distinct(int from, int max, boolean skipOwner) {
+        int hosts = ring.members().size();
+        List<PeerInfo> list = new ArrayList<>(Math.min(max, hosts));
+        for (int k = 0; k < ring.size() && list.size() < max; k++) {
+            PeerInfo p = ring.get(from + k);
+            if ((skipOwner && p == owner) || list.contains(p)) continue;
+            list.add(p);
+        }
+        return list;
+    }
+
+    /**
+     * Batas hop wajar untuk routing finger (2 log2 N + 2). Lebih dari itu
+     * berarti pandangan anggota antar node sedang tidak konsisten.
+     */
+    public int hopBudget() {
+        int log = 32 - Integer.numberOfLeadingZeros(Math.max(ring.size() - 1, 1));
+        return 2 * log + 2;
+    }
+
+    public List<PeerInfo> members() {
+        return ring.members();
+    }
+
+    // Apakah key jatuh di (predecessor, owner] salah satu posisi owner
+    public boolean owns(long key) {
+        return successor(key) == owner;
+    }
+
+    /**
+     * Satu langkah lookup iteratif: pemilik key kalau sudah pasti
+     * (owner atau successor salah satu posisinya), selain itu finger yang
+     * harus ditanya berikutnya. Tidak pernah menghubungi jaringan.
+     */
+    public Step step(long key) {
+        int at = ring.successorIndex(key);
+        PeerInfo succ = ring.get(at);
+        if (succ == owner) return new Step(true, owner);
+        if (ring.get(at - 1) == owner) return new Step(true, succ);
+        return new Step(false, closestPrecedingFinger(key));
+    }
+
+    /**
+     * Langkah routing berikutnya untuk key yang bukan milik node ini:
+     * successor langsung jika key tepat sesudah salah satu posisi owner,
+     * selain itu finger terdekat yang masih mendahului key.
+     */
+    public PeerInfo nextHop(long key) {
+        return nextHop(key, Collections.emptySet());
+    }
+
+    /**
+     * Sama seperti nextHop(key) tapi melewati node di skip (mis. yang baru
+     * saja gagal dihubungi). null kalau tidak ada lagi kandidat.
+     */
+    public PeerInfo nextHop(long key, Set<Integer> skip) {
+        int at = ring.successorIndex(key);
+        PeerInfo succ = ring.get(at);
+        if (succ != owner && ring.get(at - 1) == owner && !skip.contains(succ.id)) {
+            return succ;
+        }
+        PeerInfo f = closestPrecedingFinger(key, skip);
+        if (f != null) return f;
+        // Semua finger sebelum key gagal: jalan searah ring dari posisi owner terdekat
+        int from = ownPositions[vnodeBefore(at)];
+        for (int k = 1; k < ring.size(); k++) {
+            PeerInfo p = ring.get(from + k);
+            if (p != owner && !skip.contains(p.id)) return p;
+        }
+        return null;
+    }
+
+    /**
+     * Tanpa finger di antara posisi owner dan key: posisi ring tepat sesudah
+     * posisi owner yang paling dekat mendahului key. Bukan successorOfOwner,
+     * yang dihitung dari posisi utama dan bisa berbalik menjauhi key.
+     */
+    public PeerInfo closestPrecedingFinger(long key) {
+        PeerInfo f = closestPrecedingFinger(key, Collections.emptySet());
+        return f != null ? f : ring.get(ownPositions[vnodeBefore(ring.successorIndex(key))] + 1);
+    }
+
+    /**
+     * Dari posisi owner yang paling dekat mendahului key, supaya tiap hop
+     * selalu maju: node berikutnya punya posisi di antara posisi ini dan key.
+     */
+    private PeerInfo closestPrecedingFinger(long key, Set<Integer> skip) {
+        int v = vnodeBefore(ring.successorIndex(key));
+        long from = ring.keyAt(ownPositions[v]);
+        for (int i = M - 1; i >= 0; i--) {
+            PeerInfo f = fingers[v][i];
+            if (f != owner && !skip.contains(f.id) && KeySpace.inOpen(fingerKeys[v][i], from, key)) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    // Baris finger untuk posisi owner terakhir sebelum posisi ring ke-at (wrap ke posisi owner terbesar)
+    private int vnodeBefore(int at) {
+        int lo = 0;
+        int hi = ownPositions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ownPositions[mid] < at) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo == 0 ? ownPositions.length - 1 : lo - 1;
+    }
+
+    private int primary() {
+        return Math.max(0, Arrays.binarySearch(ownPositions, ownerIndex));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FingerTable Node " + owner.id + " (key " + KeySpace.format(owner.key)
+                + (ownPositions.length > 1 ? ", " + ownPositions.length + " vnode" : "") + "):");
+        PeerInfo[] row = fingers[primary()];
+        PeerInfo last = null;
+        for (int i = 0; i < M; i++) {
+            if (row[i] == last) continue;       // finger berurutan sering menunjuk node yang sama
+            last = row[i];
+            sb.append("\n  [").append(i).append("] start=").append(KeySpace.format(KeySpace.fingerStart(owner.key, i)))
+              .append(" -> Node ").append(last.id);
+        }
+        return sb.toString();
+    }
+}
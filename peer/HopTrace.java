@@ -0,0 +1,85 @@
+package peer;
+
+import common.*;
+import java.io.EOFException;
+
+/**
+ * Jejak satu lookup: id node per hop dari asal sampai node yang menjawab,
+ * dan waktu (µs) yang dihabiskan tiap node termasuk semua hop sesudahnya.
+ * Dibangun di jalur balik: node yang menjawab mulai dengan dirinya, tiap
+ * node di depannya menambahkan diri di depan. Waktu di node itu sendiri =
+ * micros[i] - micros[i + 1].
+ *
+ * Hanya dikirim kalau lookup diminta atau disampel untuk dilacak
+ * (SearchResult.TRACE), jadi lookup biasa tetap berukuran tetap.
+ */
+public final class HopTrace {
+    public static final HopTrace EMPTY = new HopTrace(new int[0], new int[0]);
+
+    private final int[] ids;
+    private final int[] micros;
+
+    private HopTrace(int[] ids, int[] micros) {
+        this.ids = ids;
+        this.micros = micros;
+    }
+
+    // Jejak baru dengan node ini sebagai hop pertama
+    public HopTrace prepend(int id, long elapsedMicros) {
+        int n = ids.length;
+        int[] i2 = new int[n + 1];
+        int[] m2 = new int[n + 1];
+        i2[0] = id;
+        m2[0] = (int) Math.min(Integer.MAX_VALUE, elapsedMicros);
+        System.arraycopy(ids, 0, i2, 1, n);
+        System.arraycopy(micros, 0, m2, 1, n);
+        return new HopTrace(i2, m2);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int id(int hop) {
+        return ids[hop];
+    }
+
+    // Total di node hop, termasuk hop sesudahnya
+    public int micros(int hop) {
+        return micros[hop];
+    }
+
+    // Hanya di node hop itu sendiri (proses lokal + jaringan ke hop berikutnya)
+    public int selfMicros(int hop) {
+        return hop + 1 < micros.length ? micros[hop] - micros[hop + 1] : micros[hop];
+    }
+
+    // n(4) | n x (id(4), micros(4))
+    public void writeTo(Payload.Writer w) {
+        w.writeInt(ids.length);
+        for (int i = 0; i < ids.length; i++) w.writeInt(ids[i]).writeInt(micros[i]);
+    }
+
+    public static HopTrace readFrom(Payload.Reader r) throws EOFException {
+        int n = r.readInt();
+        if (n < 0 || n > 1024) throw new EOFException("Jejak hop tidak valid: " + n);
+        int[] ids = new int[n];
+        int[] micros = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = r.readInt();
+            micros[i] = r.readInt();
+        }
+        return new HopTrace(ids, micros);
+    }
+
+    // "Node 3 (1240 µs) → Node 7 (410 µs) → Node 9 (35 µs)", waktu per node tanpa hop sesudahnya
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) sb.append(" → ");
+            sb.append("Node ").append(ids[i]).append(" (").append(selfMicros(i)).append(" µs)");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,329 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/**
+ * Indeks file lokal yang bertahan di disk, supaya peer yang restart
+ * langsung tahu isi shared/ tanpa memindai dan meng-hash ulang.
+ *
+ * - files.snap: snapshot padat (key + nama per entry), dibaca lewat
+ *   memory map. Ditulis ke file sementara, di-fsync, lalu di-rename.
+ * - files.log: log append-only PUT/REMOVE sejak snapshot terakhir. Tiap
+ *   record punya panjang dan CRC32; ekor yang rusak (crash di tengah
+ *   penulisan) dibuang saat load. Record CONFIG (dht.bits dan dht.hash)
+ *   ditulis tiap kali log dibuka; PUT yang ditulis dengan konfigurasi
+ *   lain, atau sebelum ada CONFIG (log versi lama), di-hash ulang.
+ *
+ * Setelah compactEvery record, snapshot baru dibuat di background: log
+ * dipindah ke files.log.old dan log baru dimulai (sebentar, di bawah
+ * lock), snapshot ditulis tanpa menahan put/remove, lalu log lama
+ * dihapus. Semua perubahan lewat kelas ini (bukan langsung ke
+ * LocalIndex) agar urutan di log sama dengan urutan di memori.
+ */
+public class IndexStore {
+    private static final int SNAP_MAGIC = 0x50324958;     // "P2IX"
+    private static final int SNAP_VERSION = 1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CONFIG = 3;       // key = dht.bits, nama = dht.hash
+
+    private final LocalIndex index;
+    private final Path snapFile;
+    private final Path logFile;
+    private final Path oldLogFile;      // log yang sedang di-compact; ada setelah crash di tengah compaction
+    private final int compactEvery;
+    private final boolean fsync;
+    private final AsyncLog messages;
+
+    private FileChannel log;
+    private int logRecords;
+    private final ByteBuffer record = ByteBuffer.allocate(8 + 1 + 8 + 2 + 1024);
+    private final CRC32 crc = new CRC32();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "index-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean compacting;
+
+    public IndexStore(LocalIndex index, Path dir, int compactEvery, boolean fsync, AsyncLog messages) {
+        this.index = index;
+        this.snapFile = dir.resolve("files.snap");
+        this.logFile = dir.resolve("files.log");
+        this.oldLogFile = dir.resolve("files.log.old");
+        this.compactEvery = compactEvery;
+        this.fsync = fsync;
+        this.messages = messages;
+    }
+
+    // Konfigurasi dari system property, mis. -Dp2p.index.dir=index -Dp2p.index.fsync=true (relatif ke dataDir)
+    public static IndexStore fromSystemProperties(LocalIndex index, Path dataDir, AsyncLog messages) {
+        return new IndexStore(
+                index,
+                dataDir.resolve(System.getProperty("p2p.index.dir", "index")),
+                Integer.getInteger("p2p.index.compactEvery", 50_000),
+                Boolean.getBoolean("p2p.index.fsync"),
+                messages);
+    }
+
+    // ---- load ----
+
+    /**
+     * Isi LocalIndex dari snapshot lalu replay log. Dipanggil sekali saat
+     * start, sebelum server menerima request. Mengembalikan jumlah file.
+     */
+    public synchronized int load() throws IOException {
+        Files.createDirectories(logFile.getParent());
+        boolean rehashed = false;
+        if (Files.exists(snapFile)) rehashed = loadSnapshot();
+
+        // Compaction sebelumnya tidak selesai: log lama dulu, urutannya tetap benar
+        boolean unfinished = Files.exists(oldLogFile);
+        if (unfinished) {
+            rehashed |= replayLog(oldLogFile);
+            truncateTail(oldLogFile);
+        }
+        long valid = 0;
+        boolean configured = false;
+        if (Files.exists(logFile)) {
+            rehashed |= replayLog(logFile);
+            valid = validLength;
+            configured = currentConfig;
+        }
+
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() > valid) {
+            messages.append("Indeks: " + (log.size() - valid) + " byte ekor log rusak dibuang");
+            log.truncate(valid);
+        }
+        log.position(valid);
+        // Record berikutnya ditulis dengan konfigurasi sekarang
+        if (!configured) appendConfig();
+
+        // Log panjang, key dihitung ulang, atau compaction belum selesai: snapshot baru di background
+        if (rehashed || unfinished || logRecords >= compactEvery) scheduleCompaction();
+        return index.size();
+    }
+
+    private void truncateTail(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (ch.size() > validLength) ch.truncate(validLength);
+        }
+    }
+
+    // true kalau key di snapshot dihitung dengan dht.bits/dht.hash lain dan harus di-hash ulang
+    private boolean loadSnapshot() throws IOException {
+        try (FileChannel ch = FileChannel.open(snapFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < 16 || buf.getInt() != SNAP_MAGIC || buf.getInt() != SNAP_VERSION) {
+                throw new StreamCorruptedException("Snapshot indeks tidak dikenal: " + snapFile);
+            }
+            int bits = buf.getInt();
+            String algorithm = readName(buf);
+            boolean rehash = bits != KeySpace.BITS || !algorithm.equals(KeySpace.ALGORITHM);
+            int count = buf.getInt();
+            for (int i = 0; i < count; i++) {
+                long key = buf.getLong();
+                String name = readName(buf);
+                index.put(rehash ? new FileEntry(name) : new FileEntry(name, key));
+            }
+            return rehash;
+        }
+    }
+
+    // Hasil replayLog terakhir: posisi akhir record utuh dan apakah CONFIG terakhir sama dengan sekarang
+    private long validLength;
+    private boolean currentConfig;
+
+    // true kalau ada PUT yang key-nya harus di-hash ulang
+    private boolean replayLog(Path file) throws IOException {
+        boolean rehashed = false;
+        // Tanpa CONFIG (log versi lama) konfigurasinya tidak diketahui: hash ulang
+        boolean stale = true;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            CRC32 check = new CRC32();
+            while (buf.remaining() >= 8) {
+                int start = buf.position();
+                int length = buf.getInt();
+                int expected = buf.getInt();
+                if (length < 11 || length > buf.remaining()) {
+                    buf.position(start);
+                    break;
+                }
+                ByteBuffer body = buf.slice(buf.position(), length);
+                check.reset();
+                check.update(body.duplicate());
+                if ((int) check.getValue() != expected) {
+                    buf.position(start);
+                    break;
+                }
+                buf.position(buf.position() + length);
+
+                byte op = body.get();
+                long key = body.getLong();
+                String name = readName(body);
+                if (op == CONFIG) {
+                    stale = key != KeySpace.BITS || !name.equals(KeySpace.ALGORITHM);
+                    continue;
+                }
+                if (op == PUT) {
+                    index.put(stale ? new FileEntry(name) : new FileEntry(name, key));
+                    rehashed |= stale;
+                } else {
+                    index.remove(name);
+                }
+                logRecords++;
+            }
+            validLength = buf.position();
+        }
+        currentConfig = !stale;
+        return rehashed;
+    }
+
+    private static String readName(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---- perubahan ----
+
+    public synchronized void put(FileEntry entry) {
+        index.put(entry);
+        append(PUT, entry.hash, entry.filename);
+    }
+
+    public synchronized FileEntry remove(String filename) {
+        FileEntry removed = index.remove(filename);
+        if (removed != null) append(REMOVE, removed.hash, filename);
+        return removed;
+    }
+
+    private void appendConfig() {
+        append(CONFIG, KeySpace.BITS, KeySpace.ALGORITHM);
+    }
+
+    private void append(byte op, long key, String name) {
+        if (log == null) return;        // belum load (mis. dipakai tanpa persistensi)
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = 8 + 11 + bytes.length <= record.capacity() ? record : ByteBuffer.allocate(8 + 11 + bytes.length);
+        buf.clear();
+        buf.putInt(11 + bytes.length).putInt(0)
+           .put(op).putLong(key).putShort((short) bytes.length).put(bytes);
+        crc.reset();
+        crc.update(buf.array(), 8, 11 + bytes.length);
+        buf.putInt(4, (int) crc.getValue());
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) log.write(buf);
+            if (fsync) log.force(false);
+        } catch (IOException e) {
+            messages.append("⚠️ Indeks: gagal menulis log (" + e.getMessage() + "), perubahan hanya di memori");
+            return;
+        }
+        if (op != CONFIG && ++logRecords >= compactEvery) scheduleCompaction();
+    }
+
+    // ---- compaction ----
+
+    private synchronized void scheduleCompaction() {
+        if (compacting) return;
+        compacting = true;
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                messages.append("⚠️ Indeks: compaction gagal: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Tulis snapshot dari isi indeks sekarang. Hanya pengambilan isi dan
+     * pergantian log yang memegang lock; record yang masuk selama snapshot
+     * ditulis sudah berada di log baru. Crash di tengah jalan aman: saat
+     * load, files.log.old di-replay sebelum files.log.
+     */
+    public void compact() throws IOException {
+        long t0 = System.nanoTime();
+        List<FileEntry> entries;
+        synchronized (this) {
+            compacting = false;
+            if (log == null) return;
+            entries = index.snapshot();
+            rotateLog();
+        }
+
+        Path tmp = snapFile.resolveSibling("files.snap.tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            byte[] algorithm = KeySpace.ALGORITHM.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(SNAP_MAGIC).putInt(SNAP_VERSION).putInt(KeySpace.BITS)
+               .putShort((short) algorithm.length).put(algorithm)
+               .putInt(entries.size());
+            for (FileEntry e : entries) {
+                byte[] name = e.filename.getBytes(StandardCharsets.UTF_8);
+                if (buf.remaining() < 10 + name.length) {
+                    drain(ch, buf);
+                    if (buf.capacity() < 10 + name.length) buf = ByteBuffer.allocate(10 + name.length);
+                }
+                buf.putLong(e.hash).putShort((short) name.length).put(name);
+            }
+            drain(ch, buf);
+            ch.force(true);
+        }
+        Files.move(tmp, snapFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(oldLogFile);
+        messages.append("Indeks: snapshot " + entries.size() + " file ditulis dalam "
+                + (System.nanoTime() - t0) / 1_000_000 + " ms");
+    }
+
+    // Log sekarang jadi files.log.old (digabung kalau compaction sebelumnya gagal), log baru dimulai
+    private void rotateLog() throws IOException {
+        log.force(false);
+        if (Files.exists(oldLogFile)) {
+            try (FileChannel old = FileChannel.open(oldLogFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long size = log.size();
+                for (long pos = 0; pos < size; ) pos += log.transferTo(pos, size - pos, old);
+                old.force(false);
+            }
+            log.close();
+            Files.delete(logFile);
+        } else {
+            log.close();
+            Files.move(logFile, oldLogFile, StandardCopyOption.ATOMIC_MOVE);
+        }
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        logRecords = 0;
+        appendConfig();
+    }
+
+    private static void drain(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    public synchronized void close() {
+        compactor.shutdown();
+        if (log == null) return;
+        try {
+            log.force(false);
+            log.close();
+        } catch (IOException ignored) {
+        }
+        log = null;
+    }
+}
@@ -0,0 +1,187 @@
+package peer;
+
+import common.FileEntry;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Indeks file lokal yang aman dipakai bersamaan oleh handler server,
+ * thread routing dan EDT Swing.
+ *
+ * - nama -> FileEntry: ConcurrentHashMap (baca tanpa lock)
+ * - key  -> FileEntry[]: tabel hash primitif per stripe. Node rantai
+ *   immutable dan dipublikasikan lewat AtomicReferenceArray, jadi
+ *   pembaca tidak pernah mengunci dan tidak ada boxing Long.
+ *
+ * Penulis mengunci satu stripe (dipilih dari key); karena key diturunkan
+ * dari nama, kedua struktur selalu diubah di bawah lock yang sama.
+ * snapshot() mengunci semua stripe sebentar untuk salinan yang konsisten.
+ */
+public class LocalIndex {
+    private static final int STRIPES = 16;
+    private static final FileEntry[] EMPTY = new FileEntry[0];
+
+    private static final class Node {
+        final long key;
+        final FileEntry[] files;
+        final Node next;
+
+        Node(long key, FileEntry[] files, Node next) {
+            this.key = key;
+            this.files = files;
+            this.next = next;
+        }
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile AtomicReferenceArray<Node> table = new AtomicReferenceArray<>(16);
+        int keys;
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ConcurrentHashMap<String, FileEntry> byName = new ConcurrentHashMap<>();
+
+    public LocalIndex() {
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    private static int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Stripe stripeFor(int h) {
+        return stripes[h & (STRIPES - 1)];
+    }
+
+    private static int bucket(int h, int length) {
+        return (h >>> 4) & (length - 1);
+    }
+
+    // ---- baca (tanpa lock) ----
+
+    public FileEntry get(String filename) {
+        return byName.get(filename);
+    }
+
+    public boolean contains(String filename) {
+        return byName.containsKey(filename);
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    // Semua file dengan key ini; array kosong kalau tidak ada. Jangan diubah.
+    public FileEntry[] lookup(long key) {
+        int h = spread(key);
+        AtomicReferenceArray<Node> table = stripeFor(h).table;
+        for (Node n = table.get(bucket(h, table.length())); n != null; n = n.next) {
+            if (n.key == key) return n.files;
+        }
+        return EMPTY;
+    }
+
+    // ---- tulis (lock per stripe) ----
+
+    // true kalau file baru, false kalau menggantikan entry dengan nama sama
+    public boolean put(FileEntry entry) {
+        int h = spread(entry.hash);
+        Stripe s = stripeFor(h);
+        s.lock.lock();
+        try {
+            FileEntry[] old = lookupLocked(s, h, entry.hash);
+            FileEntry[] files = new FileEntry[old.length + 1];
+            int n = 0;
+            for (FileEntry f : old) {
+                if (!f.filename.equals(entry.filename)) files[n++] = f;
+            }
+            files[n++] = entry;
+            if (old.length == 0) s.keys++;
+            replaceLocked(s, h, entry.hash, Arrays.copyOf(files, n));
+
+            // key dulu baru nama: pembaca yang melihat nama pasti bisa menemukan key-nya
+            return byName.put(entry.filename, entry) == null;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    public FileEntry remove(String filename) {
+        FileEntry entry = byName.get(filename);
+        if (entry == null) return null;
+
+        int h = spread(entry.hash);
+        Stripe s = stripeFor(h);
+        s.lock.lock();
+        try {
+            entry = byName.remove(filename);
+            if (entry == null) return null;
+
+            FileEntry[] old = lookupLocked(s, h, entry.hash);
+            FileEntry[] files = new FileEntry[old.length];
+            int n = 0;
+            for (FileEntry f : old) {
+                if (!f.filename.equals(filename)) files[n++] = f;
+            }
+            if (n == 0) s.keys--;
+            replaceLocked(s, h, entry.hash, n == 0 ? null : Arrays.copyOf(files, n));
+            return entry;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Salinan semua entry pada satu titik waktu (semua stripe dikunci
+     * selama menyalin), aman untuk diiterasi di EDT.
+     */
+    public List<FileEntry> snapshot() {
+        for (Stripe s : stripes) s.lock.lock();
+        try {
+            return new ArrayList<>(byName.values());
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) stripes[i].lock.unlock();
+        }
+    }
+
+    private static FileEntry[] lookupLocked(Stripe s, int h, long key) {
+        AtomicReferenceArray<Node> table = s.table;
+        for (Node n = table.get(bucket(h, table.length())); n != null; n = n.next) {
+            if (n.key == key) return n.files;
+        }
+        return EMPTY;
+    }
+
+    // Ganti (atau hapus bila files == null) rantai untuk key; node lama tidak pernah diubah
+    private static void replaceLocked(Stripe s, int h, long key, FileEntry[] files) {
+        AtomicReferenceArray<Node> table = s.table;
+        int b = bucket(h, table.length());
+        Node rest = without(table.get(b), key);
+        table.set(b, files == null ? rest : new Node(key, files, rest));
+
+        if (s.keys > table.length() * 3 / 4) resize(s);
+    }
+
+    private static Node without(Node head, long key) {
+        if (head == null) return null;
+        if (head.key == key) return head.next;
+        Node rest = without(head.next, key);
+        return rest == head.next ? head : new Node(head.key, head.files, rest);
+    }
+
+    private static void resize(Stripe s) {
+        AtomicReferenceArray<Node> old = s.table;
+        AtomicReferenceArray<Node> table = new AtomicReferenceArray<>(old.length() * 2);
+        for (int i = 0; i < old.length(); i++) {
+            for (Node n = old.get(i); n != null; n = n.next) {
+                int b = bucket(spread(n.key), table.length());
+                table.set(b, new Node(n.key, n.files, table.get(b)));
+            }
+        }
+        s.table = table;    // publikasi volatile; pembaca lama tetap aman di tabel lama
+    }
+}
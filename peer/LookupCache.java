@@ -0,0 +1,99 @@
+package peer;
+
+import common.PeerInfo;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache hasil lookup: key -> node pemilik (dan nama file kalau sudah
+ * diketahui). LRU dengan batas jumlah entry dan TTL, supaya lookup
+ * berulang untuk file populer cukup satu request langsung ke pemilik.
+ * Entry dibuang kalau pemiliknya tidak merespons.
+ */
+public class LookupCache {
+
+    public static class Entry {
+        public final PeerInfo owner;
+        public final String files;
+        final long expiresAt;
+
+        Entry(PeerInfo owner, String files, long expiresAt) {
+            this.owner = owner;
+            this.files = files;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttlMs;
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public LookupCache(int maxEntries, long ttlMs) {
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static LookupCache fromSystemProperties() {
+        return new LookupCache(
+                Integer.getInteger("p2p.cache.size", 4096),
+                Long.getLong("p2p.cache.ttlMs", 60_000L));
+    }
+
+    public synchronized Entry get(long key) {
+        Entry e = entries.get(key);
+        if (e != null && e.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            e = null;
+        }
+        (e == null ? misses : hits).incrementAndGet();
+        return e;
+    }
+
+    public synchronized void put(long key, PeerInfo owner, String files) {
+        entries.put(key, new Entry(owner, files, System.currentTimeMillis() + ttlMs));
+    }
+
+    public synchronized void invalidate(long key) {
+        if (entries.remove(key) != null) invalidations.incrementAndGet();
+    }
+
+    // Buang semua entry yang menunjuk node ini (mis. node mati)
+    public synchronized void invalidateOwner(int ownerId) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().owner.id == ownerId) {
+                it.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses + " invalidations=" + invalidations + " size=" + size();
+    }
+}
@@ -0,0 +1,102 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Daftar chunk penyusun satu file (urut), hasil {@link Chunker}.
+ * Di disk dan di jaringan: size(8) | count(4) | per chunk: id | length(4).
+ */
+public class Manifest {
+    static final int MAGIC = 0x50324D46;      // "P2MF", penanda file manifest di shared/
+
+    public final long size;
+    private final byte[][] ids;
+    private final int[] lengths;
+    private final long[] offsets;
+
+    Manifest(byte[][] ids, int[] lengths) {
+        this.ids = ids;
+        this.lengths = lengths;
+        this.offsets = new long[ids.length];
+        long pos = 0;
+        for (int i = 0; i < ids.length; i++) {
+            offsets[i] = pos;
+            pos += lengths[i];
+        }
+        this.size = pos;
+    }
+
+    public int count() {
+        return ids.length;
+    }
+
+    public byte[] id(int i) {
+        return ids[i];
+    }
+
+    public int length(int i) {
+        return lengths[i];
+    }
+
+    // Posisi chunk i di file aslinya
+    public long offset(int i) {
+        return offsets[i];
+    }
+
+    public void writeTo(Payload.Writer w) {
+        w.writeLong(size).writeInt(ids.length);
+        for (int i = 0; i < ids.length; i++) w.writeBytes(ids[i]).writeInt(lengths[i]);
+    }
+
+    // SHA-256 dari bentuk serialnya: sama persis kalau isi file sama
+    public byte[] digest() {
+        Payload.Writer w = new Payload.Writer(12 + ids.length * 40);
+        writeTo(w);
+        byte[] data = w.toByteArray();
+        return Chunker.id(data, 0, data.length);
+    }
+
+    public static Manifest readFrom(Payload.Reader r) throws IOException {
+        long size = r.readLong();
+        int n = r.readCount(4 + Chunker.ID_BYTES + 4);
+        byte[][] ids = new byte[n][];
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = r.readBytes();
+            lengths[i] = r.readInt();
+            if (ids[i].length != Chunker.ID_BYTES || lengths[i] < 0 || lengths[i] > Chunker.MAX) {
+                throw new StreamCorruptedException("Manifest rusak di chunk " + i);
+            }
+        }
+        Manifest m = new Manifest(ids, lengths);
+        if (m.size != size) throw new StreamCorruptedException("Ukuran manifest tidak cocok");
+        return m;
+    }
+
+    public static String hex(byte[] id) {
+        StringBuilder sb = new StringBuilder(id.length * 2);
+        for (byte b : id) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+
+    static class Builder {
+        private byte[][] ids = new byte[16][];
+        private int[] lengths = new int[16];
+        private int n;
+
+        void add(byte[] id, int length) {
+            if (n == ids.length) {
+                ids = Arrays.copyOf(ids, n * 2);
+                lengths = Arrays.copyOf(lengths, n * 2);
+            }
+            ids[n] = id;
+            lengths[n++] = length;
+        }
+
+        Manifest build() {
+            return new Manifest(Arrays.copyOf(ids, n), Arrays.copyOf(lengths, n));
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keanggotaan ring yang dinamis ala Chord.
+ *
+ * - JOIN: node baru menghubungi salah satu seed dan menerima daftar anggota.
+ * - NOTIFY: tiap periode node memberi tahu successor-nya (stabilize) dan
+ *   menerima predecessor + successor list milik successor itu.
+ * - fix-fingers: beberapa finger per periode di-lookup ulang lewat
+ *   FIND_SUCCESSOR; node yang belum dikenal ikut ditambahkan.
+ * - LEAVE: file yang belum dimiliki successor diserahkan, lalu semua
+ *   anggota diberi tahu.
+ *
+ * Perpindahan file antar replika setelah anggota berubah dikerjakan oleh
+ * anti-entropy di {@link Replication}.
+ *
+ * Kapasitas (bobot jumlah virtual node) dan capacityVersion-nya ikut
+ * dikirim di belakang payload lama. Kapasitas dari node itu sendiri
+ * (JOIN, NOTIFY) selalu menggantikan yang sudah dikenal; dari daftar
+ * pihak ketiga hanya diganti kalau capacityVersion-nya lebih baru, jadi
+ * kapasitas yang dinaikkan maupun diturunkan menyebar lewat gossip tanpa
+ * LEAVE. Versi diambil dari waktu start node, jadi kapasitas baru
+ * setelah restart mengalahkan kabar lama yang masih beredar; entry dari
+ * peerlist tanpa kolom itu berversi 0 dan tidak pernah menang.
+ *
+ * Finger table hanya dibangun dari node yang hidup menurut
+ * {@link FailureDetector}, jadi routing otomatis melewati node mati tanpa
+ * menunggu timeout. Node yang sudah lama mati dibuang dari daftar.
+ */
+public class Membership {
+    private final PeerNode node;
+    private final int successors;
+    private final long periodMs;
+    private final long removeAfterMs;
+    private final int fingersPerRound;
+
+    private ScheduledExecutorService loop;
+    private int nextFinger;
+    private volatile boolean leaving;
+
+    public Membership(PeerNode node, int successors, long periodMs, long removeAfterMs, int fingersPerRound) {
+        this.node = node;
+        this.successors = successors;
+        this.periodMs = periodMs;
+        this.removeAfterMs = removeAfterMs;
+        this.fingersPerRound = fingersPerRound;
+    }
+
+    // Konfigurasi dari system property, mis. -Dp2p.successors=5
+    public static Membership fromSystemProperties(PeerNode node) {
+        return new Membership(
+                node,
+                Integer.getInteger("p2p.successors", 3),
+                Long.getLong("p2p.stabilizeMs", 1_000L),
+                Long.getLong("p2p.membership.removeAfterMs", 30_000L),
+                Integer.getInteger("p2p.fixFingers", 8));
+    }
+
+    public int getSuccessors() {
+        return successors;
+    }
+
+    public synchronized void start() {
+        loop = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "membership");
+            t.setDaemon(true);
+            return t;
+        });
+        node.detector.addListener(this::rebuild);
+        loop.scheduleWithFixedDelay(this::tick, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (loop != null) loop.shutdownNow();
+    }
+
+    // ---- daftar anggota ----
+
+    public synchronized boolean add(PeerInfo peer) {
+        if (node.findPeer(peer.id) != null) return false;
+        node.peers.add(peer);
+        node.log("Membership: Node " + peer.id + " (" + peer.ip + ":" + peer.port + ") bergabung");
+        changed();
+        return true;
+    }
+
+    /**
+     * Tambah atau perbarui kapasitas. Pengumuman dengan capacityVersion
+     * lebih baru menang, dari mana pun datangnya, jadi kapasitas yang
+     * diturunkan juga menyebar. fromSelf: info datang dari node itu
+     * sendiri, jadi kapasitasnya berlaku apa adanya.
+     */
+    synchronized void learn(PeerInfo peer, boolean fromSelf) {
+        PeerInfo known = node.findPeer(peer.id);
+        if (known == null || peer.id == node.myId) {
+            add(peer);
+            return;
+        }
+        boolean newer = fromSelf || peer.capacityVersion > known.capacityVersion;
+        if (!newer) return;
+        if (known.capacity == peer.capacity) {
+            known.capacityVersion = Math.max(known.capacityVersion, peer.capacityVersion);
+            return;
+        }
+        // Laporan node itu sendiri selalu berlaku: jangan sampai kalah lagi oleh kabar lama yang versinya lebih tinggi
+        if (fromSelf) peer.capacityVersion = Math.max(peer.capacityVersion, known.capacityVersion + 1);
+        node.peers.remove(known);
+        node.peers.add(peer);
+        node.log("Membership: kapasitas Node " + peer.id + " " + known.capacity + " → " + peer.capacity);
+        changed();
+    }
+
+    public synchronized boolean remove(int id) {
+        PeerInfo peer = node.findPeer(id);
+        if (peer == null || id == node.myId) return false;
+        node.peers.remove(peer);
+        node.detector.forget(id);
+        node.lookupCache.invalidateOwner(id);
+        node.log("Membership: Node " + id + " keluar dari ring");
+        changed();
+        return true;
+    }
+
+    private void changed() {
+        rebuild();
+        for (PeerNode.Listener l : node.listeners) l.onMembershipChanged();
+    }
+
+    /**
+     * Bangun ulang ring dan finger table dari anggota yang tidak diketahui
+     * mati, lalu publikasikan sekaligus dengan versi baru. Anggota yang
+     * belum sempat di-probe (baru JOIN, baru start) ikut masuk, supaya
+     * node yang baru bergabung tidak menganggap dirinya pemilik seluruh
+     * ring sampai heartbeat pertama. Dipanggil saat daftar anggota atau
+     * status hidup/mati berubah.
+     */
+    synchronized void rebuild() {
+        List<PeerInfo> members = new ArrayList<>();
+        for (PeerInfo p : node.peers) {
+            if (node.isNodeActive(p) || node.detector.isPending(p)) members.add(p);
+        }
+        FingerTable old = node.fingerTable;
+        if (old != null && old.ring().sameMembers(members)) return;
+
+        Ring ring = new Ring(old == null ? 1 : old.ring().version + 1, members);
+        node.fingerTable = new FingerTable(node.myId, ring);
+        node.log(ring + "\n" + node.fingerTable);
+        node.replication.requestRepair();
+    }
+
+    // ---- join / leave ----
+
+    /**
+     * Minta daftar anggota ke seed pertama yang merespons. Kalau tidak ada
+     * yang merespons, node ini menjadi anggota pertama ring.
+     */
+    public void join(List<PeerInfo> seeds) {
+        PeerInfo self = node.findPeer(node.myId);
+        for (PeerInfo seed : seeds) {
+            if (seed.id == node.myId) continue;
+            try {
+                List<PeerInfo> members = PeerClient.join(seed, self);
+                for (PeerInfo p : members) learn(p, p.id == seed.id);
+                node.log("Membership: bergabung lewat Node " + seed.id + ", " + members.size() + " anggota");
+                return;
+            } catch (IOException e) {
+                // coba seed berikutnya
+            }
+        }
+        node.log("Membership: tidak ada seed yang merespons, memulai ring baru");
+    }
+
+    /**
+     * Keluar dengan rapi: serahkan file yang belum dimiliki successor hidup lalu
+     * beri tahu semua anggota (paralel, tanpa menunggu yang mati).
+     */
+    public void leave() {
+        leave(Long.MAX_VALUE);
+    }
+
+    /**
+     * Dari shutdown hook (Ctrl+C, SIGTERM): serah terima file dibatasi
+     * -Dp2p.leave.shutdownMs (default 5000) supaya proses tidak tertahan
+     * upload besar. Yang belum terkirim disusul anti-entropy replika lain.
+     */
+    public void leaveOnShutdown() {
+        leave(Long.getLong("p2p.leave.shutdownMs", 5_000L));
+    }
+
+    private void leave(long handoffMs) {
+        if (leaving) return;
+        leaving = true;
+        if (loop != null) loop.shutdownNow();
+
+        PeerInfo self = node.findPeer(node.myId);
+        PeerInfo succ = firstReachable(node.fingerTable.successorList(successors));
+        if (succ != null) {
+            if (handoffMs == Long.MAX_VALUE) {
+                handOff(succ);
+            } else {
+                // Thread daemon: kalau waktunya habis, upload yang tersisa ikut berhenti bersama JVM
+                Thread t = new Thread(() -> handOff(succ), "leave-handoff");
+                t.setDaemon(true);
+                t.start();
+                try {
+                    t.join(handoffMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (t.isAlive()) {
+                    System.out.println("⚠️ Serah terima ke Node " + succ.id + " belum selesai setelah " + handoffMs
+                            + " ms, sisanya disusul anti-entropy");
+                }
+            }
+        }
+
+        List<CompletableFuture<Frame>> acks = new ArrayList<>();
+        byte[] payload = new Payload.Writer().writePeer(self).toByteArray();
+        for (PeerInfo p : node.peers) {
+            if (p.id == node.myId || !node.isNodeActive(p)) continue;
+            acks.add(PeerClient.POOL.callAsync(p, new Frame(Frame.LEAVE, Frame.nextRequestId(), payload)));
+        }
+        try {
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0])).get(2, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // sebagian anggota tidak membalas; FailureDetector mereka yang akan menyusul
+        }
+        System.out.println("👋 Node " + node.myId + " keluar dari ring");
+    }
+
+    private void handOff(PeerInfo succ) {
+        List<String> names = new ArrayList<>();
+        List<Replication.Copy> copies = new ArrayList<>();
+        for (FileEntry f : node.localFiles.snapshot()) {
+            names.add(f.filename);
+            try {
+                Replication.Copy copy = node.replication.localCopy(f.filename);
+                if (copy != null) copies.add(copy);
+            } catch (IOException e) {
+                // manifest tidak terbaca: uploadStored di bawah yang akan gagal
+            }
+        }
+        try {
+            // yang replikanya sudah sama atau lebih baru tidak dikirim ulang
+            names = PeerClient.sync(succ, copies);
+        } catch (IOException e) {
+            // successor tidak menjawab SYNC: kirim semua
+        }
+        for (String name : names) {
+            try {
+                PeerClient.uploadStored(succ, node.chunks, name, node.myId, node.codec, FileTransfer.NO_PROGRESS);
+            } catch (IOException e) {
+                System.out.println("⚠️ Gagal menyerahkan " + name + " ke Node " + succ.id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private PeerInfo firstReachable(List<PeerInfo> candidates) {
+        for (PeerInfo p : candidates) {
+            if (p.id != node.myId && node.isNodeActive(p)) return p;
+        }
+        return null;
+    }
+
+    // ---- loop periodik ----
+
+    private void tick() {
+        if (leaving) return;
+        try {
+            reapDead();
+            stabilize();
+            fixFingers();
+        } catch (Exception e) {
+            node.log("Membership: " + e);
+        }
+    }
+
+    // Beri tahu successor hidup pertama; pelajari predecessor dan successor list-nya
+    private void stabilize() {
+        PeerInfo self = node.findPeer(node.myId);
+        for (PeerInfo succ : node.fingerTable.successorList(successors)) {
+            try {
+                for (PeerInfo p : PeerClient.notify(succ, self)) learn(p, false);
+                return;
+            } catch (IOException e) {
+                // successor tidak terjangkau: lanjut ke entry berikutnya di successor list
+            }
+        }
+    }
+
+    private void fixFingers() {
+        FingerTable table = node.fingerTable;
+        long selfKey = table.getOwner().key;
+        for (int n = 0; n < fingersPerRound; n++) {
+            int i = nextFinger;
+            nextFinger = (nextFinger + 1) % FingerTable.M;
+            try {
+                PeerInfo owner = node.routeFindSuccessor(KeySpace.fingerStart(selfKey, i));
+                learn(owner, false);
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // Buang node yang pernah hidup tapi sudah lama tidak ada heartbeat
+    private void reapDead() {
+        long now = System.currentTimeMillis();
+        for (FailureDetector.Status s : node.detector.snapshot().values()) {
+            if (!s.alive && s.lastHeartbeat != 0 && now - s.lastHeartbeat > removeAfterMs) {
+                remove(s.peerId);
+            }
+        }
+    }
+
+    // ---- handler sisi server ----
+
+    // JOIN: tambahkan pengirim, balas semua anggota hidup (termasuk diri sendiri)
+    void handleJoin(Payload.Reader r, Payload.Writer reply) throws IOException {
+        learn(readMember(r), true);
+        List<PeerInfo> members = new ArrayList<>();
+        for (PeerInfo p : node.peers) {
+            if (node.isNodeActive(p)) members.add(p);
+        }
+        writePeers(reply.writeByte(Frame.STATUS_OK), members);
+    }
+
+    // NOTIFY: tambahkan pengirim, balas predecessor dan successor list
+    void handleNotify(Payload.Reader r, Payload.Writer reply) throws IOException {
+        learn(readMember(r), true);
+        FingerTable table = node.fingerTable;
+        List<PeerInfo> known = new ArrayList<>();
+        known.add(table.predecessorOfOwner());
+        known.addAll(table.successorList(successors));
+        writePeers(reply.writeByte(Frame.STATUS_OK), known);
+    }
+
+    void handleLeave(Payload.Reader r, Payload.Writer reply) throws IOException {
+        remove(r.readPeer().id);
+        reply.writeByte(Frame.STATUS_OK);
+    }
+
+    // Peer, kapasitas, lalu versinya; node lama berhenti membaca lebih awal
+    static void writeMember(Payload.Writer w, PeerInfo p) {
+        w.writePeer(p).writeInt(p.capacity).writeLong(p.capacityVersion);
+    }
+
+    static PeerInfo readMember(Payload.Reader r) throws IOException {
+        PeerInfo p = r.readPeer();
+        readCapacity(r, p);
+        if (r.hasRemaining()) p.capacityVersion = r.readLong();
+        return p;
+    }
+
+    // Kapasitas di belakang payload; dari node lama tidak ada, berarti 1
+    static void readCapacity(Payload.Reader r, PeerInfo p) throws IOException {
+        if (r.hasRemaining()) p.capacity = Math.max(1, r.readInt());
+    }
+
+    // Daftar peer, lalu kapasitas dan versinya per peer dengan urutan yang sama
+    static void writePeers(Payload.Writer w, List<PeerInfo> peers) {
+        w.writeInt(peers.size());
+        for (PeerInfo p : peers) w.writePeer(p);
+        for (PeerInfo p : peers) w.writeInt(p.capacity);
+        for (PeerInfo p : peers) w.writeLong(p.capacityVersion);
+    }
+
+    static List<PeerInfo> readPeers(Payload.Reader r) throws IOException {
+        int n = r.readCount(4 + 4 + 4);
+        List<PeerInfo> peers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) peers.add(r.readPeer());
+        for (PeerInfo p : peers) readCapacity(r, p);
+        for (PeerInfo p : peers) {
+            if (r.hasRemaining()) p.capacityVersion = r.readLong();
+        }
+        return peers;
+    }
+}
@@ -0,0 +1,235 @@
+package peer;
+
+import com.sun.net.httpserver.HttpServer;
+import common.Frame;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrik node dengan overhead kecil: counter LongAdder dan histogram
+ * log-linear (ala HdrHistogram) yang dicatat tanpa lock dan tanpa alokasi.
+ * Statistik per opcode disimpan di array yang diindeks opcode, jadi jalur
+ * request tidak pernah mencari di map. Slot baru diisi saat opcode itu
+ * pertama dipakai, supaya ribuan node di satu proses (simulator) tidak
+ * masing-masing membawa 128 histogram.
+ *
+ * Dibaca lewat opcode STATS atau, kalau -Dp2p.metrics.port diisi, lewat
+ * HTTP GET /metrics dalam format teks Prometheus.
+ */
+public class Metrics {
+    // Slot untuk sesi ObjectStream format lama (opcode 0 tidak dipakai protokol biner)
+    public static final byte LEGACY = 0;
+
+    private final AtomicReferenceArray<OpStats> ops = new AtomicReferenceArray<>(128);
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final int httpPort;
+    private HttpServer http;
+
+    public Metrics(int httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    // 0 = tanpa endpoint HTTP, mis. -Dp2p.metrics.port=9100
+    public static Metrics fromSystemProperties() {
+        return new Metrics(Integer.getInteger("p2p.metrics.port", 0));
+    }
+
+    public static class OpStats {
+        public final LongAdder requests = new LongAdder();
+        public final LongAdder errors = new LongAdder();
+        public final LongAdder bytesIn = new LongAdder();
+        public final LongAdder bytesOut = new LongAdder();
+        public final Histogram latencyMicros = new Histogram();
+    }
+
+    public OpStats op(byte command) {
+        int i = command & 0x7F;
+        OpStats s = ops.get(i);
+        if (s == null && !ops.compareAndSet(i, null, s = new OpStats())) s = ops.get(i);
+        return s;
+    }
+
+    // Satu request selesai: latensi dari startNanos, error kalau gagal
+    public void record(byte command, long startNanos, boolean error) {
+        OpStats s = op(command);
+        s.requests.increment();
+        if (error) s.errors.increment();
+        s.latencyMicros.record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    // Referensi yang dikembalikan boleh disimpan pemanggil untuk jalur panas
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Histogram log-linear: nilai di bawah 16 punya bucket sendiri, di atasnya
+     * tiap rentang pangkat dua dibagi 16 bucket (galat relatif paling besar
+     * 1/16). Ukurannya tetap, cukup untuk seluruh rentang long positif.
+     */
+    public static class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) << SUB_BITS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(index(value));
+            count.increment();
+            sum.add(value);
+            long m = max.get();
+            while (value > m && !max.compareAndSet(m, value)) m = max.get();
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return ((shift + 1) << SUB_BITS) + (int) ((v >>> shift) & (SUB - 1));
+        }
+
+        // Batas atas bucket, supaya persentil tidak pernah melaporkan terlalu kecil
+        static long upperBound(int index) {
+            if (index < SUB) return index;
+            int shift = (index >>> SUB_BITS) - 1;
+            return ((long) (SUB + (index & (SUB - 1))) << shift) + (1L << shift) - 1;
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long sum() {
+            return sum.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        // q antara 0 dan 1; dihitung dari bucket saat ini tanpa mengunci pencatat
+        public long percentile(double q) {
+            long total = 0;
+            long[] snap = new long[buckets.length()];
+            for (int i = 0; i < snap.length; i++) total += snap[i] = buckets.get(i);
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < snap.length; i++) {
+                seen += snap[i];
+                if (seen >= rank) return Math.min(upperBound(i), max());
+            }
+            return max();
+        }
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Semua metrik dalam format teks Prometheus, satu kelompok per nama
+     * metrik. Opcode yang belum pernah dipakai tidak ditampilkan.
+     */
+    public String render() {
+        StringBuilder sb = new StringBuilder(4096);
+        opCounter(sb, "p2p_requests_total", s -> s.requests);
+        opCounter(sb, "p2p_request_errors_total", s -> s.errors);
+        opCounter(sb, "p2p_bytes_in_total", s -> s.bytesIn);
+        opCounter(sb, "p2p_bytes_out_total", s -> s.bytesOut);
+        sb.append("# TYPE p2p_request_latency_us summary\n");
+        for (int i = 0; i < ops.length(); i++) {
+            OpStats s = ops.get(i);
+            if (used(s)) summary(sb, "p2p_request_latency_us", opLabel(i), s.latencyMicros);
+        }
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            sb.append("# TYPE p2p_").append(e.getKey()).append(" counter\n");
+            line(sb, "p2p_" + e.getKey(), e.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            sb.append("# TYPE p2p_").append(e.getKey()).append(" gauge\n");
+            line(sb, "p2p_" + e.getKey(), e.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            sb.append("# TYPE p2p_").append(e.getKey()).append(" summary\n");
+            summary(sb, "p2p_" + e.getKey(), "", e.getValue());
+        }
+        return sb.toString();
+    }
+
+    private void opCounter(StringBuilder sb, String name, Function<OpStats, LongAdder> field) {
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        for (int i = 0; i < ops.length(); i++) {
+            OpStats s = ops.get(i);
+            if (used(s)) line(sb, name + "{" + opLabel(i) + "}", field.apply(s).sum());
+        }
+    }
+
+    private static boolean used(OpStats s) {
+        return s != null && s.requests.sum() > 0;
+    }
+
+    private static String opLabel(int op) {
+        return "op=\"" + (op == LEGACY ? "LEGACY" : Frame.name((byte) op)) + "\"";
+    }
+
+    // label tanpa kurung kurawal, boleh kosong
+    private static void summary(StringBuilder sb, String name, String label, Histogram h) {
+        String prefix = label.isEmpty() ? "{" : "{" + label + ",";
+        for (double q : QUANTILES) {
+            line(sb, name + prefix + "quantile=\"" + q + "\"}", h.percentile(q));
+        }
+        String suffix = label.isEmpty() ? "" : "{" + label + "}";
+        line(sb, name + "_max" + suffix, h.max());
+        line(sb, name + "_sum" + suffix, h.sum());
+        line(sb, name + "_count" + suffix, h.count());
+    }
+
+    private static void line(StringBuilder sb, String name, long value) {
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    public int httpPort() {
+        return httpPort;
+    }
+
+    // Endpoint scrape opsional; false (tidak melakukan apa pun) kalau port 0
+    public boolean startHttp() throws IOException {
+        if (httpPort <= 0) return false;
+        http = HttpServer.create(new InetSocketAddress(httpPort), 0);
+        http.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        http.start();
+        return true;
+    }
+
+    public void stop() {
+        if (http != null) http.stop(0);
+    }
+}
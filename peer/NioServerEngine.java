@@ -0,0 +1,394 @@
+package peer;
+
+import common.Frame;
+import common.Payload;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event loop non-blocking: satu thread selector membaca dan menulis
+ * semua koneksi, frame yang sudah lengkap diproses worker pool kecil.
+ * Kalau request yang sedang diproses worker mencapai maxConcurrent,
+ * koneksi berhenti dibaca (backpressure ke TCP) sampai ada yang selesai.
+ *
+ * Worker tidak pernah menunggu node lain: request yang diteruskan
+ * (FORWARD_SEARCH, BATCH_SEARCH, baca replika) dijawab dari future
+ * {@link ServerHandler#handleFrameAsync}, slot dan thread-nya sudah
+ * dilepas begitu future itu dikembalikan.
+ *
+ * Koneksi ObjectStream format lama dan transfer file dilepas dari
+ * selector dan dilayani secara blocking oleh pool transfer tersendiri
+ * (-Dp2p.transferWorkers, antrean -Dp2p.transferQueue); kalau penuh,
+ * koneksi ditolak supaya upload besar tidak menahan lookup. Sesi yang
+ * diam lebih lama dari -Dp2p.transferTimeoutMs diputus agar pool itu
+ * tidak habis oleh koneksi menganggur.
+ */
+public class NioServerEngine implements ServerEngine {
+    private static final int READ_BUFFER = 16 * 1024;
+
+    private final int workers;
+    private final int maxConcurrent;
+    private final int transferWorkers;
+    private final int transferQueue;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Conn> paused = new ArrayDeque<>();     // hanya disentuh thread selector
+    private final List<Conn> handoffs = new ArrayList<>();          // idem
+
+    private ServerHandler handler;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private ExecutorService workerPool;
+    private ExecutorService transferPool;
+    private volatile boolean running;
+
+    private static class Conn {
+        final SocketChannel ch;
+        SelectionKey key;
+        ByteBuffer readBuf = ByteBuffer.allocate(READ_BUFFER);
+        final ArrayDeque<Frame> ready = new ArrayDeque<>();
+        final ConcurrentLinkedQueue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+        // Request yang sudah dikirim ke worker tapi belum dibalas
+        final AtomicInteger outstanding = new AtomicInteger();
+        boolean sniffed;
+        boolean paused;
+        boolean closed;
+        boolean draining;       // tidak dibaca lagi, ditutup setelah semua balasan terkirim
+        Frame transfer;
+
+        Conn(SocketChannel ch) {
+            this.ch = ch;
+        }
+    }
+
+    public NioServerEngine(int workers, int maxConcurrent, int transferWorkers, int transferQueue) {
+        this.workers = workers;
+        this.maxConcurrent = maxConcurrent;
+        this.transferWorkers = transferWorkers;
+        this.transferQueue = transferQueue;
+    }
+
+    @Override
+    public void start(int port, ServerHandler handler) throws IOException {
+        this.handler = handler;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger n = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "nio-worker-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger m = new AtomicInteger();
+        transferPool = new ThreadPoolExecutor(transferWorkers, transferWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(transferQueue), r -> {
+                    Thread t = new Thread(r, "nio-transfer-" + m.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        running = true;
+        Thread loop = new Thread(this::runLoop, "nio-selector-" + getPort());
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (selector != null) selector.wakeup();
+        try {
+            if (server != null) server.close();
+        } catch (IOException ignored) {
+        }
+        if (workerPool != null) workerPool.shutdownNow();
+        if (transferPool != null) transferPool.shutdownNow();
+    }
+
+    @Override
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override
+    public int connections() {
+        return connections.get();
+    }
+
+    @Override
+    public String name() {
+        return "nio(workers=" + workers + ", maxConcurrent=" + maxConcurrent + ", transferWorkers=" + transferWorkers + ")";
+    }
+
+    private void runLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) task.run();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Conn conn = (Conn) key.attachment();
+                    try {
+                        if (key.isReadable()) read(conn);
+                        if (key.isValid() && key.isWritable()) write(conn);
+                    } catch (IOException e) {
+                        close(conn);
+                    }
+                }
+
+                if (!handoffs.isEmpty()) handOff();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) handler.log("NIO: selector berhenti: " + e);
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch = server.accept();
+        if (ch == null) return;
+        ch.configureBlocking(false);
+        ch.socket().setTcpNoDelay(true);
+        Conn conn = new Conn(ch);
+        conn.key = ch.register(selector, SelectionKey.OP_READ, conn);
+        connections.incrementAndGet();
+    }
+
+    private void read(Conn conn) throws IOException {
+        if (conn.ch.read(conn.readBuf) < 0) {
+            close(conn);
+            return;
+        }
+        ByteBuffer buf = conn.readBuf;
+        buf.flip();
+
+        if (!conn.sniffed) {
+            if (buf.remaining() < 2) {
+                buf.compact();
+                return;
+            }
+            conn.sniffed = true;
+            if (!Frame.isMagic(buf.get(0) & 0xFF, buf.get(1) & 0xFF)) {
+                conn.key.cancel();
+                handoffs.add(conn);
+                return;                      // buffer dibiarkan dalam mode baca untuk handoff
+            }
+        }
+
+        int needed = 0;
+        while (buf.remaining() >= Frame.HEADER_SIZE) {
+            int pos = buf.position();
+            int length = buf.getInt(pos + 8);
+            Frame.checkHeader(buf.get(pos) & 0xFF, buf.get(pos + 1) & 0xFF, buf.get(pos + 2), length);
+            if (buf.remaining() < Frame.HEADER_SIZE + length) {
+                needed = Frame.HEADER_SIZE + length;
+                break;
+            }
+            byte opcode = buf.get(pos + 3);
+            int requestId = buf.getInt(pos + 4);
+            byte[] payload = new byte[length];
+            buf.position(pos + Frame.HEADER_SIZE);
+            buf.get(payload);
+            Frame frame = new Frame(opcode, requestId, payload);
+            if (Frame.isTransfer(frame.command())) {
+                if (!conn.ready.isEmpty() || conn.outstanding.get() > 0 || !conn.writes.isEmpty()) {
+                    // Body transfer tidak bisa dipisahkan dari balasan request lain di koneksi yang sama
+                    reject(conn, frame);
+                    return;
+                }
+                // Transfer file: koneksi dilepas ke pool transfer, sisa buffer jadi prefix body
+                conn.transfer = frame;
+                conn.key.cancel();
+                handoffs.add(conn);
+                return;
+            }
+            conn.ready.add(frame);
+        }
+        buf.compact();
+
+        if (needed > buf.capacity()) {
+            // frame lebih besar dari buffer: perbesar sementara
+            ByteBuffer bigger = ByteBuffer.allocate(needed);
+            buf.flip();
+            bigger.put(buf);
+            conn.readBuf = bigger;
+        } else if (buf.capacity() > READ_BUFFER && buf.position() == 0) {
+            conn.readBuf = ByteBuffer.allocate(READ_BUFFER);
+        }
+
+        dispatch(conn);
+    }
+
+    /**
+     * Transfer di koneksi yang masih punya request lain: request sebelumnya
+     * tetap dijawab, transfer dijawab error, lalu koneksi ditutup.
+     */
+    private void reject(Conn conn, Frame transfer) {
+        byte[] error = new Payload.Writer().writeByte(Frame.STATUS_ERROR)
+                .writeString("Transfer " + Frame.name(transfer.command()) + " harus memakai koneksi sendiri")
+                .toByteArray();
+        conn.writes.add(ByteBuffer.wrap(transfer.reply(error).toBytes()));
+        conn.draining = true;
+        conn.key.interestOps((conn.key.interestOps() & ~SelectionKey.OP_READ) | SelectionKey.OP_WRITE);
+        handler.log("NIO: transfer " + Frame.name(transfer.command()) + " ditolak, koneksi masih dipakai request lain");
+        dispatch(conn);
+    }
+
+    // Kirim frame siap ke worker selama masih di bawah batas
+    private void dispatch(Conn conn) {
+        while (!conn.ready.isEmpty() && inFlight.get() < maxConcurrent) {
+            Frame request = conn.ready.poll();
+            inFlight.incrementAndGet();
+            conn.outstanding.incrementAndGet();
+            workerPool.execute(() -> {
+                CompletableFuture<Frame> reply;
+                try {
+                    reply = handler.handleFrameAsync(request);
+                } catch (RuntimeException e) {
+                    reply = CompletableFuture.failedFuture(e);
+                } finally {
+                    // Menunggu node lain tidak memakan slot maupun worker
+                    inFlight.decrementAndGet();
+                    post(this::resumePaused);
+                }
+                reply.whenComplete((frame, error) -> {
+                    if (error != null) {
+                        byte[] payload = new Payload.Writer().writeByte(Frame.STATUS_ERROR)
+                                .writeString(String.valueOf(error.getMessage())).toByteArray();
+                        frame = request.reply(payload);
+                    }
+                    conn.writes.add(ByteBuffer.wrap(frame.toBytes()));
+                    conn.outstanding.decrementAndGet();
+                    post(() -> enableWrite(conn));
+                });
+            });
+        }
+        if (!conn.ready.isEmpty()) {
+            if (conn.key.isValid()) {
+                conn.key.interestOps(conn.key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            if (!conn.paused) {
+                conn.paused = true;
+                paused.add(conn);
+            }
+        }
+    }
+
+    private void resumePaused() {
+        int n = paused.size();
+        for (int i = 0; i < n && inFlight.get() < maxConcurrent; i++) {
+            Conn conn = paused.poll();
+            conn.paused = false;
+            if (!conn.key.isValid()) continue;
+            dispatch(conn);
+            if (conn.ready.isEmpty() && !conn.draining) {
+                conn.key.interestOps(conn.key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void enableWrite(Conn conn) {
+        if (conn.key.isValid() && !conn.closed) {
+            conn.key.interestOps(conn.key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void write(Conn conn) throws IOException {
+        ByteBuffer buf;
+        while ((buf = conn.writes.peek()) != null) {
+            conn.ch.write(buf);
+            if (buf.hasRemaining()) return;   // socket penuh, tunggu OP_WRITE berikutnya
+            conn.writes.poll();
+        }
+        conn.key.interestOps(conn.key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (conn.draining && conn.ready.isEmpty() && conn.outstanding.get() == 0) close(conn);
+    }
+
+    private void post(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private void close(Conn conn) {
+        if (conn.closed) return;
+        conn.closed = true;
+        connections.decrementAndGet();
+        conn.key.cancel();
+        conn.ready.clear();
+        try {
+            conn.ch.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Koneksi format lama dan transfer file: lepas dari selector lalu layani secara blocking
+    private void handOff() throws IOException {
+        selector.selectNow();   // deregistrasi key yang sudah di-cancel
+        for (Conn conn : handoffs) {
+            SocketChannel ch = conn.ch;
+            Frame transfer = conn.transfer;
+            ByteBuffer prefix = conn.readBuf;
+            ch.configureBlocking(true);
+            try {
+                transferPool.execute(() -> serveBlocking(ch, transfer, prefix));
+            } catch (RejectedExecutionException e) {
+                handler.log("NIO: pool transfer penuh (" + transferWorkers + " + " + transferQueue
+                        + " antre), koneksi " + (transfer != null ? Frame.name(transfer.command()) : "format lama") + " ditolak");
+                closeQuietly(ch);
+                connections.decrementAndGet();
+            }
+        }
+        handoffs.clear();
+    }
+
+    private void serveBlocking(SocketChannel ch, Frame transfer, ByteBuffer prefix) {
+        try (SocketChannel c = ch) {
+            if (transfer != null) {
+                handler.handleTransfer(transfer, prefix, c);
+            } else {
+                c.socket().setSoTimeout(FileTransfer.TIMEOUT_MS);
+                byte[] head = new byte[prefix.remaining()];
+                prefix.get(head);
+                InputStream in = new SequenceInputStream(
+                        new ByteArrayInputStream(head), c.socket().getInputStream());
+                handler.handleLegacy(in, c.socket().getOutputStream());
+            }
+        } catch (IOException e) {
+            handler.log("NIO: " + (transfer != null ? Frame.name(transfer.command()) : "sesi format lama")
+                    + " gagal: " + e.getMessage());
+        } finally {
+            connections.decrementAndGet();
+        }
+    }
+
+    private static void closeQuietly(SocketChannel ch) {
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Panggilan klien ke peer lain memakai protokol frame biner lewat
+ * koneksi persisten di {@link ConnectionPool}.
+ * Dipakai oleh forwarding di PeerNode dan oleh PeerGUI.
+ */
+public class PeerClient {
+
+    public static final ConnectionPool POOL = ConnectionPool.fromSystemProperties();
+    // Upload yang koneksinya putus dilanjutkan sampai sekian kali, mis. -Dp2p.upload.resumes=5
+    static final int RESUMES = Integer.getInteger("p2p.upload.resumes", 3);
+
+    public static Frame call(PeerInfo target, Frame request) throws IOException {
+        Frame reply = POOL.call(target, request);
+        if (reply.command() != request.command()) {
+            throw new StreamCorruptedException("Balasan tidak cocok dengan request " + request.requestId);
+        }
+        return reply;
+    }
+
+    // Error yang dilaporkan peer lewat STATUS_ERROR; koneksinya sendiri sehat
+    public static class RemoteError extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public RemoteError(String message) {
+            super(message);
+        }
+
+        // Balasan peer versi lama untuk opcode yang belum ia kenal (lihat PeerNode.handleFrame)
+        public boolean isUnknownOpcode() {
+            return getMessage() != null && getMessage().startsWith("Unknown opcode ");
+        }
+    }
+
+    // UPLOAD_CHUNKS ditolak karena chunk di target hilang (mis. terhapus gc) sebelum manifest disimpan; aman diulang
+    public static class MissingChunksError extends RemoteError {
+        private static final long serialVersionUID = 1L;
+
+        public MissingChunksError(String message) {
+            super(message);
+        }
+    }
+
+    // Baca status balasan; ERROR diubah jadi RemoteError
+    static byte status(Payload.Reader r) throws IOException {
+        byte status = r.readByte();
+        if (status == Frame.STATUS_ERROR) {
+            throw new RemoteError(r.hasRemaining() ? r.readString() : "Remote error");
+        }
+        return status;
+    }
+
+    public static boolean search(PeerInfo target, String filename) throws IOException {
+        byte[] payload = new Payload.Writer().writeString(filename).toByteArray();
+        Frame reply = call(target, new Frame(Frame.SEARCH, Frame.nextRequestId(), payload));
+        return status(reply.reader()) == Frame.STATUS_OK;
+    }
+
+    public static SearchResult forwardSearch(PeerInfo target, long hash, int originId, int hopCount)
+            throws IOException {
+        return forwardSearch(target, hash, originId, hopCount, 0);
+    }
+
+    // flags: SearchResult.LOCAL_ONLY (baca replika) dan/atau SearchResult.TRACE (minta jejak hop)
+    public static SearchResult forwardSearch(PeerInfo target, long hash, int originId, int hopCount, int flags)
+            throws IOException {
+        Frame reply = call(target, forwardSearchFrame(hash, originId, hopCount, flags));
+        return readSearchResult(hash, reply.reader());
+    }
+
+    public static CompletableFuture<SearchResult> forwardSearchAsync(PeerInfo target, long hash, int originId,
+                                                                     int hopCount, int flags) {
+        Frame request = forwardSearchFrame(hash, originId, hopCount, flags);
+        return POOL.callAsync(target, request).thenApply(reply -> {
+            try {
+                if (reply.command() != Frame.FORWARD_SEARCH) {
+                    throw new StreamCorruptedException("Balasan tidak cocok dengan request " + request.requestId);
+                }
+                return readSearchResult(hash, reply.reader());
+            } catch (IOException e) {
+                throw new java.util.concurrent.CompletionException(e);
+            }
+        });
+    }
+
+    // hash(8) | originId(4) | hopCount(4) | flags(1): ukuran tetap, rute tidak ikut dikirim
+    private static Frame forwardSearchFrame(long hash, int originId, int hopCount, int flags) {
+        byte[] payload = new Payload.Writer(17)
+                .writeLong(hash)
+                .writeInt(originId)
+                .writeInt(hopCount)
+                .writeByte(flags)
+                .toByteArray();
+        return new Frame(Frame.FORWARD_SEARCH, Frame.nextRequestId(), payload);
+    }
+
+    private static SearchResult readSearchResult(long hash, Payload.Reader r) throws IOException {
+        status(r);
+        return SearchResult.readFrom(hash, r);
+    }
+
+    public static BatchSearchResult batchSearch(PeerInfo target, long[] keys, int originId, int hopCount)
+            throws IOException {
+        try {
+            return batchSearchAsync(target, keys, originId, hopCount).join();
+        } catch (java.util.concurrent.CompletionException e) {
+            throw PeerConnection.unwrap(e, target);
+        }
+    }
+
+    // Tidak menunggu balasan: dipakai untuk meneruskan sub-batch ke beberapa finger sekaligus
+    public static CompletableFuture<BatchSearchResult> batchSearchAsync(PeerInfo target, long[] keys,
+                                                                      int originId, int hopCount) {
+        Payload.Writer w = new Payload.Writer(16 + keys.length * 8)
+                .writeInt(originId)
+                .writeInt(hopCount)
+                .writeInt(keys.length);
+        for (long key : keys) w.writeLong(key);
+        Frame request = new Frame(Frame.BATCH_SEARCH, Frame.nextRequestId(), w.toByteArray());
+
+        return POOL.callAsync(target, request).thenApply(reply -> {
+            try {
+                if (reply.command() != Frame.BATCH_SEARCH) {
+                    throw new StreamCorruptedException("Balasan tidak cocok dengan request " + request.requestId);
+                }
+                Payload.Reader r = reply.reader();
+                status(r);
+                return BatchSearchResult.readFrom(r);
+            } catch (IOException e) {
+                throw new java.util.concurrent.CompletionException(e);
+            }
+        });
+    }
+
+    // ---- keanggotaan ----
+
+    public static List<PeerInfo> join(PeerInfo seed, PeerInfo self) throws IOException {
+        return exchangePeers(seed, Frame.JOIN, self);
+    }
+
+    // Balasan: predecessor dan successor list milik target
+    public static List<PeerInfo> notify(PeerInfo successor, PeerInfo self) throws IOException {
+        return exchangePeers(successor, Frame.NOTIFY, self);
+    }
+
+    private static List<PeerInfo> exchangePeers(PeerInfo target, byte opcode, PeerInfo self) throws IOException {
+        Payload.Writer w = new Payload.Writer();
+        Membership.writeMember(w, self);
+        byte[] payload = w.toByteArray();
+        Payload.Reader r = call(target, new Frame(opcode, Frame.nextRequestId(), payload)).reader();
+        status(r);
+        return Membership.readPeers(r);
+    }
+
+    // Satu langkah lookup iteratif di node target
+    public static FingerTable.Step findSuccessor(PeerInfo target, long key) throws IOException {
+        byte[] payload = new Payload.Writer().writeLong(key).toByteArray();
+        Payload.Reader r = call(target, new Frame(Frame.FIND_SUCCESSOR, Frame.nextRequestId(), payload)).reader();
+        status(r);
+        boolean done = r.readByte() != 0;
+        return new FingerTable.Step(done, Membership.readMember(r));
+    }
+
+    // Metrik target dalam format teks Prometheus (lihat Metrics.render)
+    public static String stats(PeerInfo target) throws IOException {
+        Payload.Reader r = call(target, new Frame(Frame.STATS, Frame.nextRequestId(), new byte[0])).reader();
+        status(r);
+        return r.readString();
+    }
+
+    // ---- replikasi ----
+
+    /**
+     * Nama salinan yang belum dimiliki target, atau yang versinya di target
+     * lebih lama dan isinya berbeda. Versi dan digest dikirim di ujung
+     * payload; peer lama hanya membaca namanya.
+     */
+    public static List<String> sync(PeerInfo target, List<Replication.Copy> copies) throws IOException {
+        Payload.Writer w = new Payload.Writer().writeInt(copies.size());
+        for (Replication.Copy c : copies) w.writeString(c.name);
+        for (Replication.Copy c : copies) w.writeLong(c.version).writeBytes(c.digest);
+        Payload.Reader r = call(target, new Frame(Frame.SYNC, Frame.nextRequestId(), w.toByteArray())).reader();
+        status(r);
+        int n = r.readCount(4);
+        List<String> missing = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) missing.add(r.readString());
+        return missing;
+    }
+
+    /**
+     * Upload per chunk: file dipotong (lihat {@link Chunker}), target
+     * ditanya chunk mana yang belum ia punya, lalu hanya chunk itu yang
+     * dikirim. Kalau target mengiklankan ACCEPT_DEFLATE, tiap chunk
+     * dikirim berbingkai dan dikompres bila menguntungkan (lihat
+     * {@link ChunkCodec}). Kembalian: byte mentah vs byte di kabel.
+     */
+    public static ChunkCodec.Stats upload(PeerInfo target, File file, int senderId, FileTransfer.Listener listener)
+            throws IOException {
+        return upload(target, file, Chunker.chunk(file), senderId, ChunkCodec.fromSystemProperties(), listener);
+    }
+
+    // Manifest sudah dihitung, mis. sekali untuk semua replika
+    public static ChunkCodec.Stats upload(PeerInfo target, File file, Manifest manifest, int senderId,
+                                          ChunkCodec codec, FileTransfer.Listener listener) throws IOException {
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ChunkSource source = new ChunkSource() {
+                @Override
+                public void read(int i, byte[] buf) throws IOException {
+                    FileTransfer.readRange(fc, manifest.offset(i), buf, manifest.length(i));
+                }
+
+                @Override
+                public void send(int i, WritableByteChannel out) throws IOException {
+                    FileTransfer.sendRange(fc, manifest.offset(i), manifest.length(i), out);
+                }
+            };
+            return sendChunks(target, file.getName(), manifest, senderId, codec, source, listener);
+        }
+    }
+
+    // File yang sudah ada di chunk store pengirim (anti-entropy, leave)
+    public static ChunkCodec.Stats uploadStored(PeerInfo target, ChunkStore store, String filename, int senderId,
+                                                ChunkCodec codec, FileTransfer.Listener listener) throws IOException {
+        Manifest manifest = store.manifest(filename);
+        if (manifest == null) throw new FileNotFoundException(filename);
+        ChunkSource source = new ChunkSource() {
+            @Override
+            public void read(int i, byte[] buf) throws IOException {
+                try (FileChannel fc = FileChannel.open(store.chunkPath(manifest.id(i)), StandardOpenOption.READ)) {
+                    FileTransfer.readRange(fc, 0, buf, manifest.length(i));
+                }
+            }
+
+            @Override
+            public void send(int i, WritableByteChannel out) throws IOException {
+                try (FileChannel fc = FileChannel.open(store.chunkPath(manifest.id(i)), StandardOpenOption.READ)) {
+                    FileTransfer.sendRange(fc, 0, manifest.length(i), out);
+                }
+            }
+        };
+        return sendChunks(target, filename, manifest, senderId, codec, source, listener);
+    }
+
+    private interface ChunkSource {
+        // Isi chunk ke-index ke buf[0, length) untuk dikompres; chunk paling besar Chunker.MAX
+        void read(int index, byte[] buf) throws IOException;
+
+        // Chunk mentah ke-index langsung ke socket (transferTo), tanpa lewat heap
+        void send(int index, WritableByteChannel out) throws IOException;
+    }
+
+    // Index chunk yang belum ada di target
+    public static int[] missingChunks(PeerInfo target, Manifest manifest) throws IOException {
+        return readMissing(missingReply(target, manifest), manifest);
+    }
+
+    private static Payload.Reader missingReply(PeerInfo target, Manifest manifest) throws IOException {
+        Payload.Writer w = new Payload.Writer(16 + manifest.count() * 40);
+        manifest.writeTo(w);
+        Payload.Reader r = call(target, new Frame(Frame.MISSING_CHUNKS, Frame.nextRequestId(), w.toByteArray())).reader();
+        status(r);
+        return r;
+    }
+
+    // Index dari target dipakai langsung ke manifest, jadi harus di dalam jangkauannya
+    private static int[] readMissing(Payload.Reader r, Manifest manifest) throws IOException {
+        int[] missing = new int[r.readCount(4)];
+        if (missing.length > manifest.count()) throw new StreamCorruptedException("Jumlah chunk melebihi manifest");
+        for (int i = 0; i < missing.length; i++) {
+            missing[i] = r.readInt();
+            if (missing[i] < 0 || missing[i] >= manifest.count()) {
+                throw new StreamCorruptedException("Indeks chunk " + missing[i] + " di luar manifest");
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Kirim chunk yang belum dimiliki target. Target menyimpan tiap chunk
+     * begitu isinya cocok dengan hash-nya, jadi kalau koneksi putus di
+     * tengah jalan, percobaan berikutnya cukup menanyakan ulang chunk yang
+     * kurang dan mengirim sisanya saja (paling banyak RESUMES kali).
+     */
+    private static ChunkCodec.Stats sendChunks(PeerInfo target, String filename, Manifest manifest, int senderId,
+                                               ChunkCodec codec, ChunkSource source, FileTransfer.Listener listener)
+            throws IOException {
+        ChunkCodec.Stats stats = new ChunkCodec.Stats();
+        long total = -1;
+        for (int attempt = 0; ; attempt++) {
+            int[] missing;
+            int accept;
+            try {
+                Payload.Reader r = missingReply(target, manifest);
+                missing = readMissing(r, manifest);
+                // Opsional di ujung balasan: peer lama tidak mengirimnya, chunk dikirim mentah
+                accept = r.hasRemaining() ? r.readByte() : 0;
+            } catch (RemoteError e) {
+                if (attempt > 0 || !e.isUnknownOpcode()) throw e;
+                // Peer lama tanpa chunk store: kirim utuh lewat UPLOAD
+                return sendWhole(target, filename, manifest, senderId, source, listener);
+            }
+
+            long remaining = 0;
+            for (int i : missing) remaining += manifest.length(i);
+            if (total < 0) total = remaining;
+            try {
+                // Progress dilanjutkan dari byte yang sudah diterima target
+                sendMissing(target, filename, manifest, senderId, codec, source, missing, accept,
+                        Math.max(0, total - remaining), total, listener, stats);
+                return stats;
+            } catch (MissingChunksError e) {
+                // Tanya ulang chunk yang kurang lalu kirim itu saja
+                if (attempt >= RESUMES) throw e;
+            } catch (RemoteError e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= RESUMES) throw e;
+                backoff(attempt);
+            }
+        }
+    }
+
+    private static void sendMissing(PeerInfo target, String filename, Manifest manifest, int senderId,
+                                    ChunkCodec codec, ChunkSource source, int[] missing, int accept, long done,
+                                    long total, FileTransfer.Listener listener, ChunkCodec.Stats stats)
+            throws IOException {
+        boolean framed = accept != 0 && codec.isEnabled();
+        Payload.Writer w = new Payload.Writer(64 + manifest.count() * 40 + missing.length * 4)
+                .writeString(filename)
+                .writeInt(senderId);
+        manifest.writeTo(w);
+        w.writeInt(missing.length);
+        for (int i : missing) w.writeInt(i);
+        if (framed) w.writeByte(1);
+
+        byte[] buf = framed ? new byte[Chunker.MAX] : null;
+        try (SocketChannel ch = openTransfer(target)) {
+            Frame request = new Frame(Frame.UPLOAD_CHUNKS, Frame.nextRequestId(), w.toByteArray());
+            request.writeTo(ch);
+            for (int i : missing) {
+                int len = manifest.length(i);
+                if (framed) {
+                    source.read(i, buf);
+                    codec.writeChunk(buf, 0, len, accept, ch, null, stats);
+                } else {
+                    source.send(i, ch);
+                    stats.add(len, len);
+                }
+                done += len;
+                listener.onProgress(done, total);
+            }
+            if (missing.length == 0) listener.onProgress(total, total);   // semua chunk sudah ada di target
+            Payload.Reader r = readTransferReply(ch, request).reader();
+            if (r.readByte() == Frame.STATUS_ERROR) {
+                String message = r.hasRemaining() ? r.readString() : "Remote error";
+                // Opsional di ujung error: jumlah chunk yang hilang (peer lama tidak mengirimnya)
+                if (r.hasRemaining()) throw new MissingChunksError(message);
+                throw new RemoteError(message);
+            }
+        }
+    }
+
+    private static void backoff(int attempt) throws InterruptedIOException {
+        try {
+            Thread.sleep(200L << Math.min(attempt, 4));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static ChunkCodec.Stats sendWhole(PeerInfo target, String filename, Manifest manifest, int senderId,
+                                              ChunkSource source, FileTransfer.Listener listener) throws IOException {
+        try (SocketChannel ch = openTransfer(target)) {
+            byte[] payload = new Payload.Writer()
+                    .writeString(filename)
+                    .writeInt(senderId)
+                    .writeLong(manifest.size)
+                    .toByteArray();
+            Frame request = new Frame(Frame.UPLOAD, Frame.nextRequestId(), payload);
+            request.writeTo(ch);
+            for (int i = 0; i < manifest.count(); i++) {
+                source.send(i, ch);
+                listener.onProgress(manifest.offset(i) + manifest.length(i), manifest.size);
+            }
+            status(readTransferReply(ch, request).reader());
+        }
+        ChunkCodec.Stats stats = new ChunkCodec.Stats();
+        stats.add(manifest.size, manifest.size);
+        return stats;
+    }
+
+    // false kalau file tidak ada di node target
+    public static boolean download(PeerInfo target, String filename, File dest, FileTransfer.Listener listener)
+            throws IOException {
+        try (SocketChannel ch = openTransfer(target)) {
+            byte[] payload = new Payload.Writer().writeString(filename).toByteArray();
+            Frame request = new Frame(Frame.DOWNLOAD, Frame.nextRequestId(), payload);
+            request.writeTo(ch);
+
+            Payload.Reader r = readTransferReply(ch, request).reader();
+            if (status(r) != Frame.STATUS_OK) return false;
+            long size = r.readLong();
+
+            // Protokol utuh tanpa checksum per chunk: yang terputus tidak bisa dilanjutkan, mulai dari awal
+            dest.getAbsoluteFile().getParentFile().mkdirs();
+            File part = FileTransfer.partFile(dest);
+            try (FileChannel fc = FileChannel.open(part.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                FileTransfer.receive(FileTransfer.timed(ch), null, fc, size, listener);
+            } catch (IOException e) {
+                part.delete();
+                throw e;
+            }
+            FileTransfer.commit(part, dest);
+            return true;
+        }
+    }
+
+    // ---- download swarm ----
+
+    // null kalau target tidak memegang file itu
+    public static CompletableFuture<Manifest> getManifestAsync(PeerInfo target, String filename) {
+        byte[] payload = new Payload.Writer().writeString(filename).toByteArray();
+        Frame request = new Frame(Frame.GET_MANIFEST, Frame.nextRequestId(), payload);
+        return POOL.callAsync(target, request).thenApply(reply -> {
+            try {
+                Payload.Reader r = reply.reader();
+                return status(r) == Frame.STATUS_OK ? Manifest.readFrom(r) : null;
+            } catch (IOException e) {
+                throw new java.util.concurrent.CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Channel GET_CHUNKS yang sudah dibalas OK; isi chunk dibaca lewat in
+     * (dengan batas FileTransfer.TIMEOUT_MS). framed = isi chunk berbingkai
+     * ChunkCodec.
+     */
+    public static final class ChunkStream implements Closeable {
+        public final SocketChannel channel;
+        public final ReadableByteChannel in;
+        public final boolean framed;
+
+        ChunkStream(SocketChannel channel, boolean framed) throws IOException {
+            this.channel = channel;
+            this.in = FileTransfer.timed(channel);
+            this.framed = framed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Minta chunk [from, to) dari manifest; setelah balasan OK isi chunk
+     * mengalir berurutan di channel yang dikembalikan (pemanggil menutupnya).
+     * Permintaan mengiklankan ChunkCodec.accepts(); sumber yang mendukung
+     * membalas dengan flag framed.
+     */
+    public static ChunkStream openChunks(PeerInfo target, Manifest manifest, int from, int to) throws IOException {
+        Payload.Writer w = new Payload.Writer(9 + (to - from) * 36).writeInt(to - from);
+        for (int i = from; i < to; i++) w.writeBytes(manifest.id(i));
+        w.writeByte(ChunkCodec.accepts());      // opsional: peer lama berhenti membaca sebelum byte ini
+        SocketChannel ch = openTransfer(target);
+        try {
+            Frame request = new Frame(Frame.GET_CHUNKS, Frame.nextRequestId(), w.toByteArray());
+            request.writeTo(ch);
+            Payload.Reader r = readTransferReply(ch, request).reader();
+            if (status(r) != Frame.STATUS_OK) {
+                throw new FileNotFoundException("Node " + target.id + " tidak punya semua chunk " + from + "-" + to);
+            }
+            return new ChunkStream(ch, r.hasRemaining() && r.readByte() != 0);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static SocketChannel openTransfer(PeerInfo target) throws IOException {
+        SocketChannel ch = SocketChannel.open();
+        try {
+            ch.socket().connect(new InetSocketAddress(target.ip, target.port), 2000);
+            ch.socket().setSoTimeout(FileTransfer.TIMEOUT_MS);    // berlaku untuk readTransferReply
+            return ch;
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    // Stream socket tanpa buffer: header dibaca pas, body tetap utuh di channel
+    private static Frame readTransferReply(SocketChannel ch, Frame request) throws IOException {
+        Frame reply = Frame.readFrom(ch.socket().getInputStream());
+        if (reply == null || reply.requestId != request.requestId) {
+            throw new StreamCorruptedException("Balasan transfer tidak valid");
+        }
+        return reply;
+    }
+}
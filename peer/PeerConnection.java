@@ -0,0 +1,141 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+
+/**
+ * Satu koneksi TCP berumur panjang ke sebuah peer. Banyak request bisa
+ * berjalan bersamaan di atasnya; balasan dicocokkan lewat requestId oleh
+ * satu thread pembaca.
+ */
+class PeerConnection {
+    private final PeerInfo peer;
+    private final Socket socket;
+    private final OutputStream out;
+    private final InputStream in;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final ConcurrentHashMap<Integer, CompletableFuture<Frame>> pending = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    PeerConnection(PeerInfo peer, int maxInFlight, int connectTimeoutMs) throws IOException {
+        this.peer = peer;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(peer.ip, peer.port), connectTimeoutMs);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+
+        Thread reader = new Thread(this::readLoop, "conn-reader-node-" + peer.id);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Kirim request tanpa menunggu balasan. Future selesai saat balasan
+     * datang, koneksi putus, atau timeout; slot in-flight dilepas saat itu.
+     */
+    CompletableFuture<Frame> send(Frame request, long timeoutMs) throws IOException {
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SocketTimeoutException("Terlalu banyak request in-flight ke Node " + peer.id);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        CompletableFuture<Frame> future = new CompletableFuture<>();
+        pending.put(request.requestId, future);
+        future.whenComplete((reply, error) -> {
+            pending.remove(request.requestId);
+            permits.release();
+            lastUsed = System.currentTimeMillis();
+        });
+
+        if (closed) {
+            future.completeExceptionally(new IOException("Koneksi ke Node " + peer.id + " sudah ditutup"));
+            return future;
+        }
+        try {
+            synchronized (out) {
+                request.writeTo(out);
+            }
+        } catch (IOException e) {
+            close();
+            future.completeExceptionally(e);
+        }
+        return future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    Frame call(Frame request, long timeoutMs) throws IOException {
+        try {
+            return send(request, timeoutMs).get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause(), peer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    static IOException unwrap(Throwable cause, PeerInfo peer) {
+        if (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+        if (cause instanceof TimeoutException) {
+            return new SocketTimeoutException("Timeout menunggu balasan Node " + peer.id);
+        }
+        if (cause instanceof IOException) return (IOException) cause;
+        return new IOException(cause);
+    }
+
+    private void readLoop() {
+        try {
+            Frame reply;
+            while ((reply = Frame.readFrom(in)) != null) {
+                CompletableFuture<Frame> future = pending.remove(reply.requestId);
+                if (future != null) future.complete(reply);
+            }
+        } catch (IOException e) {
+            // koneksi putus; semua request yang menunggu digagalkan di close()
+        } finally {
+            close();
+        }
+    }
+
+    void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        IOException reason = new IOException("Koneksi ke Node " + peer.id + " terputus");
+        for (CompletableFuture<Frame> future : pending.values()) {
+            future.completeExceptionally(reason);
+        }
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    long idleMillis() {
+        return inFlight() > 0 ? 0 : System.currentTimeMillis() - lastUsed;
+    }
+}
@@ -7,12 +7,24 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.*;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+
+/**
+ * GUI opsional di atas daemon: semua aksi lewat {@link AdminServer}, jadi
+ * bisa dipasang ke node yang sudah jalan headless
+ * (java peer.PeerGUI <adminPort>) atau dibuka oleh PeerMain sendiri.
+ */
 public class PeerGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
+
     private JTextArea output;
+    private final AdminClient admin;
+    private volatile AdminClient.Status status;
     private int myId;
     private List<PeerInfo> peers;
     private DefaultTableModel tableModel;
@@ -22,9 +34,22 @@ public class PeerGUI extends JFrame {
     private Map<Integer, Boolean> lastNodeStatus = new HashMap<>();
     private JProgressBar progressBar;
 
-    public PeerGUI(int myId, List<PeerInfo> peers) {
-        this.myId = myId;
-        this.peers = peers;
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java peer.PeerGUI <adminPort> [host]");
+            System.exit(1);
+        }
+        AdminClient admin = new AdminClient(args.length > 1 ? args[1] : "127.0.0.1", Integer.parseInt(args[0]));
+        AdminClient.Status status = admin.status();
+        SwingUtilities.invokeLater(() -> new PeerGUI(admin, status).setVisible(true));
+    }
+
+    // status awal diambil pemanggil, konstruktor tidak melakukan I/O
+    public PeerGUI(AdminClient admin, AdminClient.Status status) {
+        this.admin = admin;
+        this.status = status;
+        this.myId = status.myId;
+        this.peers = status.peers;
 
         setTitle("Peer " + myId);
         setSize(1000, 600);
@@ -36,7 +61,7 @@ public class PeerGUI extends JFrame {
         leftPanel.setLayout(new BoxLayout(leftPanel, BoxLayout.Y_AXIS));
 
         // 🔁 RING PANEL
-        ringPanel = new RingPanel(peers);
+        ringPanel = new RingPanel(status.ring());
         ringPanel.setMinimumSize(new Dimension(300, 200));
         ringPanel.setPreferredSize(new Dimension(300, 200));
         ringPanel.setMaximumSize(new Dimension(Short.MAX_VALUE, 250));
@@ -70,6 +95,7 @@ public class PeerGUI extends JFrame {
         // 📁 Tabel file
         String[] fileColumns = {"File Name", "Hash", "Lokasi"};
         tableModel = new DefaultTableModel(fileColumns, 0);
+        refreshFileTable();     // isi dari indeks di disk (lihat IndexStore)
         JTable fileTable = new JTable(tableModel);
         JScrollPane fileScroll = new JScrollPane(fileTable);
         fileScroll.setPreferredSize(new Dimension(600, 120));
@@ -79,15 +105,21 @@ public class PeerGUI extends JFrame {
         JPanel buttonPanel = new JPanel();
         JButton uploadBtn = new JButton("Upload");
         JButton searchBtn = new JButton("Search");
-        // JButton downloadBtn = new JButton("Download");
+        JButton batchBtn = new JButton("Batch Search");
+        JButton downloadBtn = new JButton("Download");
+        JButton statsBtn = new JButton("Stats");
 
         uploadBtn.addActionListener(this::handleUpload);
         searchBtn.addActionListener(this::handleSearch);
-        // downloadBtn.addActionListener(this::handleDownload);
+        batchBtn.addActionListener(this::handleBatchSearch);
+        downloadBtn.addActionListener(this::handleDownload);
+        statsBtn.addActionListener(this::handleStats);
 
         buttonPanel.add(uploadBtn);
         buttonPanel.add(searchBtn);
-        // buttonPanel.add(downloadBtn);
+        buttonPanel.add(batchBtn);
+        buttonPanel.add(downloadBtn);
+        buttonPanel.add(statsBtn);
         bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         progressBar = new JProgressBar(0, 100);
@@ -102,7 +134,7 @@ public class PeerGUI extends JFrame {
     private void populateStatusTable() {
         statusTableModel.setRowCount(0); // clear existing
         for (PeerInfo peer : peers) {
-            boolean alive = PeerMain.isNodeActive(peer);
+            boolean alive = status.isAlive(peer);
             statusTableModel.addRow(new Object[]{
                 peer.id,
                 peer.ip,
@@ -126,99 +158,111 @@ public class PeerGUI extends JFrame {
     }
 
     private void handleSearch(ActionEvent e) {
-        String input = JOptionPane.showInputDialog(this, "Enter file hash (0–30):");
+        String input = JOptionPane.showInputDialog(this, "Enter file name or key (0x...):");
         if (input == null || input.isEmpty()) return;
 
-        int hash = Integer.parseInt(input);
-        output.append("🔍 Searching file with hash = " + hash + "\n");
+        long hash;
+        try {
+            hash = input.startsWith("0x") ? KeySpace.parse(input) : KeySpace.hash(input);
+        } catch (NumberFormatException ex) {
+            output.append("❌ Key tidak valid: " + input + "\n");
+            return;
+        }
+        output.append("🔍 Searching file with hash = 0x" + KeySpace.format(hash) + "\n");
 
-        new Thread(() -> forwardSearch(hash, myId)).start(); // ⬅️ run in thread
+        new Thread(() -> printResult("[Search] ", "SEARCH", input)).start(); // ⬅️ run in thread
     }
 
-    private void forwardSearch(int hash, int currentId) {
-        PeerInfo current = null;
-        for (PeerInfo peer : peers) {
-            if (peer.id == currentId) {
-                current = peer;
-                break;
-            }
+    // Baris TEXT dari daemon ke area output
+    private void printResult(String prefix, String... request) {
+        try {
+            for (String line : admin.text(request)) output.append(prefix + line + "\n");
+        } catch (IOException ex) {
+            output.append("❌ " + request[0] + " gagal: " + ex.getMessage() + "\n");
         }
+    }
 
-        if (current == null) return;
-
-        try (Socket socket = new Socket(current.ip, current.port);
-             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-             ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-
-            out.writeObject("FORWARD_SEARCH");
-            out.writeObject(hash);
-            out.writeObject(myId);
-            out.writeObject(0);
-            out.writeObject("Node " + myId);
+    // Banyak nama/key dipisah koma, diselesaikan dalam satu lintasan ring
+    private void handleBatchSearch(ActionEvent e) {
+        String input = JOptionPane.showInputDialog(this, "Enter file names or keys (0x...), comma separated:");
+        if (input == null || input.trim().isEmpty()) return;
 
-            String response = (String) in.readObject();
-            String[] lines = response.split("\n");
-            for (String line : lines) {
-                output.append("[Search] " + line + "\n");
+        int count = 0;
+        for (String part : input.split(",")) {
+            String s = part.trim();
+            if (s.isEmpty()) continue;
+            try {
+                if (s.startsWith("0x")) KeySpace.parse(s);
+            } catch (NumberFormatException ex) {
+                output.append("❌ Key tidak valid: " + s + "\n");
+                return;
             }
-
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            count++;
         }
-    }
+        output.append("🔍 Batch search " + count + " key\n");
 
-    // private void handleDownload(ActionEvent e) {
-    //     String input = JOptionPane.showInputDialog(this, "Enter file hash (0–31) to download:");
-    //     if (input == null || input.isEmpty()) return;
+        new Thread(() -> printResult("[Batch] ", "BATCH", input)).start();
+    }
 
-    //     int hash = Integer.parseInt(input);
-    //     PeerInfo target = findSuccessor(hash);
-    //     String filename = PeerMain.hashToFile.get(hash);
+    // Metrik node mana pun lewat opcode STATS; kosong = node ini
+    private void handleStats(ActionEvent e) {
+        String input = JOptionPane.showInputDialog(this, "Node ID (kosong = node ini):");
+        if (input == null) return;
+        PeerInfo target = null;
+        try {
+            int id = input.trim().isEmpty() ? myId : Integer.parseInt(input.trim());
+            for (PeerInfo p : peers) {
+                if (p.id == id) target = p;
+            }
+        } catch (NumberFormatException ex) {
+            target = null;
+        }
+        if (target == null) {
+            output.append("❌ Node tidak dikenal: " + input + "\n");
+            return;
+        }
 
-    //     if (filename == null) {
-    //         output.append("File with hash " + hash + " not known in current node.\n");
-    //         return;
-    //     }
+        PeerInfo node = target;
+        new Thread(() -> {
+            try {
+                String text = String.join("\n", admin.text("STATS", String.valueOf(node.id)));
+                SwingUtilities.invokeLater(() -> {
+                    JTextArea area = new JTextArea(text, 30, 80);
+                    area.setEditable(false);
+                    area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                    JOptionPane.showMessageDialog(this, new JScrollPane(area), "📊 Stats Node " + node.id,
+                            JOptionPane.PLAIN_MESSAGE);
+                });
+            } catch (IOException ex) {
+                output.append("❌ Stats Node " + node.id + " gagal: " + ex.getMessage() + "\n");
+            }
+        }).start();
+    }
 
-    //     output.append("Requesting download of \"" + filename + "\" from Node " + target.id + "\n");
-
-    //     try (Socket socket = new Socket(target.ip, target.port);
-    //          ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-    //          ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-
-    //         out.writeObject("DOWNLOAD");
-    //         out.writeObject(filename);
-    //         String status = (String) in.readObject();
-    //         if ("OK".equals(status)) {
-    //             byte[] data = (byte[]) in.readObject();
-    //             File file = new File("downloads/" + filename);
-    //             file.getParentFile().mkdirs();
-    //             try (FileOutputStream fos = new FileOutputStream(file)) {
-    //                 fos.write(data);
-    //             }
-
-    //             output.append("Downloaded and saved to downloads/" + filename + "\n");
-    //             PeerMain.localFiles.put(filename, new FileEntry(filename));
-    //             int fileHash = Math.abs(filename.hashCode()) % 32;
-    //             PeerMain.hashToFile.put(fileHash, filename);
-    //             refreshFileTable();
-    //         } else {
-    //             output.append("File not found on server\n");
-    //         }
-
-    //     } catch (Exception ex) {
-    //         ex.printStackTrace();
-    //         output.append("Download failed\n");
-    //     }
-    // }
+    // Unduh paralel dari semua replika ke downloads/<nama>
+    private void handleDownload(ActionEvent e) {
+        String filename = JOptionPane.showInputDialog(this, "Nama file yang akan diunduh:");
+        if (filename == null || filename.trim().isEmpty()) return;
+        new DownloadWorker(filename.trim()).execute();
+    }
 
+    // Daftar file diambil di background, tabel diisi di EDT
     private void refreshFileTable() {
-        tableModel.setRowCount(0);
-        for (Map.Entry<String, FileEntry> entry : PeerMain.localFiles.entrySet()) {
-            String filename = entry.getKey();
-            int hash = entry.getValue().hash;
-            tableModel.addRow(new Object[]{filename, hash, "Disimpan di sini"});
-        }
+        new Thread(() -> {
+            try {
+                List<FileEntry> files = admin.files();
+                SwingUtilities.invokeLater(() -> {
+                    tableModel.setRowCount(0);
+                    for (FileEntry entry : files) {
+                        String filename = entry.filename;
+                        long hash = entry.hash;
+                        tableModel.addRow(new Object[]{filename, "0x" + KeySpace.format(hash), "Disimpan di sini"});
+                    }
+                });
+            } catch (IOException ex) {
+                output.append("❌ Daftar file gagal diambil: " + ex.getMessage() + "\n");
+            }
+        }).start();
     }
 
     // private void handleDelete(ActionEvent e) {
@@ -246,39 +290,57 @@ public class PeerGUI extends JFrame {
     //     }
     // }
 
-    private PeerInfo findSuccessor(int hash) {
-        for (PeerInfo peer : peers) {
-            if (hash <= peer.id && PeerMain.isNodeActive(peer)) {
-                return peer; // ⬅️ Successor aktif
-            }
+    // Event WATCH dari daemon; dipanggil di thread watch
+    private void onEvent(String[] e) {
+        switch (e[0]) {
+            case "FILE_ADDED":
+                SwingUtilities.invokeLater(() -> {
+                    output.append("File masuk: " + e[1] + " (hash=0x" + e[2] + ") dari " + e[3] + "\n");
+                    refreshFileTable();
+                });
+                break;
+            case "FILE_REMOVED":
+                SwingUtilities.invokeLater(() -> {
+                    output.append("File dipindah ke node lain: " + e[1] + "\n");
+                    refreshFileTable();
+                });
+                break;
+            case "MEMBERS":
+                if (refreshStatus()) SwingUtilities.invokeLater(this::onMembershipChanged);
+                break;
+            case "STATUS":
+                if (refreshStatus()) SwingUtilities.invokeLater(() -> {
+                    ringPanel.setPeers(status.ring());   // ring hanya berisi node hidup
+                    applyStatusChanges();
+                });
+                break;
+            default:
         }
+    }
 
-        // Wrap-around (loop ke awal ring)
-        for (PeerInfo peer : peers) {
-            if (PeerMain.isNodeActive(peer)) {
-                return peer;
-            }
+    private boolean refreshStatus() {
+        try {
+            status = admin.status();
+            return true;
+        } catch (IOException ex) {
+            output.append("❌ Status daemon gagal diambil: " + ex.getMessage() + "\n");
+            return false;
         }
-
-        // Fallback terakhir: diri sendiri
-        return peers.stream()
-                    .filter(p -> p.id == myId)
-                    .findFirst()
-                    .orElse(peers.get(0));
     }
 
-    public void onFileReceived(String filename, int hash, String sender) {
-        SwingUtilities.invokeLater(() -> {
-            output.append("File masuk: " + filename + " (hash=" + hash + ") dari " + sender + "\n");
-            refreshFileTable();
-        });
+    // Node bergabung/keluar: gambar ulang ring dan tabel status
+    private void onMembershipChanged() {
+        peers = status.peers;
+        ringPanel.setPeers(status.ring());
+        populateStatusTable();
+        lastNodeStatus.keySet().removeIf(id -> !status.alive.containsKey(id));
     }
 
     private void populateStatusTableWithHighlight(Map<Integer, Boolean> changedStatus) {
         statusTableModel.setRowCount(0);
 
         for (PeerInfo peer : peers) {
-            boolean active = PeerMain.isNodeActive(peer);
+            boolean active = status.isAlive(peer);
 
             Object[] row = {
                 peer.id,
@@ -296,7 +358,7 @@ public class PeerGUI extends JFrame {
                 Component comp = super.prepareRenderer(renderer, row, col);
                 int nodeId = (int) getValueAt(row, 0);
                 if (changedStatus.containsKey(nodeId)) {
-                    boolean newStatus = PeerMain.isNodeActive(peers.get(row));
+                    boolean newStatus = changedStatus.get(nodeId);
                     comp.setBackground(newStatus ? new Color(204, 255, 204) : new Color(255, 204, 204)); // hijau/merah muda
                 } else {
                     comp.setBackground(Color.white);
@@ -308,50 +370,66 @@ public class PeerGUI extends JFrame {
         statusTableModel.fireTableDataChanged(); // render ulang
     }
 
+    // Tidak ada probe di EDT: daemon mengirim event saat status atau anggota berubah
     private void checkStatusUpdatePeriodically() {
-        Timer timer = new Timer(5000, e -> {
-            Map<Integer, Boolean> changed = new HashMap<>();
-
-            for (PeerInfo peer : peers) {
-                boolean current = PeerMain.isNodeActive(peer);
-                boolean last = lastNodeStatus.getOrDefault(peer.id, !current); // anggap berubah di awal
-
-                if (current != last) {
-                    changed.put(peer.id, current);
-                    lastNodeStatus.put(peer.id, current);
-
-                    // ✅ Tampilkan log hanya jika bukan first run
-                    if (!firstStatusCheck) {
-                        SwingUtilities.invokeLater(() -> {
-                            output.append("🔄 Status Node " + peer.id + " berubah menjadi " +
-                                (current ? "🟢 AKTIF\n" : "⚫ TIDAK AKTIF\n"));
-                        });
-                    }
-                } else {
-                    lastNodeStatus.put(peer.id, current); // tetap update meskipun tidak berubah
-                }
+        Thread watcher = new Thread(() -> {
+            try {
+                admin.watch(this::onEvent);
+            } catch (IOException ex) {
+                // ditangani di bawah
             }
+            SwingUtilities.invokeLater(() -> output.append("❌ Koneksi ke daemon terputus\n"));
+        }, "admin-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+        SwingUtilities.invokeLater(this::applyStatusChanges);
+    }
+
+    private void applyStatusChanges() {
+        Map<Integer, Boolean> changed = new HashMap<>();
 
-            if (!changed.isEmpty()) {
-                SwingUtilities.invokeLater(() -> populateStatusTableWithHighlight(changed));
+        for (PeerInfo peer : peers) {
+            boolean current = status.isAlive(peer);
+            boolean last = lastNodeStatus.getOrDefault(peer.id, !current); // anggap berubah di awal
+
+            if (current != last) {
+                changed.put(peer.id, current);
+
+                // ✅ Tampilkan log hanya jika bukan first run
+                if (!firstStatusCheck) {
+                    output.append("🔄 Status Node " + peer.id + " berubah menjadi " +
+                        (current ? "🟢 AKTIF\n" : "⚫ TIDAK AKTIF\n"));
+                }
             }
+            lastNodeStatus.put(peer.id, current);
+        }
 
-            firstStatusCheck = false; // ✅ hanya skip log pertama kali
-        });
+        if (!changed.isEmpty()) {
+            populateStatusTableWithHighlight(changed);
+        }
 
-        timer.setRepeats(true);
-        timer.start();
+        firstStatusCheck = false; // ✅ hanya skip log pertama kali
     }
     // 🔁 PANEL GRAFIK RING LINGKARAN
     class RingPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+
         private List<PeerInfo> peers;
 
         public RingPanel(List<PeerInfo> peers) {
-            this.peers = peers;
+            setPeers(peers);
             setPreferredSize(new Dimension(400, 300));
             setBackground(Color.WHITE);
         }
 
+        public void setPeers(List<PeerInfo> peers) {
+            // Gambar sesuai urutan key di ring
+            List<PeerInfo> sorted = new ArrayList<>(peers);
+            sorted.sort((a, b) -> KeySpace.compare(a.key, b.key));
+            this.peers = sorted;
+            repaint();
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
@@ -399,6 +477,58 @@ public class PeerGUI extends JFrame {
         }
     }
 
+    // Baris TEXT langsung ke output, PROGRESS ke progress bar
+    private void transfer(IntConsumer publish, String... request)
+            throws IOException {
+        admin.call(f -> {
+            if (f[0].equals("PROGRESS")) {
+                long done = Long.parseLong(f[1]);
+                long total = Long.parseLong(f[2]);
+                publish.accept(total == 0 ? 100 : (int) (done * 100 / total));
+            } else if (f[0].equals("TEXT")) {
+                SwingUtilities.invokeLater(() -> output.append(f[1] + "\n"));
+            }
+        }, request);
+    }
+
+    class DownloadWorker extends SwingWorker<Void, Integer> {
+        private final String filename;
+
+        DownloadWorker(String filename) {
+            this.filename = filename;
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            SwingUtilities.invokeLater(() -> {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue(0);
+                progressBar.setString("⬇️ Mengunduh: " + filename);
+            });
+            // Daemon menyimpan ke downloads/<nama> di direktori kerjanya sendiri
+            transfer(p -> publish(p), "DOWNLOAD", filename);
+            return null;
+        }
+
+        @Override
+        protected void process(List<Integer> chunks) {
+            progressBar.setValue(chunks.get(chunks.size() - 1));
+        }
+
+        @Override
+        protected void done() {
+            try {
+                get();
+                progressBar.setValue(100);
+                progressBar.setString("✅ Download selesai");
+            } catch (Exception ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                output.append("❌ Gagal download " + filename + ": " + cause.getMessage() + "\n");
+                progressBar.setString("❌ Download gagal");
+            }
+        }
+    }
+
     class UploadWorker extends SwingWorker<Void, Integer> {
         private File file;
 
@@ -410,85 +540,28 @@ public class PeerGUI extends JFrame {
         protected Void doInBackground() {
             try {
                 String name = file.getName();
-                int originalHash = Math.abs(name.hashCode()) % 31;
-                int hash = originalHash;
-                int attempts = 0;
-
-                // Cari hash yang belum dipakai
-                while (PeerMain.hashToFile.containsKey(hash)) {
-                    hash = (hash + 1) % 31;
-                    attempts++;
-                    if (attempts >= 31) {
-                        SwingUtilities.invokeLater(() ->
-                            output.append("❌ Semua hash penuh, tidak bisa menyimpan file!\n"));
-                        return null;
-                    }
-                }
-
-                final int finalHash = hash; // ✅ Final copy
-                PeerInfo target = findSuccessor(finalHash);
-
-                if (finalHash != originalHash) {
-                    SwingUtilities.invokeLater(() ->
-                        output.append("⚠️ Hash " + originalHash + " sudah dipakai, diganti ke hash " + finalHash + "\n"));
-                }
-
-                // ✅ Gunakan finalHash dalam UI update
                 SwingUtilities.invokeLater(() -> {
-                    progressBar.setIndeterminate(true);
+                    progressBar.setIndeterminate(false);
                     progressBar.setValue(0);
                     progressBar.setString("📁 Mengunggah: " + name);
-                    output.append("📦 Uploading: " + name + "\n");
-                    output.append("🔍 Hash = " + finalHash + ", Target Node: " + target.id + "\n");
                 });
 
-                byte[] data = java.nio.file.Files.readAllBytes(file.toPath());
-
-                if (target.id == myId) {
-                    // ✅ Simpan lokal
-                    new File("shared").mkdirs();
-                    java.nio.file.Files.copy(file.toPath(),
-                            new File("shared/" + name).toPath(),
-                            java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-
-                    // ✅ Catat file lokal
-                    PeerMain.localFiles.put(name, new FileEntry(name));
-                    PeerMain.hashToFile.put(hash, name);
-
-                    SwingUtilities.invokeLater(() -> {
-                        refreshFileTable();
-                        output.append("✅ File disimpan di node ini (Node " + myId + ")\n");
-                    });
-
-                } else {
-                    // ✅ Kirim file ke node lain
-                    try (Socket socket = new Socket(target.ip, target.port);
-                        ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())) {
-
-                        out.writeObject("UPLOAD");         // perintah
-                        out.writeObject(name);             // nama file
-                        out.writeObject(myId);             // pengirim
-                        out.writeObject(data);            // isi file (byte[])
-
-                        SwingUtilities.invokeLater(() ->
-                            output.append("✅ File terkirim ke Node " + target.id + "\n"));
-
-                    } catch (IOException ex) {
-                        ex.printStackTrace();
-                        SwingUtilities.invokeLater(() ->
-                            output.append("❌ Gagal upload ke Node " + target.id + ": " + ex.getMessage() + "\n"));
-                    }
-                }
+                // Daemon mengunggah paralel ke semua replika; selesai begitu write quorum tercapai
+                transfer(p -> publish(p), "UPLOAD", file.getAbsolutePath());
 
             } catch (IOException ex) {
-                ex.printStackTrace();
                 SwingUtilities.invokeLater(() ->
-                    output.append("❌ Terjadi error saat membaca file: " + ex.getMessage() + "\n"));
+                    output.append("❌ Gagal upload: " + ex.getMessage() + "\n"));
             }
 
             return null;
         }
 
+        @Override
+        protected void process(List<Integer> chunks) {
+            progressBar.setValue(chunks.get(chunks.size() - 1));
+        }
+
         @Override
         protected void done() {
             progressBar.setIndeterminate(false);
@@ -0,0 +1,900 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Satu peer lengkap: identitas, anggota ring, indeks, chunk store, server
+ * dan semua komponen background-nya. Tidak ada state statis, jadi satu
+ * proses bisa menjalankan banyak node (lihat bench.Simulator); PeerMain
+ * hanya membuat satu node lalu membuka AdminServer untuk CLI dan GUI.
+ *
+ * Path relatif (p2p.index.dir, p2p.chunks.dir, p2p.shared.dir) dibaca
+ * dari dataDir node.
+ */
+public class PeerNode {
+    public final int myId;
+    public final int myPort;
+    public final String myIp;
+    public final Path dataDir;
+
+    // Anggota ring; berubah saat JOIN/LEAVE (lihat Membership)
+    public final List<PeerInfo> peers = new CopyOnWriteArrayList<>();
+    // Indeks file lokal (nama dan key), aman diakses banyak thread
+    public final LocalIndex localFiles = new LocalIndex();
+    // Salinan indeks di disk (snapshot + log); semua perubahan indeks lewat sini
+    public final IndexStore indexStore;
+    // Isi file per chunk (dedup); shared/ hanya berisi manifest
+    public final ChunkStore chunks;
+    final RateLimiter uplink = RateLimiter.fromSystemProperties();
+    // Kompresi chunk saat node ini yang mengirim (upload, melayani GET_CHUNKS)
+    public final ChunkCodec codec = ChunkCodec.fromSystemProperties();
+    final ChunkCodec.Stats compression = new ChunkCodec.Stats();
+    public final SwarmDownload swarm;
+    // Dibangun ulang oleh Membership dari anggota yang hidup
+    public volatile FingerTable fingerTable;
+    public final LookupCache lookupCache = LookupCache.fromSystemProperties();
+    static final boolean CACHE_AT_HOPS = Boolean.getBoolean("p2p.cache.atHops");
+    // Kapasitas node ini (bobot virtual node); 0 = pakai kolom peerlist, atau 1
+    static final int CAPACITY = Integer.getInteger("p2p.capacity", 0);
+    // Ukuran file lokal menurut manifest, dicatat saat file masuk indeks; totalnya gauge local_bytes
+    private final Map<String, Long> fileSizes = new ConcurrentHashMap<>();
+    private final AtomicLong storedBytes = new AtomicLong();
+    // Lanjutan routing asinkron yang bisa membuka koneksi (retry ke hop lain), bukan di thread pembaca koneksi
+    static final ExecutorService CONTINUATIONS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "route-async");
+        t.setDaemon(true);
+        return t;
+    });
+    // Batas hop routing rekursif, menjaga dari putaran saat anggota berubah
+    static final int MAX_HOPS = Integer.getInteger("p2p.maxHops", 32);
+    // Bagian lookup yang dimulai di node ini yang dilacak per hop lalu ditulis ke log (0 = hanya kalau diminta)
+    static final double TRACE_SAMPLE = Double.parseDouble(System.getProperty("p2p.trace.sample", "0"));
+    public ServerEngine engine;
+    private final AsyncLog log;
+    // Counter dan histogram per opcode, dibaca lewat STATS atau HTTP /metrics
+    public final Metrics metrics = Metrics.fromSystemProperties();
+    final LongAdder forwardErrors = metrics.counter("forward_errors_total");
+    final Metrics.Histogram searchHops = metrics.histogram("search_hops");
+    // Status hidup/mati node dari heartbeat di background
+    public final FailureDetector detector = FailureDetector.fromSystemProperties();
+    public final Membership membership;
+    public final Replication replication;
+    // Pemberitahuan file masuk/keluar dan perubahan anggota (mis. admin WATCH)
+    public final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Tanpa server: request dari node lain di proses yang sama dipanggil langsung
+    private boolean inMemory;
+
+    public interface Listener {
+        void onFileReceived(String filename, long hash, String sender);
+
+        void onFileRemoved(String filename);
+
+        void onMembershipChanged();
+    }
+
+    public final ServerHandler handler = new ServerHandler() {
+        @Override
+        public Frame handleFrame(Frame request) {
+            long t0 = System.nanoTime();
+            Frame reply = PeerNode.this.handleFrame(request);
+            Metrics.OpStats stats = metrics.op(request.command());
+            stats.bytesIn.add(request.wireSize());
+            stats.bytesOut.add(reply.wireSize());
+            metrics.record(request.command(), t0, reply.payload.length > 0 && reply.payload[0] == Frame.STATUS_ERROR);
+            return reply;
+        }
+
+        @Override
+        public CompletableFuture<Frame> handleFrameAsync(Frame request) {
+            long t0 = System.nanoTime();
+            return PeerNode.this.handleFrameAsync(request).thenApply(reply -> {
+                Metrics.OpStats stats = metrics.op(request.command());
+                stats.bytesIn.add(request.wireSize());
+                stats.bytesOut.add(reply.wireSize());
+                metrics.record(request.command(), t0, reply.payload.length > 0 && reply.payload[0] == Frame.STATUS_ERROR);
+                return reply;
+            });
+        }
+
+        @Override
+        public void log(String message) {
+            PeerNode.this.log(message);
+        }
+
+        @Override
+        public void handleTransfer(Frame request, ByteBuffer prefix, SocketChannel channel) throws IOException {
+            long t0 = System.nanoTime();
+            boolean ok = false;
+            try {
+                PeerNode.this.handleTransfer(request, prefix, channel);
+                ok = true;
+            } finally {
+                metrics.record(request.command(), t0, !ok);
+            }
+        }
+
+        @Override
+        public void handleLegacy(InputStream in, OutputStream out) {
+            long t0 = System.nanoTime();
+            PeerNode.this.handleLegacy(in, out);
+            metrics.record(Metrics.LEGACY, t0, false);
+        }
+    };
+
+    // Node tunggal seperti PeerMain: data di direktori kerja, log sendiri
+    public PeerNode(int myId, String myIp, int myPort) {
+        this(myId, myIp, myPort, Paths.get(""), AsyncLog.fromSystemProperties());
+    }
+
+    // log boleh dipakai bersama beberapa node (satu thread penulis)
+    public PeerNode(int myId, String myIp, int myPort, Path dataDir, AsyncLog log) {
+        this.myId = myId;
+        this.myIp = myIp;
+        this.myPort = myPort;
+        this.dataDir = dataDir;
+        this.log = log;
+        this.indexStore = IndexStore.fromSystemProperties(localFiles, dataDir, log);
+        this.chunks = ChunkStore.fromSystemProperties(dataDir, log);
+        this.swarm = SwarmDownload.fromSystemProperties(this);
+        this.membership = Membership.fromSystemProperties(this);
+        this.replication = Replication.fromSystemProperties(this);
+    }
+
+    public void start(List<PeerInfo> seeds) {
+        start(seeds, false);
+    }
+
+    /**
+     * seeds: node yang dihubungi untuk JOIN, sekaligus anggota awal ring.
+     * inMemory: tidak membuka port; node lain di proses ini memanggil
+     * handler langsung lewat {@link ConnectionPool#registerLocal}. Transfer
+     * file (UPLOAD, DOWNLOAD, GET_CHUNKS) tetap butuh socket, jadi hanya
+     * lookup dan pesan kontrol yang jalan di mode ini.
+     */
+    public void start(List<PeerInfo> seeds, boolean inMemory) {
+        this.inMemory = inMemory;
+        for (PeerInfo p : seeds) {
+            if (findPeer(p.id) == null) peers.add(p);
+        }
+        PeerInfo self = findPeer(myId);
+        if (self == null || CAPACITY > 0) {
+            peers.remove(self);
+            peers.add(new PeerInfo(myId, myIp, myPort, CAPACITY));
+        }
+        // Kapasitas yang diumumkan setelah restart mengalahkan kabar lama yang masih beredar
+        findPeer(myId).capacityVersion = System.currentTimeMillis();
+        fingerTable = new FingerTable(myId, peers);
+        log(fingerTable.toString());
+        loadIndex();
+        startServer();
+        startMetrics();
+        detector.start(peers, myId);
+        membership.join(seeds);
+        membership.start();
+        replication.start();
+        // File dari indeks di disk langsung dicocokkan dengan replika lain, tanpa menunggu periode anti-entropy
+        if (localFiles.size() > 0) replication.requestRepair();
+    }
+
+    // Berhenti tanpa LEAVE (seperti node yang mati); lihat leave()
+    public void stop() {
+        membership.stop();
+        replication.stop();
+        detector.stop();
+        metrics.stop();
+        if (inMemory) {
+            PeerClient.POOL.unregisterLocal(findPeer(myId));
+        } else if (engine != null) {
+            engine.stop();
+        }
+        indexStore.close();
+    }
+
+    // Serahkan file dan beri tahu anggota lain, lalu berhenti
+    public void leave() {
+        membership.leave();
+        stop();
+    }
+
+    private void loadIndex() {
+        long t0 = System.nanoTime();
+        try {
+            int n = indexStore.load();
+            System.out.println("📂 Indeks: " + n + " file dimuat dalam " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            System.out.println("⚠️ Indeks di disk tidak bisa dibaca (" + e.getMessage() + "), mulai dengan indeks kosong");
+        }
+        try {
+            int migrated = chunks.migrate();
+            if (migrated > 0) System.out.println("📦 " + migrated + " file lama dipindah ke chunk store");
+        } catch (IOException e) {
+            System.out.println("⚠️ Migrasi file lama ke chunk store gagal: " + e.getMessage());
+        }
+        if (localFiles.size() > 0) {
+            Thread t = new Thread(this::loadSizes, "index-sizes-" + myId);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    // Ukuran file dari indeks di disk: manifest dibaca sekali di belakang, start tidak menunggu
+    private void loadSizes() {
+        for (FileEntry f : localFiles.snapshot()) {
+            if (fileSizes.containsKey(f.filename)) continue;
+            try {
+                Manifest m = chunks.manifest(f.filename);
+                if (m == null || fileSizes.putIfAbsent(f.filename, m.size) != null) continue;
+                storedBytes.addAndGet(m.size);
+                // Terhapus di antara snapshot dan putIfAbsent: jangan tinggalkan ukuran basi
+                if (!localFiles.contains(f.filename) && fileSizes.remove(f.filename, m.size)) {
+                    storedBytes.addAndGet(-m.size);
+                }
+            } catch (IOException e) {
+                // manifest tidak terbaca: file tidak ikut dihitung
+            }
+        }
+    }
+
+    public void startServer() {
+        if (inMemory) {
+            PeerClient.POOL.registerLocal(findPeer(myId), handler);
+            return;
+        }
+        try {
+            engine = ServerEngine.fromSystemProperties();
+            engine.start(myPort, handler);
+            System.out.println("Peer " + myId + " listening on port " + myPort + " [" + engine.name() + "]");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void startMetrics() {
+        metrics.gauge("connections_active", () -> engine == null ? 0 : engine.connections());
+        metrics.gauge("ring_members", () -> peers.size());
+        metrics.gauge("ring_version", () -> fingerTable.ring().version);
+        metrics.gauge("local_files", () -> localFiles.size());
+        metrics.gauge("local_bytes", this::storedBytes);
+        // Chunk yang dikirim node ini lewat jalur berbingkai: mentah vs di kabel
+        metrics.gauge("compress_raw_bytes", compression::rawBytes);
+        metrics.gauge("compress_wire_bytes", compression::wireBytes);
+        try {
+            if (metrics.startHttp()) log("Metrics: http://0.0.0.0:" + metrics.httpPort() + "/metrics");
+        } catch (IOException e) {
+            System.out.println("⚠️ Endpoint metrics tidak bisa dibuka: " + e.getMessage());
+        }
+    }
+
+    // Tidak blocking: pesan masuk ring buffer, ditulis ke log.txt oleh thread AsyncLog
+    public void log(String msg) {
+        log.append(msg);
+    }
+
+    // Successor hidup berikutnya dari currentId; ring hanya berisi node hidup
+    public PeerInfo getNextNode(int currentId) {
+        Ring ring = fingerTable.ring();
+        PeerInfo current = findPeer(currentId);
+        return current != null ? ring.after(current) : ring.get(0);
+    }
+
+    // Dibaca dari snapshot FailureDetector: tidak pernah membuka koneksi
+    public boolean isNodeActive(PeerInfo peer) {
+        return peer.id == myId || detector.isAlive(peer);
+    }
+
+    /**
+     * Request yang menunggu node lain dijawab lewat future; sisanya sama
+     * dengan handleFrame.
+     */
+    CompletableFuture<Frame> handleFrameAsync(Frame request) {
+        byte command = request.command();
+        if (command != Frame.FORWARD_SEARCH && command != Frame.BATCH_SEARCH) {
+            return CompletableFuture.completedFuture(handleFrame(request));
+        }
+        Payload.Reader r = request.reader();
+        // Penulis isi balasan OK: SearchResult atau BatchSearchResult
+        CompletableFuture<Consumer<Payload.Writer>> result;
+        try {
+            if (command == Frame.FORWARD_SEARCH) {
+                result = routeSearchAsync(r.readLong(), r.readInt(), r.readInt(), r.readByte()).thenApply(f -> f::writeTo);
+            } else {
+                int originId = r.readInt();
+                int hopCount = r.readInt();
+                long[] keys = new long[r.readCount(8)];
+                for (int i = 0; i < keys.length; i++) keys[i] = r.readLong();
+                result = routeBatch(keys, originId, hopCount).thenApply(b -> b::writeTo);
+            }
+        } catch (IOException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.handle((answer, e) -> {
+            Payload.Writer reply = new Payload.Writer();
+            if (e == null) {
+                answer.accept(reply.writeByte(Frame.STATUS_OK));
+            } else {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                reply.writeByte(Frame.STATUS_ERROR).writeString(String.valueOf(cause.getMessage()));
+            }
+            return request.reply(reply.toByteArray());
+        });
+    }
+
+    Frame handleFrame(Frame request) {
+        Payload.Writer reply = new Payload.Writer();
+        try {
+            Payload.Reader r = request.reader();
+            switch (request.command()) {
+                case Frame.SEARCH: {
+                    String filename = r.readString();
+                    reply.writeByte(hasFile(filename) ? Frame.STATUS_OK : Frame.STATUS_NOT_FOUND);
+                    break;
+                }
+                case Frame.FORWARD_SEARCH: {
+                    long hash = r.readLong();
+                    int originId = r.readInt();
+                    int hopCount = r.readInt();
+                    int flags = r.readByte();
+                    routeSearch(hash, originId, hopCount, flags).writeTo(reply.writeByte(Frame.STATUS_OK));
+                    break;
+                }
+                case Frame.PING:
+                    reply.writeByte(Frame.STATUS_OK);
+                    break;
+                case Frame.JOIN:
+                    membership.handleJoin(r, reply);
+                    break;
+                case Frame.NOTIFY:
+                    membership.handleNotify(r, reply);
+                    break;
+                case Frame.LEAVE:
+                    membership.handleLeave(r, reply);
+                    break;
+                case Frame.FIND_SUCCESSOR: {
+                    // Iteratif: jawab dari finger table sendiri, tidak meneruskan
+                    FingerTable.Step step = fingerTable.step(r.readLong());
+                    reply.writeByte(Frame.STATUS_OK).writeByte(step.done ? 1 : 0);
+                    Membership.writeMember(reply, step.peer);
+                    break;
+                }
+                case Frame.MISSING_CHUNKS: {
+                    int[] missing = chunks.missing(Manifest.readFrom(r));
+                    reply.writeByte(Frame.STATUS_OK).writeInt(missing.length);
+                    for (int i : missing) reply.writeInt(i);
+                    reply.writeByte(ChunkCodec.accepts());     // UPLOAD_CHUNKS berikutnya boleh berbingkai
+                    break;
+                }
+                case Frame.GET_MANIFEST: {
+                    Manifest manifest = chunks.manifest(r.readString());
+                    if (manifest == null) {
+                        reply.writeByte(Frame.STATUS_NOT_FOUND);
+                    } else {
+                        manifest.writeTo(reply.writeByte(Frame.STATUS_OK));
+                    }
+                    break;
+                }
+                case Frame.SYNC:
+                    replication.handleSync(r, reply);
+                    break;
+                case Frame.STATS:
+                    reply.writeByte(Frame.STATUS_OK).writeString(metrics.render());
+                    break;
+                case Frame.BATCH_SEARCH: {
+                    int originId = r.readInt();
+                    int hopCount = r.readInt();
+                    long[] keys = new long[r.readCount(8)];
+                    for (int i = 0; i < keys.length; i++) keys[i] = r.readLong();
+                    reply.writeByte(Frame.STATUS_OK);
+                    await(routeBatch(keys, originId, hopCount)).writeTo(reply);
+                    break;
+                }
+                default:
+                    reply.writeByte(Frame.STATUS_ERROR).writeString("Unknown opcode " + request.command());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            reply = new Payload.Writer()
+                    .writeByte(Frame.STATUS_ERROR)
+                    .writeString(String.valueOf(e.getMessage()));
+        }
+        return request.reply(reply.toByteArray());
+    }
+
+    /**
+     * UPLOAD: payload (filename, senderId, size) lalu size byte mentah.
+     * UPLOAD_CHUNKS: payload (filename, senderId, manifest, index chunk
+     * yang dikirim, [framed]) lalu isi chunk-chunk itu berurutan.
+     * DOWNLOAD: payload (filename); balasan (status, size) lalu byte mentah.
+     * GET_CHUNKS: payload (id chunk, [accept]); balasan (status, [framed])
+     * lalu isi chunk berurutan.
+     * Chunk berbingkai memakai format ChunkCodec. Isi file tidak pernah
+     * dimuat utuh ke heap.
+     */
+    void handleTransfer(Frame request, ByteBuffer prefix, SocketChannel channel) throws IOException {
+        ReadableByteChannel in = FileTransfer.timed(channel);
+        Payload.Reader r = request.reader();
+        Metrics.OpStats stats = metrics.op(request.command());
+        stats.bytesIn.add(request.wireSize());
+        if (request.command() == Frame.GET_CHUNKS) {
+            Path[] paths = new Path[r.readCount(4 + Chunker.ID_BYTES)];
+            for (int i = 0; i < paths.length; i++) {
+                byte[] id = r.readBytes();
+                if (id.length != Chunker.ID_BYTES) throw new StreamCorruptedException("Id chunk rusak");
+                paths[i] = chunks.chunkPath(id);
+                if (!Files.isRegularFile(paths[i])) {
+                    request.reply(new byte[]{Frame.STATUS_NOT_FOUND}).writeTo(channel);
+                    return;
+                }
+            }
+            // Peminta lama tidak mengirim accept: chunk mentah tanpa bingkai, langsung transferTo
+            int accept = r.hasRemaining() ? r.readByte() : 0;
+            boolean framed = accept != 0 && codec.isEnabled();
+            request.reply(new byte[]{Frame.STATUS_OK, (byte) (framed ? 1 : 0)}).writeTo(channel);
+            byte[] buf = framed ? new byte[Chunker.MAX] : null;
+            for (Path p : paths) {
+                try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+                    long size = fc.size();
+                    if (size > Chunker.MAX) throw new StreamCorruptedException("Chunk " + p + " melebihi ukuran maksimum");
+                    int len = (int) size;
+                    long wire = len;
+                    if (framed) {
+                        // Laju dibatasi per byte di kabel, jadi kompresi langsung menambah throughput
+                        FileTransfer.readRange(fc, 0, buf, len);
+                        wire = codec.writeChunk(buf, 0, len, accept, channel, uplink, compression);
+                    } else {
+                        uplink.acquire(len);
+                        FileTransfer.sendRange(fc, 0, len, channel);
+                    }
+                    stats.bytesOut.add(wire);
+                }
+            }
+        } else if (request.command() == Frame.UPLOAD_CHUNKS) {
+            String filename = r.readString();
+            if (!acceptName(request, filename, channel)) return;
+            int senderId = r.readInt();
+            Manifest manifest = Manifest.readFrom(r);
+            int[] sent = new int[r.readCount(4)];
+            if (sent.length > manifest.count()) throw new StreamCorruptedException("Jumlah chunk melebihi manifest");
+            int largest = 0;
+            for (int i = 0; i < sent.length; i++) {
+                sent[i] = r.readInt();
+                if (sent[i] < 0 || sent[i] >= manifest.count()) {
+                    throw new StreamCorruptedException("Indeks chunk " + sent[i] + " di luar manifest");
+                }
+                largest = Math.max(largest, manifest.length(sent[i]));
+            }
+            boolean framed = r.hasRemaining() && r.readByte() != 0;
+
+            byte[] buf = new byte[largest];
+            for (int i : sent) {
+                int len = manifest.length(i);
+                if (framed) {
+                    stats.bytesIn.add(ChunkCodec.readChunk(in, prefix, buf, len));
+                } else {
+                    FileTransfer.readFully(in, prefix, buf, len);
+                    stats.bytesIn.add(len);
+                }
+                chunks.put(manifest.id(i), buf, 0, len);
+            }
+            // Chunk yang dianggap sudah ada bisa saja terhapus gc di antaranya
+            int[] missing = chunks.missing(manifest);
+            if (missing.length > 0) {
+                byte[] error = new Payload.Writer().writeByte(Frame.STATUS_ERROR)
+                        .writeString(missing.length + " chunk " + filename + " belum ada, ulangi upload")
+                        .writeInt(missing.length).toByteArray();
+                request.reply(error).writeTo(channel);
+                return;
+            }
+            chunks.saveManifest(filename, manifest);
+            registerFile(filename, manifest.size, senderId);
+            request.reply(new byte[]{Frame.STATUS_OK}).writeTo(channel);
+        } else if (request.command() == Frame.UPLOAD) {
+            String filename = r.readString();
+            if (!acceptName(request, filename, channel)) return;
+            int senderId = r.readInt();
+            long size = r.readLong();
+
+            // Terima utuh ke file sementara lalu potong ke chunk store
+            Path tmp = chunks.tempFile();
+            try {
+                try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    FileTransfer.receive(in, prefix, fc, size, FileTransfer.NO_PROGRESS);
+                }
+                stats.bytesIn.add(size);
+                chunks.saveManifest(filename, chunks.importFile(tmp.toFile()));
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            registerFile(filename, size, senderId);
+            request.reply(new byte[]{Frame.STATUS_OK}).writeTo(channel);
+        } else {
+            Manifest manifest = chunks.manifest(r.readString());
+            if (manifest == null) {
+                request.reply(new byte[]{Frame.STATUS_NOT_FOUND}).writeTo(channel);
+                return;
+            }
+            byte[] header = new Payload.Writer().writeByte(Frame.STATUS_OK).writeLong(manifest.size).toByteArray();
+            request.reply(header).writeTo(channel);
+            chunks.send(manifest, channel, FileTransfer.NO_PROGRESS);
+            stats.bytesOut.add(manifest.size);
+        }
+    }
+
+    // Nama dari pengirim ditolak dengan balasan error sebelum isinya dikirim, bukan koneksi yang diputus
+    private static boolean acceptName(Frame request, String filename, SocketChannel channel) throws IOException {
+        try {
+            ChunkStore.checkName(filename);
+            return true;
+        } catch (IOException e) {
+            request.reply(new Payload.Writer().writeByte(Frame.STATUS_ERROR).writeString(e.getMessage()).toByteArray())
+                    .writeTo(channel);
+            return false;
+        }
+    }
+
+    // Format lama (ObjectStream) tetap diterima selama masa migrasi
+    void handleLegacy(InputStream rawIn, OutputStream rawOut) {
+        try (ObjectInputStream in = new ObjectInputStream(rawIn);
+             ObjectOutputStream out = new ObjectOutputStream(rawOut)) {
+
+            String command = (String) in.readObject();
+            if (command.equals("SEARCH")) {
+                String filename = (String) in.readObject();
+                out.writeObject(hasFile(filename) ? "FOUND" : "NOT_FOUND");
+            } else if (command.equals("DOWNLOAD")) {
+                String filename = (String) in.readObject();
+                byte[] data = chunks.readAll(filename);
+                if (data != null) {
+                    out.writeObject("OK");
+                    out.writeObject(data);
+                } else {
+                    out.writeObject("NOT_FOUND");
+                }
+            } else if (command.equals("UPLOAD")) {
+                try {
+                    String filename = (String) in.readObject();
+                    int senderId = (int) in.readObject();
+                    byte[] data = (byte[]) in.readObject();
+                    storeUpload(filename, senderId, data);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            } else if (command.equals("FORWARD_SEARCH")) {
+                long hash = ((Number) in.readObject()).longValue();
+                int originId = (int) in.readObject();
+                int hopCount = (int) in.readObject();
+                in.readObject();    // rute lama, diganti jejak hop
+                out.writeObject(routeSearch(hash, originId, hopCount, SearchResult.TRACE).message());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    boolean hasFile(String filename) {
+        return localFiles.contains(filename);
+    }
+
+    void storeUpload(String filename, int senderId, byte[] data) throws IOException {
+        chunks.saveManifest(filename, chunks.importStream(new ByteArrayInputStream(data)));
+        registerFile(filename, data.length, senderId);
+    }
+
+    void registerFile(String filename, long size, int senderId) {
+        FileEntry entry = indexFile(filename, size);
+
+        for (Listener l : listeners) l.onFileReceived(filename, entry.hash, "Node " + senderId);
+
+        System.out.println("✅ File " + filename + " diterima dari Node " + senderId);
+    }
+
+    void unregisterFile(String filename) {
+        indexStore.remove(filename);
+        Long size = fileSizes.remove(filename);
+        if (size != null) storedBytes.addAndGet(-size);
+        for (Listener l : listeners) l.onFileRemoved(filename);
+    }
+
+    // Total ukuran file di indeks lokal, tanpa membaca disk
+    public long storedBytes() {
+        return storedBytes.get();
+    }
+
+    // Simpan ke indeks: nama -> entry dan key -> kumpulan file; size dari manifest yang baru disimpan
+    FileEntry indexFile(String filename, long size) {
+        FileEntry entry = new FileEntry(filename);
+        indexStore.put(entry);
+        Long old = fileSizes.put(filename, size);
+        storedBytes.addAndGet(size - (old == null ? 0 : old));
+        return entry;
+    }
+
+    /**
+     * flags SearchResult.LOCAL_ONLY: jawab dari indeks sendiri tanpa
+     * meneruskan (permintaan baca replika). SearchResult.TRACE: tiap node
+     * menambahkan id dan waktunya ke jejak di jalur balik. Lookup yang
+     * dimulai di sini (hopCount 0) juga bisa disampel (p2p.trace.sample).
+     */
+    SearchResult routeSearch(long hash, int originId, int hopCount, int flags) throws IOException {
+        return await(routeSearchAsync(hash, originId, hopCount, flags));
+    }
+
+    /**
+     * Versi asinkron untuk thread server: future selesai saat hop
+     * berikutnya atau replika menjawab, tanpa thread yang menunggu.
+     */
+    CompletableFuture<SearchResult> routeSearchAsync(long hash, int originId, int hopCount, int flags) {
+        long t0 = System.nanoTime();
+        boolean sampled = hopCount == 0 && (flags & SearchResult.TRACE) == 0
+                && TRACE_SAMPLE > 0 && ThreadLocalRandom.current().nextDouble() < TRACE_SAMPLE;
+        int f = sampled ? flags | SearchResult.TRACE : flags;
+
+        CompletableFuture<SearchResult> result = route(hash, originId, hopCount + 1, f);
+        if ((f & SearchResult.TRACE) == 0) return result;
+        return result.thenApply(r -> {
+            SearchResult traced = r.via(myId, (System.nanoTime() - t0) / 1000);
+            if (sampled) log("Trace " + KeySpace.format(hash) + " (" + traced.hops + " hop): " + traced.trace);
+            return traced;
+        });
+    }
+
+    // Node yang menyimpan replika key langsung menjawab, tidak perlu sampai ke pemilik utamanya
+    private CompletableFuture<SearchResult> route(long hash, int originId, int hopCount, int flags) {
+        boolean localOnly = (flags & SearchResult.LOCAL_ONLY) != 0;
+        int trace = flags & SearchResult.TRACE;
+        if (hopCount > MAX_HOPS) {
+            return CompletableFuture.failedFuture(
+                    new IOException("Batas " + MAX_HOPS + " hop terlampaui untuk " + KeySpace.format(hash)));
+        }
+
+        // Tentukan apakah saya adalah successor dari hash
+        FingerTable table = fingerTable;
+        boolean isSuccessor = table.owns(hash);
+        List<PeerInfo> replicas = table.replicas(hash, replication.getReplicas());
+
+        FileEntry[] local = localFiles.lookup(hash);
+        if (local.length > 0 && (isSuccessor || localOnly || Replication.contains(replicas, myId))) {
+            return CompletableFuture.completedFuture(found(hash, local, hopCount));
+        }
+        if (localOnly) return CompletableFuture.completedFuture(notFound(hash, hopCount));
+
+        if (isSuccessor) {
+            // Salinan di node ini belum ada (mis. baru bergabung): tanya replika lain
+            return readReplicas(replicas, hash, originId, hopCount, trace).handle((result, e) -> {
+                if (e != null) {
+                    log("Replikasi: replika " + KeySpace.format(hash) + " tidak merespons (" + e.getMessage() + ")");
+                }
+                return result != null && result.isFound() ? result : notFound(hash, hopCount);
+            });
+        }
+
+        // Cache dipakai di node asal (hop pertama) dan, kalau diaktifkan, di hop perantara
+        boolean useCache = hopCount == 1 || CACHE_AT_HOPS;
+        if (useCache) {
+            LookupCache.Entry cached = lookupCache.get(hash);
+            if (cached != null && cached.owner.id != myId) {
+                return PeerClient.forwardSearchAsync(cached.owner, hash, originId, hopCount, trace)
+                        .thenApply(result -> {
+                            remember(hash, result);
+                            return result;
+                        })
+                        .exceptionallyComposeAsync(e -> {
+                            // Pemilik di cache tidak merespons: buang lalu routing normal
+                            lookupCache.invalidate(hash);
+                            log("Cache: Node " + cached.owner.id + " tidak merespons, entry " + KeySpace.format(hash) + " dibuang");
+                            return routeUncached(table, replicas, hash, originId, hopCount, trace, true);
+                        }, CONTINUATIONS);
+            }
+        }
+        return routeUncached(table, replicas, hash, originId, hopCount, trace, useCache);
+    }
+
+    private CompletableFuture<SearchResult> routeUncached(FingerTable table, List<PeerInfo> replicas, long hash,
+                                                          int originId, int hopCount, int trace, boolean useCache) {
+        // Teruskan ke finger terdekat yang mendahului hash (O(log N) hop)
+        boolean direct = hopCount > table.hopBudget();
+        Hop<SearchResult> hop = next -> PeerClient.forwardSearchAsync(next, hash, originId, hopCount, trace);
+        CompletableFuture<SearchResult> result;
+        if (direct || table.step(hash).done) {
+            // Pemilik tinggal satu hop lagi (atau budget hop habis): baca dari replika terdekat
+            result = readReplicas(replicas, hash, originId, hopCount, trace)
+                    .exceptionally(e -> {
+                        log("Replikasi: semua replika " + KeySpace.format(hash) + " gagal (" + e.getMessage() + "), routing biasa");
+                        return null;
+                    })
+                    .thenComposeAsync(r -> r != null ? CompletableFuture.completedFuture(r)
+                            : forward(table, hash, direct, hop), CONTINUATIONS);
+        } else {
+            result = forward(table, hash, direct, hop);
+        }
+        if (!useCache) return result;
+        return result.thenApply(r -> {
+            remember(hash, r);
+            return r;
+        });
+    }
+
+    // Replika selain node ini; null kalau tidak ada yang bisa ditanya
+    private CompletableFuture<SearchResult> readReplicas(List<PeerInfo> replicas, long hash, int originId,
+                                                         int hopCount, int flags) {
+        List<PeerInfo> others = new ArrayList<>();
+        for (PeerInfo p : replicas) {
+            if (p.id != myId) others.add(p);
+        }
+        return others.isEmpty() ? CompletableFuture.completedFuture(null)
+                : replication.read(others, hash, originId, hopCount, flags);
+    }
+
+    // Hop dicatat di node yang menjawab, jadi tiap lookup terhitung sekali di seluruh ring
+    private SearchResult found(long hash, FileEntry[] files, int hopCount) {
+        searchHops.record(hopCount);
+        return new SearchResult(hash, myId, names(files), hopCount, null);
+    }
+
+    private SearchResult notFound(long hash, int hopCount) {
+        searchHops.record(hopCount);
+        return new SearchResult(hash, myId, null, hopCount, null);
+    }
+
+    interface Hop<T> {
+        CompletableFuture<T> call(PeerInfo next);
+    }
+
+    /**
+     * Kirim ke next hop; kalau node itu gagal (mis. baru mati dan belum
+     * terdeteksi), coba kandidat berikutnya tanpa node yang gagal.
+     * direct: lewati finger dan kirim langsung ke pemilik menurut
+     * pandangan node ini, untuk memutus putaran saat anggota berubah.
+     */
+    <T> CompletableFuture<T> forward(FingerTable table, long key, boolean direct, Hop<T> hop) {
+        return forward(table, key, direct, hop, new HashSet<>(), 0, null);
+    }
+
+    private <T> CompletableFuture<T> forward(FingerTable table, long key, boolean direct, Hop<T> hop,
+                                             Set<Integer> failed, int attempt, IOException last) {
+        PeerInfo next = null;
+        if (attempt <= membership.getSuccessors()) {
+            next = direct ? table.successor(key) : null;
+            if (next == null || failed.contains(next.id) || next == table.getOwner()) {
+                next = table.nextHop(key, failed);
+            }
+        }
+        if (next == null) {
+            return CompletableFuture.failedFuture(
+                    last != null ? last : new IOException("Tidak ada node hidup untuk key " + KeySpace.format(key)));
+        }
+        PeerInfo target = next;
+        return hop.call(target).exceptionallyComposeAsync(error -> {
+            IOException e = PeerConnection.unwrap(error, target);
+            if (e instanceof PeerClient.RemoteError) {
+                return CompletableFuture.failedFuture(e);    // next hop hidup; masalahnya di hilir
+            }
+            log("Routing: Node " + target.id + " gagal (" + e.getMessage() + "), mencari jalur lain");
+            forwardErrors.increment();
+            failed.add(target.id);
+            // Timeout bisa berarti node sibuk; selain itu anggap mati sekarang juga
+            if (!(e instanceof SocketTimeoutException)) detector.suspect(target);
+            return forward(table, key, direct, hop, failed, attempt + 1, e);
+        }, CONTINUATIONS);
+    }
+
+    // Hasil future untuk pemanggil yang memang blocking (CLI, swarm, sesi format lama)
+    static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Pemilik key (successor) lewat lookup iteratif: node ini sendiri yang
+     * bertanya ke tiap hop, jadi thread server di node lain tidak pernah
+     * menunggu jaringan walaupun pandangan anggota sedang tidak konsisten.
+     */
+    PeerInfo routeFindSuccessor(long key) throws IOException {
+        FingerTable.Step step = fingerTable.step(key);
+        Set<Integer> visited = new HashSet<>();
+        visited.add(myId);
+        while (!step.done) {
+            // Berputar (pandangan anggota belum stabil): pakai jawaban terakhir
+            if (!visited.add(step.peer.id) || visited.size() > MAX_HOPS) break;
+            step = PeerClient.findSuccessor(step.peer, key);
+        }
+        return step.peer;
+    }
+
+    /**
+     * Satu kali lintasan ring untuk banyak key: key milik node ini dijawab
+     * langsung, sisanya dikelompokkan per finger tujuan lalu diteruskan
+     * paralel. Tiap cabang hanya membawa key yang belum terjawab. Hasilnya
+     * digabung saat semua cabang selesai, tanpa thread yang menunggu.
+     */
+    CompletableFuture<BatchSearchResult> routeBatch(long[] keys, int originId, int hopCount) {
+        hopCount++;
+        BatchSearchResult result = new BatchSearchResult();
+        result.maxHops = hopCount;
+        FingerTable table = fingerTable;
+
+        Map<PeerInfo, long[]> byHop = new LinkedHashMap<>();
+        Map<PeerInfo, Integer> counts = new HashMap<>();
+        for (long key : keys) {
+            if (table.owns(key)) {
+                FileEntry[] files = localFiles.lookup(key);
+                result.add(myId, key, files.length == 0 ? null : names(files));
+                continue;
+            }
+            if (hopCount > MAX_HOPS) {
+                result.add(BatchSearchResult.UNRESOLVED, key, null);
+                continue;
+            }
+            PeerInfo next = hopCount > table.hopBudget() ? table.successor(key) : table.nextHop(key);
+            long[] batch = byHop.computeIfAbsent(next, p -> new long[keys.length]);
+            int n = counts.merge(next, 1, Integer::sum);
+            batch[n - 1] = key;
+        }
+
+        Map<PeerInfo, CompletableFuture<BatchSearchResult>> pending = new LinkedHashMap<>();
+        for (Map.Entry<PeerInfo, long[]> e : byHop.entrySet()) {
+            long[] batch = Arrays.copyOf(e.getValue(), counts.get(e.getKey()));
+            pending.put(e.getKey(), PeerClient.batchSearchAsync(e.getKey(), batch, originId, hopCount));
+        }
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[pending.size()];
+        int n = 0;
+        for (CompletableFuture<BatchSearchResult> f : pending.values()) settled[n++] = f.handle((r, e) -> null);
+        return CompletableFuture.allOf(settled).thenApply(done -> {
+            for (Map.Entry<PeerInfo, CompletableFuture<BatchSearchResult>> e : pending.entrySet()) {
+                PeerInfo next = e.getKey();
+                try {
+                    result.merge(e.getValue().join());
+                } catch (CompletionException ex) {
+                    // Cabang gagal: key-nya dilaporkan tidak terselesaikan, cabang lain tetap jalan
+                    log("Batch: Node " + next.id + " gagal (" + ex.getCause() + ")");
+                    long[] batch = byHop.get(next);
+                    for (int i = 0; i < counts.get(next); i++) {
+                        result.add(BatchSearchResult.UNRESOLVED, batch[i], null);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    private static String names(FileEntry[] files) {
+        StringJoiner names = new StringJoiner(", ");
+        for (FileEntry f : files) names.add(f.filename);
+        return names.toString();
+    }
+
+    private void remember(long hash, SearchResult result) {
+        PeerInfo owner = findPeer(result.ownerId);
+        if (owner != null) lookupCache.put(hash, owner, result.files);
+    }
+
+    public PeerInfo findPeer(int id) {
+        for (PeerInfo p : peers) {
+            if (p.id == id) return p;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,41 @@
+package peer;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batas laju kirim sederhana untuk seluruh node: tiap pengirim memesan
+ * waktu kirim untuk byte-nya lalu menunggu sampai gilirannya.
+ * 0 = tanpa batas. Dipakai saat melayani chunk untuk download swarm.
+ */
+public class RateLimiter {
+    private final long bytesPerSec;
+    private long nextFree = System.nanoTime();
+
+    public RateLimiter(long bytesPerSec) {
+        this.bytesPerSec = bytesPerSec;
+    }
+
+    // mis. -Dp2p.uplink.bytesPerSec=10485760 untuk 10 MiB/s
+    public static RateLimiter fromSystemProperties() {
+        return new RateLimiter(Long.getLong("p2p.uplink.bytesPerSec", 0L));
+    }
+
+    public void acquire(long bytes) throws InterruptedIOException {
+        if (bytesPerSec <= 0) return;
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextFree < now) nextFree = now;
+            wait = nextFree - now;
+            nextFree += bytes * 1_000_000_000L / bytesPerSec;
+        }
+        if (wait <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}
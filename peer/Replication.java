@@ -0,0 +1,414 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replikasi k-way: setiap key disimpan di k successor-nya.
+ *
+ * - Tulis: upload ke semua replika paralel, selesai begitu W (write
+ *   quorum) replika mengonfirmasi; sisanya tetap jalan di background.
+ * - Baca: replika dengan in-flight paling sedikit ditanya dulu; kalau
+ *   belum menjawab dalam hedgeMs, replika lain ikut ditanya dan jawaban
+ *   FOUND pertama yang dipakai.
+ * - Anti-entropy: berkala (dan setiap anggota/status berubah) tiap node
+ *   mengirim nama, versi (waktu manifest disimpan) dan digest manifest
+ *   tiap file ke replika lain lewat SYNC. Replika menjawab file yang
+ *   belum ia punya atau yang salinannya lebih lama dan berbeda, lalu
+ *   file itu dikirim ulang. File yang tidak lagi menjadi tanggung jawab
+ *   node ini dihapus setelah semua replika memiliki manifest yang sama
+ *   atau lebih baru.
+ */
+public class Replication {
+    private final PeerNode node;
+    private final int replicas;
+    private final int writeQuorum;
+    private final long hedgeMs;
+    private final long antiEntropyMs;
+
+    private final ExecutorService writers = Executors.newCachedThreadPool(daemon("replica-writer"));
+    private ScheduledExecutorService repairLoop;
+    private final Object repairLock = new Object();
+
+    public Replication(PeerNode node, int replicas, int writeQuorum, long hedgeMs, long antiEntropyMs) {
+        this.node = node;
+        this.replicas = Math.max(1, replicas);
+        this.writeQuorum = Math.max(1, Math.min(writeQuorum, this.replicas));
+        this.hedgeMs = hedgeMs;
+        this.antiEntropyMs = antiEntropyMs;
+    }
+
+    // Konfigurasi dari system property, mis. -Dp2p.replicas=5 -Dp2p.writeQuorum=3
+    public static Replication fromSystemProperties(PeerNode node) {
+        int k = Integer.getInteger("p2p.replicas", 3);
+        return new Replication(
+                node,
+                k,
+                Integer.getInteger("p2p.writeQuorum", k / 2 + 1),
+                Long.getLong("p2p.read.hedgeMs", 50L),
+                Long.getLong("p2p.antiEntropyMs", 10_000L));
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public int getWriteQuorum() {
+        return writeQuorum;
+    }
+
+    public synchronized void start() {
+        repairLoop = Executors.newSingleThreadScheduledExecutor(daemon("anti-entropy"));
+        repairLoop.scheduleWithFixedDelay(this::repairQuietly, antiEntropyMs, antiEntropyMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (repairLoop != null) repairLoop.shutdownNow();
+        writers.shutdown();
+    }
+
+    // Minta satu putaran repair secepatnya (mis. node kembali hidup)
+    public void requestRepair() {
+        ScheduledExecutorService loop = repairLoop;
+        if (loop != null && !loop.isShutdown()) loop.execute(this::repairQuietly);
+    }
+
+    public static boolean contains(List<PeerInfo> peers, int id) {
+        for (PeerInfo p : peers) {
+            if (p.id == id) return true;
+        }
+        return false;
+    }
+
+    // ---- tulis ----
+
+    public static class WriteResult {
+        // id node yang sudah mengonfirmasi saat quorum tercapai
+        public final List<Integer> acked;
+        // byte mentah vs di kabel ke replika remote yang sudah selesai; replika lokal tidak dihitung
+        public final ChunkCodec.Stats compression;
+
+        WriteResult(List<Integer> acked, ChunkCodec.Stats compression) {
+            this.acked = acked;
+            this.compression = compression;
+        }
+    }
+
+    /**
+     * Simpan file ke k replika key-nya. Kembali setelah writeQuorum replika
+     * berhasil, atau IOException kalau quorum tidak mungkin tercapai.
+     */
+    public WriteResult store(File file, int senderId, FileTransfer.Listener listener) throws IOException {
+        long hash = KeySpace.hash(file.getName());
+        List<PeerInfo> targets = node.fingerTable.replicas(hash, replicas);
+        int quorum = Math.min(writeQuorum, targets.size());
+
+        List<Integer> acked = Collections.synchronizedList(new ArrayList<>());
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        ChunkCodec.Stats compression = new ChunkCodec.Stats();
+        AtomicInteger finished = new AtomicInteger();
+        CompletableFuture<Void> quorumReached = new CompletableFuture<>();
+        double[] progress = new double[targets.size()];
+        long size = file.length();
+        Manifest manifest = Chunker.chunk(file);    // sekali untuk semua replika
+
+        for (int i = 0; i < targets.size(); i++) {
+            PeerInfo target = targets.get(i);
+            int slot = i;
+            FileTransfer.Listener perReplica = (done, total) -> {
+                // progress gabungan = rata-rata semua replika; total per replika bisa beda karena dedup
+                synchronized (progress) {
+                    progress[slot] = total == 0 ? 1 : (double) done / total;
+                    double sum = 0;
+                    for (double p : progress) sum += p;
+                    listener.onProgress((long) (sum / progress.length * size), size);
+                }
+            };
+            writers.execute(() -> {
+                try {
+                    if (target.id == node.myId) {
+                        storeLocal(file);
+                        perReplica.onProgress(size, size);
+                    } else {
+                        ChunkCodec.Stats sent = PeerClient.upload(target, file, manifest, senderId, node.codec, perReplica);
+                        compression.add(sent.rawBytes(), sent.wireBytes());
+                        node.compression.add(sent.rawBytes(), sent.wireBytes());
+                    }
+                    acked.add(target.id);
+                    if (acked.size() >= quorum) quorumReached.complete(null);
+                } catch (IOException e) {
+                    errors.add("Node " + target.id + ": " + e.getMessage());
+                    node.log("Replikasi: gagal menulis " + file.getName() + " ke Node " + target.id + ": " + e.getMessage());
+                }
+                if (finished.incrementAndGet() == targets.size() && !quorumReached.isDone()) {
+                    quorumReached.completeExceptionally(new IOException(
+                            "Write quorum " + quorum + "/" + targets.size() + " tidak tercapai: " + errors));
+                }
+            });
+        }
+
+        try {
+            quorumReached.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        }
+        synchronized (acked) {
+            return new WriteResult(new ArrayList<>(acked), compression);
+        }
+    }
+
+    void storeLocal(File file) throws IOException {
+        Manifest manifest = node.chunks.importFile(file);
+        node.chunks.saveManifest(file.getName(), manifest);
+        node.indexFile(file.getName(), manifest.size);
+    }
+
+    // ---- baca ----
+
+    /**
+     * Tanya replika secara hedged dengan flag localOnly (replika menjawab
+     * dari indeksnya sendiri, tidak meneruskan). Hasil FOUND pertama
+     * menang; kalau semua NOT_FOUND, jawaban replika pertama yang dipakai.
+     * Tidak ada thread yang menunggu: hedge berikutnya dijadwalkan dari
+     * timeout future.
+     */
+    CompletableFuture<SearchResult> read(List<PeerInfo> candidates, long hash, int originId, int hopCount, int flags) {
+        List<PeerInfo> order = new ArrayList<>(candidates);
+        order.sort(Comparator.comparingInt(PeerClient.POOL::inFlight));   // paling sedikit beban dulu
+
+        CompletableFuture<SearchResult> found = new CompletableFuture<>();
+        List<CompletableFuture<SearchResult>> sent = new ArrayList<>();
+        CompletableFuture<SearchResult> result = new CompletableFuture<>();
+        hedge(order, sent, found, result, hash, originId, hopCount, flags);
+        return result;
+    }
+
+    // Kirim ke replika berikutnya, lalu tunggu jawaban, semua gagal/NOT_FOUND, atau hedgeMs
+    private void hedge(List<PeerInfo> order, List<CompletableFuture<SearchResult>> sent,
+                       CompletableFuture<SearchResult> found, CompletableFuture<SearchResult> result,
+                       long hash, int originId, int hopCount, int flags) {
+        List<CompletableFuture<SearchResult>> snapshot;
+        synchronized (sent) {
+            sent.add(send(order.get(sent.size()), hash, originId, hopCount, flags, found));
+            snapshot = new ArrayList<>(sent);
+        }
+        CompletableFuture<Void> settled = all(snapshot);
+        CompletableFuture.anyOf(found, settled)
+                .completeOnTimeout(null, hedgeMs, TimeUnit.MILLISECONDS)
+                .whenComplete((r, e) -> {
+                    synchronized (sent) {
+                        if (result.isDone() || sent.size() > snapshot.size()) return;
+                        if (!found.isDone() && sent.size() < order.size()) {
+                            if (!settled.isDone()) {
+                                // belum ada jawaban: hedge ke replika berikutnya
+                                hedge(order, sent, found, result, hash, originId, hopCount, flags);
+                                return;
+                            }
+                            // replika yang ditanya sudah menjawab NOT_FOUND/gagal: tanya sisanya sekaligus
+                            while (sent.size() < order.size()) {
+                                sent.add(send(order.get(sent.size()), hash, originId, hopCount, flags, found));
+                            }
+                        }
+                        finish(order, new ArrayList<>(sent), found, result, hash);
+                    }
+                });
+    }
+
+    private void finish(List<PeerInfo> order, List<CompletableFuture<SearchResult>> sent,
+                        CompletableFuture<SearchResult> found, CompletableFuture<SearchResult> result, long hash) {
+        CompletableFuture.anyOf(found, all(sent)).whenComplete((r, e) -> {
+            if (found.isDone()) {
+                result.complete(found.join());
+                return;
+            }
+            IOException last = null;
+            for (int i = 0; i < sent.size(); i++) {
+                try {
+                    result.complete(sent.get(i).join());
+                    return;
+                } catch (CompletionException ex) {
+                    last = PeerConnection.unwrap(ex, order.get(i));
+                }
+            }
+            result.completeExceptionally(last != null ? last : new IOException("Tidak ada replika untuk " + KeySpace.format(hash)));
+        });
+    }
+
+    private CompletableFuture<SearchResult> send(PeerInfo replica, long hash, int originId, int hopCount,
+                                                 int flags, CompletableFuture<SearchResult> found) {
+        CompletableFuture<SearchResult> f = PeerClient.forwardSearchAsync(replica, hash, originId, hopCount,
+                flags | SearchResult.LOCAL_ONLY);
+        f.whenComplete((result, error) -> {
+            if (error != null && !(PeerConnection.unwrap(error, replica) instanceof PeerClient.RemoteError)) {
+                node.detector.suspect(replica);
+            }
+            if (result != null && result.isFound()) found.complete(result);
+        });
+        return f;
+    }
+
+    private static CompletableFuture<Void> all(List<CompletableFuture<SearchResult>> futures) {
+        // selesai saat semua selesai, termasuk yang gagal
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[futures.size()];
+        for (int i = 0; i < settled.length; i++) settled[i] = futures.get(i).handle((r, e) -> null);
+        return CompletableFuture.allOf(settled);
+    }
+
+    // ---- anti-entropy ----
+
+    /** Salinan file di satu node: nama, versi manifest dan digest-nya. */
+    public static final class Copy {
+        public final String name;
+        public final long version;
+        public final byte[] digest;
+
+        Copy(String name, long version, byte[] digest) {
+            this.name = name;
+            this.version = version;
+            this.digest = digest;
+        }
+
+        /**
+         * true kalau salinan ini perlu diganti other. Versi berasal dari jam
+         * node masing-masing; versi yang sama diputus dengan digest supaya
+         * dua replika tidak saling menimpa bolak-balik.
+         */
+        boolean staleAgainst(Copy other) {
+            if (Arrays.equals(digest, other.digest)) return false;
+            if (version != other.version) return version < other.version;
+            return Arrays.compare(digest, other.digest) < 0;
+        }
+    }
+
+    // null kalau node ini tidak memegang file itu
+    Copy localCopy(String name) throws IOException {
+        if (!node.hasFile(name)) return null;
+        Manifest manifest = node.chunks.manifest(name);
+        if (manifest == null) return null;
+        return new Copy(name, node.chunks.version(name), manifest.digest());
+    }
+
+    private void repairQuietly() {
+        try {
+            repair();
+        } catch (Exception e) {
+            node.log("Anti-entropy: " + e);
+        }
+    }
+
+    void repair() {
+        synchronized (repairLock) {
+            FingerTable table = node.fingerTable;
+            if (table == null) return;
+
+            // salinan yang seharusnya dimiliki tiap replika lain
+            Map<PeerInfo, List<Copy>> expected = new LinkedHashMap<>();
+            List<FileEntry> handOff = new ArrayList<>();
+            Set<String> incomplete = new HashSet<>();
+            for (FileEntry f : node.localFiles.snapshot()) {
+                Copy copy;
+                try {
+                    copy = localCopy(f.filename);
+                } catch (IOException e) {
+                    node.log("Anti-entropy: manifest " + f.filename + " tidak terbaca: " + e.getMessage());
+                    copy = null;
+                }
+                if (copy == null) {
+                    incomplete.add(f.filename);
+                    continue;
+                }
+                List<PeerInfo> owners = table.replicas(f.hash, replicas);
+                if (!contains(owners, node.myId)) handOff.add(f);
+                for (PeerInfo p : owners) {
+                    if (p.id != node.myId) expected.computeIfAbsent(p, x -> new ArrayList<>()).add(copy);
+                }
+            }
+
+            int pushed = 0;
+            for (Map.Entry<PeerInfo, List<Copy>> e : expected.entrySet()) {
+                PeerInfo peer = e.getKey();
+                List<String> missing;
+                try {
+                    missing = PeerClient.sync(peer, e.getValue());
+                } catch (IOException ex) {
+                    for (Copy c : e.getValue()) incomplete.add(c.name);
+                    continue;
+                }
+                for (String name : missing) {
+                    try {
+                        ChunkCodec.Stats sent = PeerClient.uploadStored(peer, node.chunks, name, node.myId,
+                                node.codec, FileTransfer.NO_PROGRESS);
+                        node.compression.add(sent.rawBytes(), sent.wireBytes());
+                        pushed++;
+                    } catch (IOException ex) {
+                        incomplete.add(name);
+                        node.log("Anti-entropy: gagal mengirim " + name + " ke Node " + peer.id + ": " + ex.getMessage());
+                    }
+                }
+            }
+
+            // Bukan replika lagi: hapus kalau semua replika sudah punya salinan yang sama atau lebih baru
+            for (FileEntry f : handOff) {
+                if (incomplete.contains(f.filename)) continue;
+                node.unregisterFile(f.filename);
+                try {
+                    node.chunks.delete(f.filename);
+                } catch (IOException e) {
+                    node.log("Anti-entropy: gagal menghapus manifest " + f.filename + ": " + e.getMessage());
+                }
+                node.log("Anti-entropy: " + f.filename + " diserahkan ke replika barunya");
+            }
+            if (pushed > 0) node.log("Anti-entropy: " + pushed + " salinan replika diperbaiki");
+
+            // Chunk yang tidak lagi dipakai file mana pun
+            List<String> names = new ArrayList<>();
+            for (FileEntry f : node.localFiles.snapshot()) names.add(f.filename);
+            try {
+                int removed = node.chunks.gcIfNeeded(names);
+                if (removed > 0) node.log("ChunkStore: " + removed + " chunk yatim dibuang");
+            } catch (IOException e) {
+                node.log("ChunkStore: gc gagal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * SYNC: dari daftar nama (opsional diikuti versi + digest tiap nama),
+     * balas yang belum ada di node ini atau yang salinan lokalnya kalah
+     * dari salinan pengirim. Tanpa versi (peer lama) hanya nama yang
+     * dibandingkan.
+     */
+    void handleSync(Payload.Reader r, Payload.Writer reply) throws IOException {
+        int n = r.readCount(4);
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) names[i] = r.readString();
+        boolean versioned = r.hasRemaining();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            Copy theirs = versioned ? new Copy(name, r.readLong(), r.readBytes()) : null;
+            Copy ours;
+            try {
+                ours = localCopy(name);
+            } catch (StreamCorruptedException e) {
+                ours = null;        // manifest rusak: minta dikirim ulang
+            }
+            if (ours == null || (theirs != null && ours.staleAgainst(theirs))) missing.add(name);
+        }
+        reply.writeByte(Frame.STATUS_OK).writeInt(missing.size());
+        for (String name : missing) reply.writeString(name);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
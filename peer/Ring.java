@@ -0,0 +1,196 @@
+package peer;
+
+import common.*;
+import java.util.*;
+
+/**
+ * Snapshot ring yang tidak pernah berubah: key posisi terurut (unsigned)
+ * di array primitif, dengan PeerInfo dan id pemiliknya di array paralel.
+ * Membership membangun snapshot baru dengan versi naik setiap kali anggota
+ * atau status hidup berubah, lalu mempublikasikannya sekaligus lewat
+ * {@link PeerNode#fingerTable}; pembaca tidak mengunci dan tidak menyalin.
+ *
+ * Tiap anggota menempati capacity * vnode posisi (lihat
+ * {@link KeySpace#vnodeKey}); posisi ke-0 adalah key peer itu sendiri.
+ * size() dan get(i) bekerja per posisi, members() per node fisik.
+ *
+ * successor/predecessor O(log P) tanpa alokasi. Urutan ring (key, id):
+ * dua posisi dengan key yang sama (mungkin kalau dht.bits kecil) tetap
+ * punya urutan yang sama di semua node.
+ */
+public final class Ring {
+    public final long version;
+    // key ^ Long.MIN_VALUE: urutan unsigned jadi urutan signed biasa, jadi cukup < di binary search
+    private final long[] keys;
+    private final int[] ids;
+    private final PeerInfo[] peers;
+    // Node fisik, terurut menurut posisi utamanya
+    private final PeerInfo[] hosts;
+
+    public Ring(long version, Collection<PeerInfo> members) {
+        this(version, members, KeySpace.VNODES);
+    }
+
+    // vnodes: posisi per satuan kapasitas; harus sama di semua node
+    public Ring(long version, Collection<PeerInfo> members, int vnodes) {
+        this.version = version;
+        PeerInfo[] sorted = members.toArray(new PeerInfo[0]);
+        Arrays.sort(sorted, Ring::compare);
+        // id ganda (entry lama dan baru untuk node yang sama) cukup sekali
+        int n = 0;
+        for (PeerInfo p : sorted) {
+            if (n > 0 && sorted[n - 1].id == p.id && sorted[n - 1].key == p.key) continue;
+            sorted[n++] = p;
+        }
+        this.hosts = Arrays.copyOf(sorted, n);
+
+        int total = 0;
+        for (PeerInfo p : hosts) total += KeySpace.vnodes(p.capacity, vnodes);
+        long[] posKeys = new long[total];
+        PeerInfo[] owners = new PeerInfo[total];
+        int k = 0;
+        for (PeerInfo p : hosts) {
+            for (int j = 0, v = KeySpace.vnodes(p.capacity, vnodes); j < v; j++) {
+                posKeys[k] = KeySpace.vnodeKey(p.ip, p.port, j);
+                owners[k++] = p;
+            }
+        }
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int c = KeySpace.compare(posKeys[a], posKeys[b]);
+            return c != 0 ? c : Integer.compare(owners[a].id, owners[b].id);
+        });
+
+        this.peers = new PeerInfo[total];
+        this.keys = new long[total];
+        this.ids = new int[total];
+        for (int i = 0; i < total; i++) {
+            peers[i] = owners[order[i]];
+            keys[i] = posKeys[order[i]] ^ Long.MIN_VALUE;
+            ids[i] = peers[i].id;
+        }
+    }
+
+    private static int compare(PeerInfo a, PeerInfo b) {
+        int c = KeySpace.compare(a.key, b.key);
+        return c != 0 ? c : Integer.compare(a.id, b.id);
+    }
+
+    // Jumlah posisi (virtual node), bukan jumlah node fisik
+    public int size() {
+        return peers.length;
+    }
+
+    public boolean isEmpty() {
+        return peers.length == 0;
+    }
+
+    // Pemilik posisi ke-i; dibungkus modulo ukuran ring, jadi get(-1) adalah posisi terakhir
+    public PeerInfo get(int i) {
+        return peers[Math.floorMod(i, peers.length)];
+    }
+
+    // Key posisi ke-i (unsigned), dibungkus seperti get(i)
+    public long keyAt(int i) {
+        return keys[Math.floorMod(i, keys.length)] ^ Long.MIN_VALUE;
+    }
+
+    // Pemilik posisi pertama dengan key >= key, wrap ke posisi terkecil; null kalau ring kosong
+    public PeerInfo successor(long key) {
+        int i = successorIndex(key);
+        return i < 0 ? null : peers[i];
+    }
+
+    // Pemilik posisi terakhir dengan key < key, wrap ke posisi terbesar
+    public PeerInfo predecessor(long key) {
+        int i = lowerBound(key);
+        return isEmpty() ? null : peers[i == 0 ? peers.length - 1 : i - 1];
+    }
+
+    public int successorIndex(long key) {
+        int i = lowerBound(key);
+        return i < peers.length ? i : (isEmpty() ? -1 : 0);
+    }
+
+    // Node fisik sesudah p searah ring, mulai dari posisi utamanya; p boleh bukan anggota (mis. baru mati)
+    public PeerInfo after(PeerInfo p) {
+        if (isEmpty()) return null;
+        int i = search(p.key, p.id);
+        int from = isAt(i, p) ? i + 1 : i;
+        for (int k = 0; k < peers.length; k++) {
+            PeerInfo q = get(from + k);
+            if (q.id != p.id) return q;
+        }
+        return get(from);
+    }
+
+    // Node fisik sebelum posisi utama p searah ring
+    public PeerInfo before(PeerInfo p) {
+        if (isEmpty()) return null;
+        int from = search(p.key, p.id) - 1;
+        for (int k = 0; k < peers.length; k++) {
+            PeerInfo q = get(from - k);
+            if (q.id != p.id) return q;
+        }
+        return get(from);
+    }
+
+    // Posisi utama p di ring, -1 kalau bukan anggota
+    public int indexOf(PeerInfo p) {
+        int i = search(p.key, p.id);
+        return isAt(i, p) ? i : -1;
+    }
+
+    private boolean isAt(int i, PeerInfo p) {
+        return i < peers.length && ids[i] == p.id && peers[i].key == p.key;
+    }
+
+    public boolean contains(PeerInfo p) {
+        return indexOf(p) >= 0;
+    }
+
+    // Anggota sama (per id dan kapasitas) dengan daftar lain, tanpa membangun set
+    public boolean sameMembers(Collection<PeerInfo> members) {
+        if (members.size() != hosts.length) return false;
+        for (PeerInfo p : members) {
+            int i = indexOf(p);
+            if (i < 0 || peers[i].capacity != p.capacity) return false;
+        }
+        return true;
+    }
+
+    // Node fisik, masing-masing sekali
+    public List<PeerInfo> members() {
+        return Collections.unmodifiableList(Arrays.asList(hosts));
+    }
+
+    // Indeks pertama dengan key posisi >= key; peers.length kalau tidak ada
+    private int lowerBound(long key) {
+        long k = key ^ Long.MIN_VALUE;
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < k) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Indeks pertama dengan (key, id) >= (key, id); key kembar jarang, cukup jalan maju
+    private int search(long key, int id) {
+        int i = lowerBound(key);
+        long k = key ^ Long.MIN_VALUE;
+        while (i < keys.length && keys[i] == k && ids[i] < id) i++;
+        return i;
+    }
+
+    // Node fisik searah posisi utamanya; vnode hanya dihitung
+    @Override
+    public String toString() {
+        StringJoiner j = new StringJoiner(" → ", "Ring v" + version + ": ", "");
+        for (PeerInfo p : hosts) j.add(String.valueOf(p.id));
+        return j + (peers.length != hosts.length ? " (" + peers.length + " posisi)" : "");
+    }
+}
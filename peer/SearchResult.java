@@ -0,0 +1,63 @@
+package peer;
+
+import common.*;
+import java.io.EOFException;
+
+/**
+ * Hasil FORWARD_SEARCH: node pemilik key, daftar file (null kalau key
+ * kosong), jumlah hop, dan jejak hop kalau lookup dilacak. Teks untuk
+ * ditampilkan dibuat dari field ini lewat message(), bukan dikirim.
+ */
+public class SearchResult {
+    // Flag request FORWARD_SEARCH
+    public static final int LOCAL_ONLY = 1;     // jawab dari indeks sendiri, jangan diteruskan
+    public static final int TRACE = 2;          // kembalikan jejak hop dan latensi per hop
+
+    public final long hash;
+    public final int ownerId;
+    public final String files;
+    public final int hops;
+    public final HopTrace trace;                // null kalau tidak dilacak
+
+    public SearchResult(long hash, int ownerId, String files, int hops, HopTrace trace) {
+        this.hash = hash;
+        this.ownerId = ownerId;
+        this.files = files;
+        this.hops = hops;
+        this.trace = trace;
+    }
+
+    public boolean isFound() {
+        return files != null;
+    }
+
+    // Salinan dengan node ini di depan jejak; node yang menjawab memulai jejak baru
+    SearchResult via(int nodeId, long elapsedMicros) {
+        HopTrace rest = trace != null ? trace : HopTrace.EMPTY;
+        return new SearchResult(hash, ownerId, files, hops, rest.prepend(nodeId, elapsedMicros));
+    }
+
+    // ownerId(4) | hops(4) | files | ada jejak(1) [| jejak]
+    void writeTo(Payload.Writer w) {
+        w.writeInt(ownerId).writeInt(hops).writeString(isFound() ? files : "");
+        w.writeByte(trace != null ? 1 : 0);
+        if (trace != null) trace.writeTo(w);
+    }
+
+    static SearchResult readFrom(long hash, Payload.Reader r) throws EOFException {
+        int ownerId = r.readInt();
+        int hops = r.readInt();
+        String files = r.readString();
+        HopTrace trace = r.readByte() != 0 ? HopTrace.readFrom(r) : null;
+        return new SearchResult(hash, ownerId, files.isEmpty() ? null : files, hops, trace);
+    }
+
+    public String message() {
+        String text = isFound()
+                ? "FOUND: " + files + " at Node " + ownerId
+                : "File with hash " + KeySpace.format(hash) + " not found at Node " + ownerId;
+        text += "\nHops: " + hops;
+        if (trace != null) text += "\nRoute: " + trace;
+        return text;
+    }
+}
@@ -0,0 +1,41 @@
+package peer;
+
+import java.io.IOException;
+
+/**
+ * Engine server yang bisa ditukar: menerima koneksi dan meneruskan
+ * request ke {@link ServerHandler}, dengan batas jumlah request yang
+ * diproses bersamaan (maxConcurrent).
+ *
+ * Pilih lewat -Dp2p.engine=nio|virtual dan -Dp2p.maxConcurrent=N.
+ */
+public interface ServerEngine {
+
+    // Bind ke port lalu mulai melayani di thread milik engine (tidak blocking)
+    void start(int port, ServerHandler handler) throws IOException;
+
+    void stop();
+
+    int getPort();
+
+    // Koneksi klien yang sedang terbuka (termasuk transfer dan sesi format lama)
+    int connections();
+
+    String name();
+
+    static ServerEngine create(String name, int maxConcurrent) {
+        switch (name) {
+            case "nio":
+                return new NioServerEngine(Integer.getInteger("p2p.workers", 8), maxConcurrent,
+                        Integer.getInteger("p2p.transferWorkers", 16), Integer.getInteger("p2p.transferQueue", 64));
+            case "virtual":
+                return new VirtualThreadServerEngine(maxConcurrent);
+            default:
+                throw new IllegalArgumentException("Unknown server engine: " + name);
+        }
+    }
+
+    static ServerEngine fromSystemProperties() {
+        return create(System.getProperty("p2p.engine", "nio"), Integer.getInteger("p2p.maxConcurrent", 256));
+    }
+}
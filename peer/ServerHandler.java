@@ -0,0 +1,40 @@
+package peer;
+
+import common.Frame;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Logika aplikasi yang dipanggil oleh {@link ServerEngine}.
+ * Engine hanya mengurus koneksi, framing dan thread.
+ */
+public interface ServerHandler {
+
+    // Satu frame request -> satu frame balasan
+    Frame handleFrame(Frame request);
+
+    /**
+     * Seperti handleFrame, tapi request yang menunggu node lain boleh
+     * dijawab nanti lewat future, supaya thread engine tidak ikut menunggu.
+     */
+    default CompletableFuture<Frame> handleFrameAsync(Frame request) {
+        return CompletableFuture.completedFuture(handleFrame(request));
+    }
+
+    /**
+     * Transfer file (lihat {@link Frame#isTransfer}). Channel sudah dalam
+     * mode blocking; prefix berisi byte body yang ikut terbaca bersama
+     * header frame. Handler menulis sendiri balasannya ke channel.
+     */
+    void handleTransfer(Frame request, ByteBuffer prefix, SocketChannel channel) throws IOException;
+
+    // Sesi ObjectStream format lama (blocking), satu perintah per koneksi
+    void handleLegacy(InputStream in, OutputStream out) throws IOException;
+
+    // Masalah di sisi engine (transfer ditolak, koneksi gagal)
+    default void log(String message) {
+        System.out.println(message);
+    }
+}
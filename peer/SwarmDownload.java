@@ -0,0 +1,403 @@
+package peer;
+
+import common.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Download paralel dari semua replika yang memegang file (swarm).
+ *
+ * File dibagi menjadi range berisi beberapa chunk utuh (sekitar
+ * rangeBytes), sehingga tiap range bisa diverifikasi dengan id chunk di
+ * manifest. Satu worker per sumber mengambil range dari antrean
+ * bersama: sumber yang cepat otomatis mengambil lebih banyak. Range yang
+ * gagal dikembalikan ke antrean; range yang macet lebih dari stallMs
+ * ikut diambil worker lain yang menganggur, dan yang selesai duluan
+ * dipakai. Chunk yang sudah ada di chunk store lokal tidak diunduh.
+ *
+ * Hasil ditulis langsung ke posisinya di file tujuan.part yang sudah
+ * dialokasikan sepanjang ukuran file, lalu di-rename ke tujuan setelah
+ * semua chunk lengkap. Download yang gagal meninggalkan .part-nya: saat
+ * diulang, chunk di .part yang isinya cocok dengan id di manifest tidak
+ * diunduh lagi.
+ */
+public class SwarmDownload {
+    private final PeerNode node;
+    private final int rangeBytes;
+    private final int maxSources;
+    private final long stallMs;
+
+    public SwarmDownload(PeerNode node, int rangeBytes, int maxSources, long stallMs) {
+        this.node = node;
+        this.rangeBytes = rangeBytes;
+        this.maxSources = maxSources;
+        this.stallMs = stallMs;
+    }
+
+    // Konfigurasi dari system property, mis. -Dp2p.swarm.maxSources=4
+    public static SwarmDownload fromSystemProperties(PeerNode node) {
+        return new SwarmDownload(
+                node,
+                Integer.getInteger("p2p.swarm.rangeBytes", 1 << 20),
+                Integer.getInteger("p2p.swarm.maxSources", 8),
+                Long.getLong("p2p.swarm.stallMs", 2_000L));
+    }
+
+    public static class Result {
+        public final long size;
+        public final long millis;
+        // byte yang diunduh per node; 0 = node ini sendiri (chunk lokal)
+        public final Map<Integer, Long> bytesPerSource;
+        // chunk dari jaringan saja, termasuk duplikat range yang diambil dua sumber
+        public final ChunkCodec.Stats compression;
+        // byte yang sudah ada di .part dari download sebelumnya yang terputus
+        public final long resumedBytes;
+
+        Result(long size, long millis, Map<Integer, Long> bytesPerSource, ChunkCodec.Stats compression,
+               long resumedBytes) {
+            this.size = size;
+            this.millis = millis;
+            this.bytesPerSource = bytesPerSource;
+            this.compression = compression;
+            this.resumedBytes = resumedBytes;
+        }
+    }
+
+    private static final class Range {
+        final int from;
+        final int to;           // eksklusif
+        final long bytes;
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger fetchers = new AtomicInteger();
+        volatile long startedAt;
+
+        Range(int from, int to, long bytes) {
+            this.from = from;
+            this.to = to;
+            this.bytes = bytes;
+        }
+    }
+
+    public Result download(String filename, File dest, FileTransfer.Listener listener) throws IOException {
+        long t0 = System.currentTimeMillis();
+        long hash = KeySpace.hash(filename);
+
+        // Kandidat: replika menurut finger table + pemilik yang ditemukan routing
+        Set<PeerInfo> candidates = new LinkedHashSet<>(node.fingerTable.replicas(hash, node.replication.getReplicas()));
+        SearchResult found = node.routeSearch(hash, node.myId, 0, 0);
+        PeerInfo owner = node.findPeer(found.ownerId);
+        if (owner != null) candidates.add(owner);
+
+        Map<PeerInfo, Manifest> manifests = fetchManifests(candidates, filename);
+        Manifest manifest = pickManifest(manifests);
+        if (manifest == null) {
+            if (owner == null || !found.isFound()) throw new FileNotFoundException(filename + " tidak ditemukan di ring");
+            // Tidak ada sumber yang mendukung GET_MANIFEST: unduh utuh dari pemilik
+            if (!PeerClient.download(owner, filename, dest, listener)) throw new FileNotFoundException(filename);
+            ChunkCodec.Stats raw = new ChunkCodec.Stats();
+            raw.add(dest.length(), dest.length());
+            return new Result(dest.length(), System.currentTimeMillis() - t0, Map.of(owner.id, dest.length()), raw, 0);
+        }
+
+        List<PeerInfo> sources = new ArrayList<>();
+        for (Map.Entry<PeerInfo, Manifest> e : manifests.entrySet()) {
+            if (sameContent(e.getValue(), manifest) && sources.size() < maxSources) sources.add(e.getKey());
+        }
+        node.log("Swarm: " + filename + " (" + manifest.size + " byte, " + manifest.count() + " chunk) dari Node "
+                + ids(sources));
+
+        dest.getAbsoluteFile().getParentFile().mkdirs();
+        File part = FileTransfer.partFile(dest);
+        Result result;
+        try (RandomAccessFile raf = new RandomAccessFile(part, "rw")) {
+            long existing = raf.length();
+            raf.setLength(manifest.size);
+            result = new Job(manifest, raf.getChannel(), existing, sources, listener, t0).run();
+        }
+        FileTransfer.commit(part, dest);
+        return result;
+    }
+
+    // GET_MANIFEST paralel ke semua kandidat yang hidup
+    private Map<PeerInfo, Manifest> fetchManifests(Collection<PeerInfo> candidates, String filename) {
+        Map<PeerInfo, CompletableFuture<Manifest>> pending = new LinkedHashMap<>();
+        for (PeerInfo p : candidates) {
+            if (p.id == node.myId || !node.isNodeActive(p)) continue;
+            pending.put(p, PeerClient.getManifestAsync(p, filename));
+        }
+        Map<PeerInfo, Manifest> result = new LinkedHashMap<>();
+        for (Map.Entry<PeerInfo, CompletableFuture<Manifest>> e : pending.entrySet()) {
+            try {
+                Manifest m = e.getValue().join();
+                if (m != null) result.put(e.getKey(), m);
+            } catch (CompletionException ex) {
+                // sumber ini tidak dipakai
+            }
+        }
+        return result;
+    }
+
+    // Versi yang dipegang paling banyak sumber (replika bisa sementara berbeda versi)
+    private static Manifest pickManifest(Map<PeerInfo, Manifest> manifests) {
+        Manifest best = null;
+        int bestVotes = 0;
+        for (Manifest m : manifests.values()) {
+            int votes = 0;
+            for (Manifest other : manifests.values()) {
+                if (sameContent(m, other)) votes++;
+            }
+            if (votes > bestVotes) {
+                best = m;
+                bestVotes = votes;
+            }
+        }
+        return best;
+    }
+
+    private static boolean sameContent(Manifest a, Manifest b) {
+        if (a.size != b.size || a.count() != b.count()) return false;
+        for (int i = 0; i < a.count(); i++) {
+            if (!Arrays.equals(a.id(i), b.id(i))) return false;
+        }
+        return true;
+    }
+
+    private static String ids(List<PeerInfo> peers) {
+        StringJoiner j = new StringJoiner(", ");
+        for (PeerInfo p : peers) j.add(String.valueOf(p.id));
+        return j.toString();
+    }
+
+    // ---- satu download ----
+
+    private final class Job {
+        final Manifest manifest;
+        final FileChannel out;
+        final long existing;        // panjang .part sebelum download ini
+        final List<PeerInfo> sources;
+        final FileTransfer.Listener listener;
+        final long t0;
+
+        final ConcurrentLinkedDeque<Range> queue = new ConcurrentLinkedDeque<>();
+        final List<Range> ranges = new ArrayList<>();
+        final AtomicLong done = new AtomicLong();
+        final AtomicInteger remaining = new AtomicInteger();
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+        final Map<Integer, Long> bytesPerSource = new ConcurrentHashMap<>();
+        final ChunkCodec.Stats compression = new ChunkCodec.Stats();
+        long resumed;
+        final Set<SocketChannel> open = ConcurrentHashMap.newKeySet();
+
+        Job(Manifest manifest, FileChannel out, long existing, List<PeerInfo> sources, FileTransfer.Listener listener,
+            long t0) {
+            this.manifest = manifest;
+            this.out = out;
+            this.existing = existing;
+            this.sources = sources;
+            this.listener = listener;
+            this.t0 = t0;
+        }
+
+        Result run() throws IOException {
+            copyLocalAndPlan();
+            if (remaining.get() == 0) finished.complete(null);
+            if (!finished.isDone() && sources.isEmpty()) {
+                throw new IOException("Tidak ada sumber untuk " + remaining.get() + " range");
+            }
+
+            ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, sources.size()), r -> {
+                Thread t = new Thread(r, "swarm-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            AtomicInteger alive = new AtomicInteger(sources.size());
+            for (PeerInfo source : sources) {
+                workers.execute(() -> {
+                    try {
+                        work(source);
+                    } finally {
+                        // Semua sumber menyerah sebelum selesai: gagal
+                        if (alive.decrementAndGet() == 0 && remaining.get() > 0) {
+                            finished.completeExceptionally(new IOException(
+                                    remaining.get() + " range tidak bisa diunduh dari sumber mana pun"));
+                        }
+                    }
+                });
+            }
+
+            try {
+                finished.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw (IOException) e.getCause();
+            } finally {
+                // Duplikat range yang masih berjalan tidak diperlukan lagi
+                for (SocketChannel ch : open) closeQuietly(ch);
+                workers.shutdownNow();
+            }
+            out.force(false);
+            return new Result(manifest.size, System.currentTimeMillis() - t0, new TreeMap<>(bytesPerSource),
+                    compression, resumed);
+        }
+
+        // Chunk yang sudah benar di .part atau ada di node ini tidak diunduh; sisanya dikelompokkan per range
+        void copyLocalAndPlan() throws IOException {
+            byte[] buf = existing > 0 ? new byte[Chunker.MAX] : null;
+            int from = -1;
+            long bytes = 0;
+            for (int i = 0; i < manifest.count(); i++) {
+                if (alreadyWritten(i, buf) || node.chunks.has(manifest.id(i)) && copyLocal(i)) {
+                    if (from >= 0) addRange(from, i, bytes);
+                    from = -1;
+                    bytes = 0;
+                    continue;
+                }
+                if (from < 0) from = i;
+                bytes += manifest.length(i);
+                if (bytes >= rangeBytes) {
+                    addRange(from, i + 1, bytes);
+                    from = -1;
+                    bytes = 0;
+                }
+            }
+            if (from >= 0) addRange(from, manifest.count(), bytes);
+        }
+
+        // Sisa download sebelumnya: dipakai hanya kalau isinya cocok dengan id chunk
+        boolean alreadyWritten(int i, byte[] buf) throws IOException {
+            int len = manifest.length(i);
+            if (buf == null || manifest.offset(i) + len > existing) return false;
+            FileTransfer.readRange(out, manifest.offset(i), buf, len);
+            if (!Arrays.equals(manifest.id(i), Chunker.id(buf, 0, len))) return false;
+            resumed += len;
+            progress(len);
+            return true;
+        }
+
+        boolean copyLocal(int i) {
+            try (FileChannel fc = FileChannel.open(node.chunks.chunkPath(manifest.id(i)))) {
+                long pos = manifest.offset(i);
+                long end = pos + manifest.length(i);
+                while (pos < end) pos += out.transferFrom(fc, pos, end - pos);
+            } catch (IOException e) {
+                return false;       // chunk lokal hilang/rusak: unduh saja
+            }
+            bytesPerSource.merge(0, (long) manifest.length(i), Long::sum);
+            progress(manifest.length(i));
+            return true;
+        }
+
+        void addRange(int from, int to, long bytes) {
+            Range r = new Range(from, to, bytes);
+            ranges.add(r);
+            queue.add(r);
+            remaining.incrementAndGet();
+        }
+
+        void work(PeerInfo source) {
+            int failures = 0;
+            while (!finished.isDone() && failures < 3) {
+                Range r = queue.poll();
+                if (r == null) r = stalled();
+                if (r == null) {
+                    sleep(20);
+                    continue;
+                }
+                if (r.done.get()) continue;
+
+                r.fetchers.incrementAndGet();
+                r.startedAt = System.currentTimeMillis();
+                try {
+                    fetch(source, r);
+                    failures = 0;
+                    if (r.done.compareAndSet(false, true)) {
+                        bytesPerSource.merge(source.id, r.bytes, Long::sum);
+                        progress(r.bytes);
+                        if (remaining.decrementAndGet() == 0) finished.complete(null);
+                    }
+                } catch (IOException e) {
+                    failures++;
+                    if (!finished.isDone()) {
+                        node.log("Swarm: range " + r.from + "-" + r.to + " dari Node " + source.id
+                                + " gagal (" + e.getMessage() + ")");
+                    }
+                    if (!r.done.get()) queue.addFirst(r);      // ambil sumber lain secepatnya
+                    sleep(50L * failures);
+                } finally {
+                    r.fetchers.decrementAndGet();
+                }
+            }
+        }
+
+        // Range yang sedang diambil sumber lain tapi terlalu lama; maksimal dua pengambil sekaligus
+        Range stalled() {
+            long now = System.currentTimeMillis();
+            Range slowest = null;
+            for (Range r : ranges) {
+                if (r.done.get() || r.fetchers.get() != 1 || now - r.startedAt < stallMs) continue;
+                if (slowest == null || r.startedAt < slowest.startedAt) slowest = r;
+            }
+            return slowest;
+        }
+
+        void fetch(PeerInfo source, Range r) throws IOException {
+            PeerClient.ChunkStream stream = PeerClient.openChunks(source, manifest, r.from, r.to);
+            SocketChannel ch = stream.channel;
+            open.add(ch);
+            try {
+                byte[] buf = new byte[maxLength(r)];
+                for (int i = r.from; i < r.to; i++) {
+                    int len = manifest.length(i);
+                    if (stream.framed) {
+                        compression.add(len, ChunkCodec.readChunk(stream.in, null, buf, len));
+                    } else {
+                        FileTransfer.readFully(stream.in, null, buf, len);
+                        compression.add(len, len);
+                    }
+                    if (!Arrays.equals(manifest.id(i), Chunker.id(buf, 0, len))) {
+                        throw new IOException("chunk " + i + " rusak");
+                    }
+                    if (r.done.get()) return;       // sumber lain sudah menyelesaikan range ini
+                    ByteBuffer data = ByteBuffer.wrap(buf, 0, len);
+                    long pos = manifest.offset(i);
+                    while (data.hasRemaining()) pos += out.write(data, pos);
+                }
+            } finally {
+                open.remove(ch);
+                closeQuietly(ch);
+            }
+        }
+
+        int maxLength(Range r) {
+            int max = 0;
+            for (int i = r.from; i < r.to; i++) max = Math.max(max, manifest.length(i));
+            return max;
+        }
+
+        void progress(long bytes) {
+            listener.onProgress(done.addAndGet(bytes), manifest.size);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(SocketChannel ch) {
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
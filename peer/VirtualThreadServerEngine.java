@@ -0,0 +1,202 @@
+package peer;
+
+import common.Frame;
+import common.Payload;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Satu virtual thread per koneksi dan per request (JDK 21+). Kode tetap
+ * blocking dan sederhana, tapi ribuan koneksi tidak memakan ribuan
+ * thread OS. Semaphore maxConcurrent membatasi request yang diproses
+ * bersamaan; pembaca koneksi ikut menunggu sehingga ada backpressure.
+ *
+ * Di JDK lama engine ini jatuh ke cached thread pool biasa.
+ */
+public class VirtualThreadServerEngine implements ServerEngine {
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private ServerHandler handler;
+    private ServerSocketChannel server;
+    private ExecutorService executor;
+    private boolean virtual;
+    private volatile boolean running;
+
+    public VirtualThreadServerEngine(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public void start(int port, ServerHandler handler) throws IOException {
+        this.handler = handler;
+        executor = newVirtualThreadExecutor();
+        virtual = executor != null;
+        if (!virtual) {
+            System.out.println("⚠️ Virtual thread butuh JDK 21+, memakai thread pool biasa");
+            executor = Executors.newCachedThreadPool();
+        }
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        running = true;
+
+        Thread acceptor = new Thread(this::acceptLoop, "vthread-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() lewat refleksi agar tetap bisa dikompilasi di JDK 17
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (server != null) server.close();
+        } catch (IOException ignored) {
+        }
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Override
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override
+    public int connections() {
+        return connections.get();
+    }
+
+    @Override
+    public String name() {
+        return (virtual ? "virtual" : "virtual(fallback=platform)") + "(maxConcurrent=" + maxConcurrent + ")";
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel ch = server.accept();
+                ch.socket().setTcpNoDelay(true);
+                executor.execute(() -> serve(ch));
+            } catch (IOException e) {
+                if (running) handler.log("Virtual: accept gagal: " + e);
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Transfer di koneksi yang masih menunggu balasan lain: balasan itu
+     * tetap dikirim, transfer dijawab error, lalu koneksi ditutup.
+     */
+    private void reject(Frame transfer, OutputStream out, AtomicInteger outstanding)
+            throws IOException, InterruptedException {
+        byte[] error = new Payload.Writer().writeByte(Frame.STATUS_ERROR)
+                .writeString("Transfer " + Frame.name(transfer.command()) + " harus memakai koneksi sendiri")
+                .toByteArray();
+        handler.log("Virtual: transfer " + Frame.name(transfer.command()) + " ditolak, koneksi masih dipakai request lain");
+        synchronized (out) {
+            transfer.reply(error).writeTo(out);
+            while (outstanding.get() > 0) out.wait();
+        }
+    }
+
+    private void serve(SocketChannel ch) {
+        connections.incrementAndGet();
+        try (SocketChannel c = ch) {
+            // Stream dari socket adaptor: baca dan tulis bisa jalan bersamaan
+            // (stream dari Channels.* mengunci blockingLock yang sama). Sengaja
+            // tanpa buffer agar body transfer tidak ikut tertelan saat membaca frame.
+            PushbackInputStream in = new PushbackInputStream(c.socket().getInputStream(), 2);
+            OutputStream out = c.socket().getOutputStream();
+            int b0 = in.read();
+            int b1 = in.read();
+            if (b1 < 0) return;
+            in.unread(b1);
+            in.unread(b0);
+
+            if (!Frame.isMagic(b0, b1)) {
+                permits.acquire();
+                try {
+                    c.socket().setSoTimeout(FileTransfer.TIMEOUT_MS);   // sesi diam tidak menahan permit
+                    handler.handleLegacy(in, out);
+                } finally {
+                    permits.release();
+                }
+                return;
+            }
+
+            // Balasan yang belum ditulis; dijaga oleh monitor out
+            AtomicInteger outstanding = new AtomicInteger();
+            Frame request;
+            while ((request = Frame.readFrom(in)) != null) {
+                Frame req = request;
+                if (Frame.isTransfer(req.command())) {
+                    if (outstanding.get() > 0) {
+                        reject(req, out, outstanding);
+                        return;
+                    }
+                    // Sisa koneksi milik transfer; body dibaca langsung dari channel
+                    permits.acquire();
+                    try {
+                        handler.handleTransfer(req, ByteBuffer.allocate(0), c);
+                    } finally {
+                        permits.release();
+                    }
+                    return;
+                }
+                permits.acquire();
+                outstanding.incrementAndGet();
+                executor.execute(() -> {
+                    CompletableFuture<Frame> reply;
+                    try {
+                        reply = handler.handleFrameAsync(req);
+                    } catch (RuntimeException e) {
+                        reply = CompletableFuture.failedFuture(e);
+                    } finally {
+                        // Menunggu node lain tidak memakan permit
+                        permits.release();
+                    }
+                    reply.whenComplete((frame, error) -> {
+                        if (error != null) {
+                            byte[] payload = new Payload.Writer().writeByte(Frame.STATUS_ERROR)
+                                    .writeString(String.valueOf(error.getMessage())).toByteArray();
+                            frame = req.reply(payload);
+                        }
+                        synchronized (out) {
+                            try {
+                                frame.writeTo(out);
+                            } catch (IOException e) {
+                                handler.log("Virtual: balasan " + Frame.name(req.command()) + " gagal dikirim: " + e.getMessage());
+                            } finally {
+                                outstanding.decrementAndGet();
+                                out.notifyAll();
+                            }
+                        }
+                    });
+                });
+            }
+        } catch (IOException e) {
+            // klien menutup koneksi
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package peer;
+
+import common.Payload;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trip file lewat chunk dan manifest, nama file dari jaringan tidak
+ * boleh keluar dari shared/, dan file mentah versi lama hanya diubah ke
+ * manifest oleh migrate() saat start.
+ */
+class ChunkStoreTest {
+    @TempDir
+    Path dir;
+
+    private AsyncLog log;
+    private ChunkStore store;
+
+    @BeforeEach
+    void open() {
+        log = new AsyncLog(dir.resolve("log.txt"), 1024, 1 << 20, 0, AsyncLog.Policy.DROP);
+        store = new ChunkStore(dir.resolve("chunks"), dir.resolve("shared"), 0, log);
+    }
+
+    @AfterEach
+    void close() {
+        log.close();
+    }
+
+    @Test
+    void fileRoundTripsThroughChunksAndManifest() throws Exception {
+        byte[] data = new byte[300_000];
+        new Random(7).nextBytes(data);
+        Manifest m = store.importStream(new ByteArrayInputStream(data));
+        assertEquals(data.length, m.size);
+        assertEquals(0, store.missing(m).length);
+        store.saveManifest("data.bin", m);
+
+        Manifest saved = store.manifest("data.bin");
+        assertEquals(m.count(), saved.count());
+        for (int i = 0; i < m.count(); i++) {
+            assertArrayEquals(m.id(i), saved.id(i));
+            assertEquals(m.length(i), saved.length(i));
+            assertEquals(m.offset(i), saved.offset(i));
+        }
+        assertArrayEquals(m.digest(), saved.digest());
+        assertArrayEquals(data, store.readAll("data.bin"));
+        assertTrue(store.version("data.bin") > 0);
+
+        Payload.Writer w = new Payload.Writer();
+        m.writeTo(w);
+        Manifest wire = Manifest.readFrom(new Payload.Reader(w.toByteArray()));
+        assertArrayEquals(m.digest(), wire.digest());
+
+        data[0] ^= 1;
+        assertFalse(Arrays.equals(m.digest(), store.importStream(new ByteArrayInputStream(data)).digest()));
+
+        store.delete("data.bin");
+        assertNull(store.manifest("data.bin"));
+        assertEquals(-1, store.version("data.bin"));
+    }
+
+    @Test
+    void corruptManifestIsRejected() {
+        byte[] data = new Payload.Writer().writeLong(10).writeInt(1)
+                .writeBytes(new byte[Chunker.ID_BYTES]).writeInt(Chunker.MAX + 1).toByteArray();
+        assertThrows(StreamCorruptedException.class, () -> Manifest.readFrom(new Payload.Reader(data)));
+
+        byte[] wrongSize = new Payload.Writer().writeLong(11).writeInt(1)
+                .writeBytes(new byte[Chunker.ID_BYTES]).writeInt(10).toByteArray();
+        assertThrows(StreamCorruptedException.class, () -> Manifest.readFrom(new Payload.Reader(wrongSize)));
+    }
+
+    @Test
+    void rejectsNamesOutsideSharedDir() throws Exception {
+        Path victim = dir.resolve("victim.txt");
+        Files.writeString(victim, "jangan disentuh");
+        Manifest m = store.importStream(new ByteArrayInputStream(new byte[100]));
+
+        for (String name : List.of("../victim.txt", "..", ".", "", "a/b", "a\\b", "/etc/passwd")) {
+            assertThrows(IOException.class, () -> store.manifest(name), name);
+            assertThrows(IOException.class, () -> store.saveManifest(name, m), name);
+            assertThrows(IOException.class, () -> store.delete(name), name);
+        }
+        assertEquals("jangan disentuh", Files.readString(victim));
+    }
+
+    @Test
+    void rawFilesAreMigratedOnlyAtStartup() throws Exception {
+        byte[] data = new byte[200_000];
+        new Random(3).nextBytes(data);
+        Files.createDirectories(dir.resolve("shared"));
+        Files.write(dir.resolve("shared").resolve("lama.bin"), data);
+
+        assertThrows(StreamCorruptedException.class, () -> store.manifest("lama.bin"));
+        assertArrayEquals(data, Files.readAllBytes(dir.resolve("shared").resolve("lama.bin")));
+
+        assertEquals(1, store.migrate());
+        assertEquals(data.length, store.manifest("lama.bin").size);
+        assertArrayEquals(data, store.readAll("lama.bin"));
+        assertEquals(0, store.migrate());
+    }
+}
@@ -0,0 +1,101 @@
+package peer;
+
+import common.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Frame dan Payload: round-trip lewat kabel, serta input dari peer yang
+ * rusak atau jahat (panjang negatif, jumlah elemen yang tidak muat,
+ * header salah) ditolak sebelum ada alokasi besar.
+ */
+class CodecTest {
+
+    @Test
+    void frameRoundTrip() throws Exception {
+        byte[] payload = new Payload.Writer().writeString("halo").writeLong(42).toByteArray();
+        Frame request = new Frame(Frame.FORWARD_SEARCH, 77, payload);
+        Frame reply = request.reply(new byte[]{Frame.STATUS_OK});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        request.writeTo(out);
+        reply.writeTo(out);
+        assertEquals(request.wireSize() + reply.wireSize(), out.size());
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        Frame a = Frame.readFrom(in);
+        assertEquals(Frame.FORWARD_SEARCH, a.opcode);
+        assertEquals(77, a.requestId);
+        assertFalse(a.isReply());
+        assertArrayEquals(payload, a.payload);
+
+        Frame b = Frame.readFrom(in);
+        assertTrue(b.isReply());
+        assertEquals(Frame.FORWARD_SEARCH, b.command());
+        assertEquals(77, b.requestId);
+        assertNull(Frame.readFrom(in));
+    }
+
+    @Test
+    void truncatedOrBadHeaderIsRejected() {
+        byte[] wire = new Frame(Frame.PING, 1, new byte[10]).toBytes();
+        assertThrows(EOFException.class, () -> Frame.readFrom(new ByteArrayInputStream(wire, 0, wire.length - 1)));
+
+        byte[] badMagic = wire.clone();
+        badMagic[0] ^= 1;
+        assertThrows(StreamCorruptedException.class, () -> Frame.readFrom(new ByteArrayInputStream(badMagic)));
+
+        byte[] negative = wire.clone();
+        negative[8] = (byte) 0x80;
+        assertThrows(StreamCorruptedException.class, () -> Frame.readFrom(new ByteArrayInputStream(negative)));
+    }
+
+    @Test
+    void payloadRoundTrip() throws Exception {
+        byte[] blob = {1, 2, 3, (byte) 0xFF};
+        byte[] data = new Payload.Writer()
+                .writeByte(-1)
+                .writeInt(Integer.MIN_VALUE)
+                .writeLong(-1L)
+                .writeString("berkas 📁.txt")
+                .writeBytes(blob)
+                .writePeer(new PeerInfo(9, "10.0.0.9", 4009))
+                .toByteArray();
+        Payload.Reader r = new Payload.Reader(data);
+        assertEquals(-1, r.readByte());
+        assertEquals(Integer.MIN_VALUE, r.readInt());
+        assertEquals(-1L, r.readLong());
+        assertEquals("berkas 📁.txt", r.readString());
+        assertArrayEquals(blob, r.readBytes());
+        PeerInfo p = r.readPeer();
+        assertEquals(9, p.id);
+        assertEquals("10.0.0.9", p.ip);
+        assertEquals(4009, p.port);
+        assertFalse(r.hasRemaining());
+        assertThrows(EOFException.class, r::readByte);
+    }
+
+    @Test
+    void negativeLengthIsRejected() {
+        byte[] data = new Payload.Writer().writeInt(-4).writeLong(0).toByteArray();
+        assertThrows(EOFException.class, () -> new Payload.Reader(data).readString());
+        assertThrows(EOFException.class, () -> new Payload.Reader(data).readBytes());
+    }
+
+    @Test
+    void countThatCannotFitIsRejected() throws Exception {
+        byte[] fits = new Payload.Writer().writeInt(2).writeLong(1).writeLong(2).toByteArray();
+        assertEquals(2, new Payload.Reader(fits).readCount(8));
+
+        byte[] tooMany = new Payload.Writer().writeInt(3).writeLong(1).writeLong(2).toByteArray();
+        assertThrows(StreamCorruptedException.class, () -> new Payload.Reader(tooMany).readCount(8));
+
+        byte[] huge = new Payload.Writer().writeInt(Integer.MAX_VALUE).toByteArray();
+        assertThrows(StreamCorruptedException.class, () -> new Payload.Reader(huge).readCount(1));
+
+        byte[] negative = new Payload.Writer().writeInt(-1).toByteArray();
+        assertThrows(StreamCorruptedException.class, () -> new Payload.Reader(negative).readCount(0));
+    }
+}
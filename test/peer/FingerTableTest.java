@@ -0,0 +1,68 @@
+package peer;
+
+import common.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FingerTable di atas Ring dengan virtual node: finger menunjuk successor
+ * titik awalnya, replika tidak memuat node fisik yang sama dua kali, dan
+ * lookup iteratif dari node mana pun sampai ke pemilik key dalam
+ * hopBudget. Surefire memakai dht.bits=10, jadi key posisi bisa kembar.
+ */
+class FingerTableTest {
+
+    @Test
+    void replicasSkipVnodesOfTheSameOwner() {
+        List<PeerInfo> members = RingTest.peers(4);
+        members.set(0, new PeerInfo(1, "127.0.0.1", 5001, 3));
+        Ring ring = new Ring(1, members, 8);
+        assertEquals(4, ring.members().size());
+        assertEquals((3 + 1 + 1 + 1) * 8, ring.size());
+
+        FingerTable table = new FingerTable(2, ring);
+        for (int i = 0; i < 500; i++) {
+            long key = KeySpace.hash("file-" + i);
+            List<PeerInfo> replicas = table.replicas(key, 3);
+            assertEquals(3, replicas.size());
+            assertEquals(3, new HashSet<>(replicas).size());
+            assertSame(ring.successor(key), replicas.get(0));
+            assertEquals(4, table.replicas(key, 10).size());
+        }
+        List<PeerInfo> successors = table.successorList(10);
+        assertEquals(3, successors.size());
+        assertFalse(successors.contains(table.getOwner()));
+    }
+
+    @Test
+    void fingersPointAtSuccessorOfTheirStart() {
+        Ring ring = new Ring(1, RingTest.peers(8));
+        for (PeerInfo p : ring.members()) {
+            FingerTable table = new FingerTable(p.id, ring);
+            for (int i = 0; i < FingerTable.M; i++) {
+                assertSame(ring.successor(KeySpace.fingerStart(p.key, i)), table.getFinger(i));
+            }
+        }
+    }
+
+    @Test
+    void iterativeLookupReachesOwnerWithinHopBudget() {
+        Ring ring = new Ring(1, RingTest.peers(16), 4);
+        Map<Integer, FingerTable> tables = new HashMap<>();
+        for (PeerInfo p : ring.members()) tables.put(p.id, new FingerTable(p.id, ring));
+
+        for (int i = 0; i < 1_000; i++) {
+            long key = KeySpace.hash("key-" + i);
+            FingerTable at = tables.get(1 + i % 16);
+            int hops = 0;
+            FingerTable.Step step;
+            while (!(step = at.step(key)).done) {
+                at = tables.get(step.peer.id);
+                assertTrue(++hops <= at.hopBudget(), "key " + KeySpace.format(key));
+            }
+            assertSame(ring.successor(key), step.peer);
+        }
+    }
+}
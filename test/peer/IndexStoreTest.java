@@ -0,0 +1,82 @@
+package peer;
+
+import common.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Restart IndexStore: isi file, compact ke snapshot, tambah perubahan di
+ * log, tempel record setengah jadi (seolah crash), lalu load ulang ke
+ * LocalIndex baru dan bandingkan isinya.
+ */
+class IndexStoreTest {
+    @TempDir
+    Path dir;
+
+    private AsyncLog messages;
+
+    @BeforeEach
+    void openLog() {
+        messages = new AsyncLog(dir.resolve("log.txt"), 1024, 1 << 20, 0, AsyncLog.Policy.DROP);
+    }
+
+    @AfterEach
+    void closeLog() {
+        messages.close();
+    }
+
+    @Test
+    void reloadsSnapshotAndLogAfterTornWrite() throws Exception {
+        int files = 20_000;
+        LocalIndex before = new LocalIndex();
+        IndexStore store = new IndexStore(before, dir, Integer.MAX_VALUE, false, messages);
+        store.load();
+        for (int i = 0; i < files; i++) store.put(new FileEntry("file-" + i + ".bin"));
+        store.compact();
+
+        Random rnd = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            if (rnd.nextBoolean()) {
+                store.put(new FileEntry("new-" + i + ".bin"));
+            } else {
+                store.remove("file-" + rnd.nextInt(files) + ".bin");
+            }
+        }
+        store.close();
+
+        // Record terpotong di ekor log, seperti proses mati di tengah penulisan
+        try (FileChannel log = FileChannel.open(dir.resolve("files.log"), StandardOpenOption.APPEND)) {
+            log.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}));
+        }
+
+        LocalIndex after = new LocalIndex();
+        IndexStore reopened = new IndexStore(after, dir, Integer.MAX_VALUE, false, messages);
+        assertEquals(before.size(), reopened.load());
+        reopened.close();
+        assertSameContent(before, after);
+    }
+
+    @Test
+    void emptyDirectoryLoadsNothing() throws Exception {
+        LocalIndex index = new LocalIndex();
+        IndexStore store = new IndexStore(index, dir, Integer.MAX_VALUE, false, messages);
+        assertEquals(0, store.load());
+        store.close();
+        assertEquals(0, index.size());
+    }
+
+    private static void assertSameContent(LocalIndex expected, LocalIndex actual) {
+        assertEquals(expected.size(), actual.size());
+        for (FileEntry e : expected.snapshot()) {
+            FileEntry f = actual.get(e.filename);
+            assertNotNull(f, e.filename);
+            assertEquals(e.hash, f.hash, e.filename);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package peer;
+
+import common.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Konkurensi LocalIndex: beberapa penulis put/remove nama milik
+ * masing-masing, pembaca terus-menerus lookup dan snapshot sambil
+ * memeriksa invarian. Di akhir isi indeks dibandingkan dengan himpunan
+ * yang diharapkan tiap penulis. Surefire memakai dht.bits=10, jadi
+ * banyak file berbagi key.
+ */
+class LocalIndexTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int NAMES_PER_WRITER = 5_000;
+
+    @Test
+    void lookupFindsEveryNameSharingAKey() {
+        LocalIndex index = new LocalIndex();
+        Map<Long, Set<String>> byKey = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            FileEntry e = new FileEntry("file-" + i);
+            index.put(e);
+            byKey.computeIfAbsent(e.hash, k -> new HashSet<>()).add(e.filename);
+        }
+        for (Map.Entry<Long, Set<String>> e : byKey.entrySet()) {
+            Set<String> found = new HashSet<>();
+            for (FileEntry f : index.lookup(e.getKey())) found.add(f.filename);
+            assertEquals(e.getValue(), found);
+        }
+        assertNotNull(index.remove("file-0"));
+        assertNull(index.get("file-0"));
+        assertEquals(4_999, index.size());
+    }
+
+    @Test
+    void concurrentWritersAndReaders() throws Exception {
+        LocalIndex index = new LocalIndex();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong violations = new AtomicLong();
+        List<Set<String>> expected = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                Set<String> mine = new HashSet<>();
+                expected.add(mine);
+                int id = w;
+                futures.add(pool.submit(() -> {
+                    Random rnd = new Random(id);
+                    while (!stop.get()) {
+                        String name = "w" + id + "-file-" + rnd.nextInt(NAMES_PER_WRITER);
+                        if (rnd.nextBoolean()) {
+                            index.put(new FileEntry(name));
+                            mine.add(name);
+                        } else {
+                            index.remove(name);
+                            mine.remove(name);
+                        }
+                    }
+                }));
+            }
+
+            for (int r = 0; r < READERS; r++) {
+                int id = r;
+                futures.add(pool.submit(() -> {
+                    Random rnd = new Random(1000 + id);
+                    long n = 0;
+                    while (!stop.get()) {
+                        String name = "w" + rnd.nextInt(WRITERS) + "-file-" + rnd.nextInt(NAMES_PER_WRITER);
+                        long key = KeySpace.hash(name);
+                        for (FileEntry f : index.lookup(key)) {
+                            if (f.hash != key) violations.incrementAndGet();
+                        }
+                        FileEntry e = index.get(name);
+                        if (e != null && e.hash != key) violations.incrementAndGet();
+
+                        if (++n % 2_000 == 0) {
+                            Set<String> seen = new HashSet<>();
+                            for (FileEntry f : index.snapshot()) {
+                                if (!seen.add(f.filename)) violations.incrementAndGet();   // duplikat
+                            }
+                        }
+                    }
+                }));
+            }
+
+            Thread.sleep(1_000);
+            stop.set(true);
+            for (Future<?> f : futures) f.get();
+        } finally {
+            stop.set(true);
+            pool.shutdownNow();
+        }
+        assertEquals(0, violations.get());
+
+        // Isi indeks == gabungan harapan penulis, dan key bucket cocok dengan nama
+        Set<String> all = new HashSet<>();
+        for (Set<String> s : expected) all.addAll(s);
+        assertEquals(all.size(), index.size());
+        for (String name : all) {
+            assertTrue(index.contains(name), name);
+            boolean inBucket = false;
+            for (FileEntry f : index.lookup(KeySpace.hash(name))) {
+                if (f.filename.equals(name)) inBucket = true;
+            }
+            assertTrue(inBucket, name);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package peer;
+
+import common.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ring: wrap di ujung ring, key yang tepat jatuh di posisi vnode, entry
+ * ganda satu node, serta ring kosong dan ring satu anggota. Surefire
+ * memakai dht.bits=10, jadi key posisi bisa kembar.
+ */
+class RingTest {
+
+    static List<PeerInfo> peers(int n) {
+        List<PeerInfo> list = new ArrayList<>();
+        for (int i = 1; i <= n; i++) list.add(new PeerInfo(i, "127.0.0.1", 5000 + i));
+        return list;
+    }
+
+    @Test
+    void emptyRing() {
+        Ring ring = new Ring(1, List.of());
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.size());
+        assertNull(ring.successor(0));
+        assertNull(ring.predecessor(KeySpace.MASK));
+        assertEquals(-1, ring.successorIndex(0));
+        assertTrue(ring.members().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new FingerTable(1, ring));
+    }
+
+    @Test
+    void singleMemberOwnsEverything() {
+        PeerInfo only = new PeerInfo(1, "127.0.0.1", 5001);
+        Ring ring = new Ring(1, List.of(only), 4);
+        FingerTable table = new FingerTable(1, ring);
+        for (long key : new long[]{0, only.key, KeySpace.MASK, KeySpace.hash("a.txt")}) {
+            assertSame(only, ring.successor(key));
+            assertSame(only, ring.predecessor(key));
+            assertTrue(table.owns(key));
+            assertTrue(table.step(key).done);
+            assertEquals(List.of(only), table.replicas(key, 3));
+        }
+        assertSame(only, ring.after(only));
+        assertSame(only, ring.before(only));
+        assertSame(only, table.successorOfOwner());
+        assertTrue(table.successorList(3).isEmpty());
+        for (int i = 0; i < FingerTable.M; i++) assertSame(only, table.getFinger(i));
+    }
+
+    @Test
+    void successorWrapsPastLargestPosition() {
+        Ring ring = new Ring(1, peers(5), 4);
+        long largest = ring.keyAt(ring.size() - 1);
+        assertSame(ring.get(0), ring.successor(largest == KeySpace.MASK ? 0 : largest + 1));
+        assertSame(ring.get(-1), ring.predecessor(ring.keyAt(0)));
+        if (ring.keyAt(0) != 0) assertSame(ring.get(0), ring.successor(0));
+    }
+
+    @Test
+    void keyEqualToPositionBelongsToThatPosition() {
+        Ring ring = new Ring(1, peers(6), 8);
+        for (int i = 0; i < ring.size(); i++) {
+            long key = ring.keyAt(i);
+            int first = i;
+            while (first > 0 && ring.keyAt(first - 1) == key) first--;    // key kembar: urutan (key, id)
+            assertSame(ring.get(first), ring.successor(key), "posisi " + i);
+            assertEquals(first, ring.successorIndex(key));
+            if (first > 0) assertSame(ring.get(first - 1), ring.predecessor(key));
+        }
+    }
+
+    @Test
+    void duplicateEntriesOfOneNodeCountOnce() {
+        List<PeerInfo> members = peers(3);
+        members.add(new PeerInfo(2, "127.0.0.1", 5002));
+        Ring ring = new Ring(1, members, 2);
+        assertEquals(3, ring.members().size());
+        assertEquals(6, ring.size());
+        assertTrue(ring.sameMembers(peers(3)));
+    }
+}